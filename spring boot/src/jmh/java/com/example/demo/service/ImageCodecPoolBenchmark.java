@@ -0,0 +1,104 @@
+package com.example.demo.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.service.ImageProcessingService.ProcessedImage;
+import com.example.demo.util.ExifOrientation;
+
+/**
+ * Draw + encode of one watermarked rendition, with a fresh writer lookup, canvas and
+ * growing output stream per call ({@code fresh}, the pipeline before {@link ImageCodecPool})
+ * versus the pooled codec, canvas and buffer ({@code pooled}). The {@code *Contended}
+ * variants run 4 threads, as the upload pool does under load.
+ *
+ * Compare gc.alloc.rate.norm (bytes per rendition) from the gc profiler, on by default in
+ * the jmh profile.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.includes=ImageCodecPoolBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx1g" })
+public class ImageCodecPoolBenchmark {
+
+    @Param({ PhotoCorpus.PHONE_LANDSCAPE, PhotoCorpus.PHONE_PORTRAIT })
+    String photo;
+
+    @Param({ "360", "1200" })
+    int width;
+
+    private BufferedImage src;
+    private int newW;
+    private int newH;
+
+    @Setup
+    public void setUp() throws IOException {
+        src = ImageIO.read(new ByteArrayInputStream(PhotoCorpus.bytes(photo)));
+        newW = Math.min(src.getWidth(), width);
+        newH = ImageProcessingService.scaledHeight(src.getWidth(), src.getHeight(), newW);
+    }
+
+    @Benchmark
+    public byte[] fresh() throws IOException {
+        BufferedImage canvas = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_RGB);
+        ImageProcessingService.paint(src, ExifOrientation.NORMAL, canvas, true);
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpg").next();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(baos)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(ImageCodecPool.QUALITY);
+            writer.write(null, new IIOImage(canvas, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public ProcessedImage pooled() throws IOException {
+        try (ImageCodecPool.Canvas canvas = ImageCodecPool.borrowCanvas(newW, newH)) {
+            ImageProcessingService.paint(src, ExifOrientation.NORMAL, canvas.image(), true);
+            return ImageProcessingService.encodeAs(canvas.image(), "jpg");
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] freshContended() throws IOException {
+        return fresh();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ProcessedImage pooledContended() throws IOException {
+        return pooled();
+    }
+}
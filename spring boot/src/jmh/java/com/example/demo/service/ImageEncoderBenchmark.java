@@ -0,0 +1,69 @@
+package com.example.demo.service;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.service.ImageProcessingService.ProcessedImage;
+
+/**
+ * WebP versus the JPEG fallback at the pipeline's quality (0.82), on watermarked renditions
+ * of corpus photos. Encoded size is printed once per trial next to the timing.
+ *
+ * imageio-webp 3.10 only registers a WebP reader (the service always falls back to JPEG), so
+ * {@code webp} is left out of {@code format}: its setup would fail. Add it back once a WebP
+ * writer is on the classpath.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.includes=ImageEncoderBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx1g" })
+public class ImageEncoderBenchmark {
+
+    @Param({ PhotoCorpus.PHONE_LANDSCAPE, PhotoCorpus.SCREENSHOT })
+    String photo;
+
+    @Param({ "360", "1200" })
+    int width;
+
+    @Param({ "jpg" })
+    String format;
+
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() throws IOException {
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            throw new IllegalStateException("No ImageIO writer registered for " + format);
+        }
+        BufferedImage src = ImageIO.read(new ByteArrayInputStream(PhotoCorpus.bytes(photo)));
+        int newW = Math.min(src.getWidth(), width);
+        canvas = ImageProcessingService.drawWatermarked(src, newW, ImageProcessingService.scaledHeight(src.getWidth(), src.getHeight(), newW));
+        ProcessedImage sample = ImageProcessingService.encodeAs(canvas, format);
+        System.out.printf("%n%s @%dpx as %s: %d bytes%n", photo, canvas.getWidth(), format, sample.bytes().length);
+    }
+
+    @Benchmark
+    public ProcessedImage encode() throws IOException {
+        return ImageProcessingService.encodeAs(canvas, format);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.demo.service;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ByteArrayResource;
+
+import com.example.demo.service.ImageProcessingService.ProcessedImage;
+
+/**
+ * Upload pipeline cost per photo, stage by stage, over {@link PhotoCorpus}:
+ * decode (subsampled for the target width, as the service does), resize, watermark, encode,
+ * and the whole {@code resizeAndWatermark} call. The stages are measured on their own inputs
+ * prepared in setup, so their sum approximates {@code pipeline}.
+ *
+ * Run with the gc profiler (on by default in the jmh profile) for gc.alloc.rate.norm, the
+ * bytes allocated per image. For time per megapixel divide by the size in the photo name.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.includes=ImagePipelineBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx1g" })
+public class ImagePipelineBenchmark {
+
+    @Param({ PhotoCorpus.PHONE_LANDSCAPE, PhotoCorpus.PHONE_PORTRAIT, PhotoCorpus.COMPACT,
+             PhotoCorpus.SCREENSHOT, PhotoCorpus.ASSET })
+    String photo;
+
+    @Param({ "360", "1200" })
+    int width;
+
+    private byte[] input;
+    private BufferedImage decoded;
+    private BufferedImage resized;
+    private ImageProcessingService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        input = PhotoCorpus.bytes(photo);
+        decoded = decode();
+        int newW = Math.min(decoded.getWidth(), width);
+        resized = resize(decoded, newW, ImageProcessingService.scaledHeight(decoded.getWidth(), decoded.getHeight(), newW));
+        // Production limits; single thread, so the pixel budget never blocks
+        service = new ImageProcessingService(60_000_000L, 80_000_000L, 15_000L);
+    }
+
+    @Benchmark
+    public BufferedImage decode() throws IOException {
+        try (ImageInputStream iis = ImageIO.createImageInputStream(new ByteArrayInputStream(input))) {
+            ImageReader reader = ImageIO.getImageReaders(iis).next();
+            try {
+                reader.setInput(iis, true, true);
+                int sub = ImageProcessingService.subsampling(reader.getWidth(0), width);
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (sub > 1) {
+                    param.setSourceSubsampling(sub, sub, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Benchmark
+    public BufferedImage resize() {
+        int newW = resized.getWidth();
+        return resize(decoded, newW, resized.getHeight());
+    }
+
+    @Benchmark
+    public BufferedImage watermark() {
+        // Stamps over the previous iteration's marks; the blit cost does not depend on content
+        Graphics2D g = ImageProcessingService.canvasGraphics(resized);
+        ImageProcessingService.applyWatermark(g, resized.getWidth(), resized.getHeight());
+        g.dispose();
+        return resized;
+    }
+
+    @Benchmark
+    public ProcessedImage encode() throws IOException {
+        return ImageProcessingService.encode(resized);
+    }
+
+    @Benchmark
+    public ProcessedImage pipeline() throws IOException {
+        return service.resizeAndWatermark(new ByteArrayResource(input), width);
+    }
+
+    private static BufferedImage resize(BufferedImage src, int newW, int newH) {
+        BufferedImage canvas = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = ImageProcessingService.canvasGraphics(canvas);
+        g.drawImage(src, 0, 0, newW, newH, null);
+        g.dispose();
+        return canvas;
+    }
+}
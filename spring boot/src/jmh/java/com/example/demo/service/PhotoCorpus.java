@@ -0,0 +1,142 @@
+package com.example.demo.service;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+/**
+ * Benchmark inputs built from the vehicle photos shipped with the frontend
+ * ({@code hera pheri goods/attached_assets/images}, override with {@code -Dbench.corpus.dir}).
+ *
+ * Uploads are mostly phone photos, far larger than the site assets, so the big entries are a
+ * vehicle photo scaled to camera resolutions with a little seeded grain (a clean upscale would
+ * compress and decode unrealistically fast). Names carry the pixel size, for per-megapixel math.
+ */
+final class PhotoCorpus {
+
+    static final String PHONE_LANDSCAPE = "phone-4032x3024.jpg";
+    static final String PHONE_PORTRAIT = "phone-portrait-3024x4032.jpg";
+    static final String COMPACT = "compact-1600x1200.jpg";
+    static final String SCREENSHOT = "screenshot-1080x2340.png";
+    static final String ASSET = "asset-1200x630.jpg";
+
+    private static final String DEFAULT_DIR = "../hera pheri goods/attached_assets/images";
+    private static final String SOURCE_PHOTO = "crysta.webp";
+    private static final String SOURCE_SCREEN = "Tata Ace (Chhota Hathi).webp";
+
+    private static final Map<String, byte[]> CACHE = new ConcurrentHashMap<>();
+
+    private PhotoCorpus() {}
+
+    /** Encoded bytes of a corpus entry (one of the constants above), built once per JVM. */
+    static byte[] bytes(String name) {
+        return CACHE.computeIfAbsent(name, n -> {
+            try {
+                return build(n);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot build corpus entry " + n + " from " + dir().toAbsolutePath(), e);
+            }
+        });
+    }
+
+    private static byte[] build(String name) throws IOException {
+        switch (name) {
+            case ASSET:
+                return Files.readAllBytes(dir().resolve("1200x630.jpg"));
+            case PHONE_LANDSCAPE:
+                return jpeg(grain(cover(source(SOURCE_PHOTO), 4032, 3024)));
+            case PHONE_PORTRAIT:
+                return jpeg(grain(cover(source(SOURCE_PHOTO), 3024, 4032)));
+            case COMPACT:
+                return jpeg(grain(cover(source(SOURCE_PHOTO), 1600, 1200)));
+            case SCREENSHOT:
+                return png(cover(source(SOURCE_SCREEN), 1080, 2340));
+            default:
+                throw new IllegalArgumentException("Unknown corpus entry " + name);
+        }
+    }
+
+    private static Path dir() {
+        return Paths.get(System.getProperty("bench.corpus.dir", DEFAULT_DIR));
+    }
+
+    private static BufferedImage source(String file) throws IOException {
+        BufferedImage img = ImageIO.read(dir().resolve(file).toFile());
+        if (img == null) {
+            throw new IOException("No ImageIO reader for " + file + " (is imageio-webp on the classpath?)");
+        }
+        return img;
+    }
+
+    /** Scale and centre-crop to exactly w x h. */
+    private static BufferedImage cover(BufferedImage src, int w, int h) {
+        double scale = Math.max(w / (double) src.getWidth(), h / (double) src.getHeight());
+        int sw = (int) Math.ceil(src.getWidth() * scale);
+        int sh = (int) Math.ceil(src.getHeight() * scale);
+        BufferedImage out = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = out.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        g.drawImage(src, (w - sw) / 2, (h - sh) / 2, sw, sh, null);
+        g.dispose();
+        return out;
+    }
+
+    private static BufferedImage grain(BufferedImage img) {
+        Random random = new Random(42);
+        int[] row = new int[img.getWidth()];
+        for (int y = 0; y < img.getHeight(); y++) {
+            img.getRGB(0, y, row.length, 1, row, 0, row.length);
+            for (int x = 0; x < row.length; x++) {
+                int n = random.nextInt(9) - 4;
+                int r = clamp(((row[x] >> 16) & 0xff) + n);
+                int gr = clamp(((row[x] >> 8) & 0xff) + n);
+                int b = clamp((row[x] & 0xff) + n);
+                row[x] = (r << 16) | (gr << 8) | b;
+            }
+            img.setRGB(0, y, row.length, 1, row, 0, row.length);
+        }
+        return img;
+    }
+
+    private static int clamp(int v) {
+        return Math.max(0, Math.min(255, v));
+    }
+
+    // Camera-like quality, well above the pipeline's 0.82
+    private static byte[] jpeg(BufferedImage img) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpg");
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(0.92f);
+            writer.write(null, new IIOImage(img, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] png(BufferedImage img) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.demo.service;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per-image watermark cost at the two upload sizes: the original per-glyph loop over a rotated
+ * Graphics2D versus the cached pre-rotated stamp in ImageProcessingService.
+ *
+ * mvn -Pjmh test-compile exec:exec -Djmh.includes=WatermarkBenchmark
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class WatermarkBenchmark {
+
+    @Param({ "360", "1200" })
+    int width;
+
+    private BufferedImage canvas;
+
+    @Setup
+    public void setUp() {
+        int height = width * 3 / 4;
+        canvas = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = canvas.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, width, height, Color.BLUE));
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage glyphLoop() {
+        Graphics2D g = newGraphics();
+        int w = canvas.getWidth();
+        int h = canvas.getHeight();
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.12f));
+        g.setColor(Color.WHITE);
+        int fontSize = Math.max(24, (int) (w * 0.12));
+        g.setFont(new Font("Arial", Font.BOLD, fontSize));
+        g.rotate(Math.toRadians(-30), w / 2.0, h / 2.0);
+        int step = (int) (fontSize * 3.0);
+        for (int y = -h; y < h * 2; y += step) {
+            for (int x = -w; x < w * 2; x += step) {
+                g.drawString("HPG", x, y);
+            }
+        }
+        g.dispose();
+        return canvas;
+    }
+
+    @Benchmark
+    public BufferedImage cachedStamp() {
+        Graphics2D g = newGraphics();
+        ImageProcessingService.applyWatermark(g, canvas.getWidth(), canvas.getHeight());
+        g.dispose();
+        return canvas;
+    }
+
+    private Graphics2D newGraphics() {
+        Graphics2D g = canvas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.config;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Bounded worker pools for request-path fan-out.
+ *
+ * Pools have a fixed size and a bounded queue; when both are full, submit() throws
+ * RejectedExecutionException so callers can degrade instead of piling up work.
+ */
+@Configuration
+public class ExecutorConfig {
+
+    /** Upstream geo lookups (India Post / Nominatim) for batch resolution. */
+    @Bean(name = "geoLookupExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService geoLookupExecutor(
+        @Value("${app.geo.batch.concurrency:8}") int concurrency,
+        @Value("${app.geo.batch.queue-capacity:200}") int queueCapacity
+    ) {
+        return boundedPool("geo-lookup", concurrency, queueCapacity);
+    }
+
+    /**
+     * Vehicle image decode/resize/encode + upload. Sized to the CPU count by default since
+     * the encode step dominates; 0 means "number of available processors".
+     */
+    @Bean(name = "imageUploadExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService imageUploadExecutor(
+        @Value("${app.images.upload.concurrency:0}") int concurrency,
+        @Value("${app.images.upload.queue-capacity:64}") int queueCapacity
+    ) {
+        int threads = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        return boundedPool("image-upload", threads, queueCapacity);
+    }
+
+    /**
+     * Asynchronous upload jobs (one registration's photo set per task). Each job fans out to
+     * imageUploadExecutor, so a small pool is enough; the queue absorbs bursts.
+     */
+    @Bean(name = "imageJobExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService imageJobExecutor(
+        @Value("${app.images.jobs.concurrency:2}") int concurrency,
+        @Value("${app.images.jobs.queue-capacity:100}") int queueCapacity
+    ) {
+        return boundedPool("image-job", concurrency, queueCapacity);
+    }
+
+    /**
+     * Bulk flat -> folder image migration: registrations migrated concurrently within a page.
+     * The job runs the task itself when the queue is full, which throttles submission.
+     */
+    @Bean(name = "imageMigrationExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService imageMigrationExecutor(
+        @Value("${app.migration.images.concurrency:8}") int concurrency,
+        @Value("${app.migration.images.queue-capacity:16}") int queueCapacity
+    ) {
+        return boundedPool("image-migration", concurrency, queueCapacity);
+    }
+
+    /**
+     * Storage housekeeping: multi-object delete batches and the folder listings that precede
+     * them. Callers run the task themselves when the queue is full.
+     */
+    @Bean(name = "storageBatchExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService storageBatchExecutor(
+        @Value("${app.storage.batch.concurrency:4}") int concurrency,
+        @Value("${app.storage.batch.queue-capacity:64}") int queueCapacity
+    ) {
+        return boundedPool("storage-batch", concurrency, queueCapacity);
+    }
+
+    /**
+     * Retried attempts of blocking (request-path) calls. A full queue fails the retry rather
+     * than queueing more work behind an upstream that is already struggling.
+     */
+    @Bean(name = "retryWorkerExecutor", destroyMethod = "shutdownNow")
+    public ExecutorService retryWorkerExecutor(
+        @Value("${app.retry.workers:4}") int workers,
+        @Value("${app.retry.queue-capacity:64}") int queueCapacity
+    ) {
+        return boundedPool("retry-worker", workers, queueCapacity);
+    }
+
+    static ExecutorService boundedPool(String name, int threads, int queueCapacity) {
+        int size = Math.max(1, threads);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+            size, size,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+            namedDaemonThreads(name),
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    static ThreadFactory namedDaemonThreads(String name) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.demo.config;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import com.example.demo.service.OutboundHttpMetrics;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * Outbound HTTP clients, one per upstream, shared by every caller of that upstream.
+ *
+ * Each upstream gets its own connection pool and timeouts, so a slow SMS gateway cannot
+ * exhaust the connections storage calls need, and repeated calls reuse warm (keep-alive)
+ * connections instead of paying a TCP + TLS handshake each. HTTP/2 is negotiated via ALPN
+ * where the server supports it. All calls are recorded per host in {@link OutboundHttpMetrics}.
+ */
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * Supabase storage/REST (OkHttp). The call timeout bounds a whole exchange; image uploads
+     * set their own tighter one per call.
+     */
+    @Bean
+    public OkHttpClient storageHttpClient(
+        OutboundHttpMetrics metrics,
+        @Value("${app.http.storage.connect-timeout-ms:5000}") long connectTimeoutMs,
+        @Value("${app.http.storage.read-timeout-ms:30000}") long readTimeoutMs,
+        @Value("${app.http.storage.call-timeout-ms:120000}") long callTimeoutMs,
+        @Value("${app.http.storage.max-idle-connections:32}") int maxIdleConnections,
+        @Value("${app.http.storage.keep-alive-seconds:300}") long keepAliveSeconds
+    ) {
+        Dispatcher dispatcher = new Dispatcher();
+        // Only applies to async calls; synchronous callers are bounded by their own pools
+        dispatcher.setMaxRequestsPerHost(Math.max(5, maxIdleConnections));
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(Math.max(1, maxIdleConnections), keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .addInterceptor(metrics.okHttpInterceptor())
+                .eventListener(metrics.okHttpEventListener())
+                .build();
+    }
+
+    /** India Post pincode API: short timeouts so pages don't hang when it is slow. */
+    @Bean
+    public RestTemplate indiaPostRestTemplate(OutboundHttpMetrics metrics) {
+        return restTemplate(metrics, 2000, 2000);
+    }
+
+    /** Nominatim search/reverse (rate limited separately by NominatimRateGovernor). */
+    @Bean
+    public RestTemplate nominatimRestTemplate(OutboundHttpMetrics metrics) {
+        return restTemplate(metrics, 2000, 3000);
+    }
+
+    /** 2Factor SMS/OTP. */
+    @Bean
+    public RestTemplate smsRestTemplate(
+        OutboundHttpMetrics metrics,
+        @Value("${app.http.sms.connect-timeout-ms:3000}") int connectTimeoutMs,
+        @Value("${app.http.sms.read-timeout-ms:10000}") int readTimeoutMs
+    ) {
+        return restTemplate(metrics, connectTimeoutMs, readTimeoutMs);
+    }
+
+    /** Brevo transactional email. */
+    @Bean
+    public RestTemplate emailRestTemplate(
+        OutboundHttpMetrics metrics,
+        @Value("${app.http.email.connect-timeout-ms:3000}") int connectTimeoutMs,
+        @Value("${app.http.email.read-timeout-ms:15000}") int readTimeoutMs
+    ) {
+        return restTemplate(metrics, connectTimeoutMs, readTimeoutMs);
+    }
+
+    /** reCAPTCHA siteverify (login/signup and contact form). */
+    @Bean
+    public RestTemplate captchaRestTemplate(OutboundHttpMetrics metrics) {
+        return restTemplate(metrics, 2000, 5000);
+    }
+
+    /**
+     * RestTemplate over its own JDK HttpClient (own connection pool, HTTP/2 with fallback to
+     * HTTP/1.1). The read timeout applies per request.
+     */
+    private static RestTemplate restTemplate(OutboundHttpMetrics metrics, int connectTimeoutMs, int readTimeoutMs) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        RestTemplate restTemplate = new RestTemplate(factory);
+        restTemplate.getInterceptors().add(metrics.restTemplateInterceptor());
+        return restTemplate;
+    }
+}
@@ -102,11 +102,14 @@ public class SecurityConfig {
                         "/register/**"
                     ).permitAll();
 
-                // Require auth for endpoints that would otherwise match /api/registration/*
+                // Require auth for endpoints that would otherwise match the public GET patterns below
                 auth
                     .requestMatchers(HttpMethod.GET,
                         "/api/registration/search",
-                        "/api/registration/migrate-urls"
+                        "/api/registration/migrate-urls",
+                        "/api/registration-images/jobs/**",
+                        "/api/images/stats",
+                        "/api/geo/stats"
                     ).authenticated();
 
                 // Public read-only APIs
@@ -131,9 +134,14 @@ public class SecurityConfig {
                         "/api/payments/webhook",
                         "/api/contact-submissions",
                         "/api/save-feedback",
-                        "/api/save-user-feedback"
+                        "/api/save-user-feedback",
+                        "/api/geo/resolve-batch"
                     ).permitAll();
 
+                // Local stand-in for signed storage URLs (dev only; 404 unless app.uploads.direct.storage=local)
+                auth
+                    .requestMatchers(HttpMethod.PUT, "/api/uploads/stub/*").permitAll();
+
                 // Everything else requires a valid JWT
                 auth.anyRequest().authenticated();
             });
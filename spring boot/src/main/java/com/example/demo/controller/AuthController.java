@@ -7,6 +7,7 @@ import java.util.Random;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -53,6 +54,10 @@ public class AuthController {
     @Autowired
     private NotificationEmailService notificationEmailService;
 
+    @Autowired
+    @Qualifier("captchaRestTemplate")
+    private RestTemplate captchaRestTemplate;
+
     @Value("${captcha.enabled:false}")
     private boolean captchaEnabled;
 
@@ -74,9 +79,8 @@ public class AuthController {
 
     private boolean verifyCaptcha(String token, String ip) {
         try {
-            RestTemplate restTemplate = new RestTemplate();
             String url = "https://www.google.com/recaptcha/api/siteverify?secret=" + captchaSecret + "&response=" + token + "&remoteip=" + ip;
-            Map<?, ?> res = restTemplate.postForObject(url, null, Map.class);
+            Map<?, ?> res = captchaRestTemplate.postForObject(url, null, Map.class);
             Object success = res != null ? res.get("success") : null;
             return Boolean.TRUE.equals(success);
         } catch (Exception e) {
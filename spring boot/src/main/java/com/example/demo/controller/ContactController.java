@@ -4,6 +4,7 @@ import java.time.Instant;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -28,6 +29,7 @@ public class ContactController {
 
     private final ContactSubmissionRepository repository;
     private final EmailService emailService;
+    private final RestTemplate captchaRestTemplate;
 
     /**
      * Admin alert recipient for contact form submissions.
@@ -46,9 +48,11 @@ public class ContactController {
 
     private static final Map<String, Window> ipWindows = new ConcurrentHashMap<>();
 
-    public ContactController(ContactSubmissionRepository repository, EmailService emailService) {
+    public ContactController(ContactSubmissionRepository repository, EmailService emailService,
+                             @Qualifier("captchaRestTemplate") RestTemplate captchaRestTemplate) {
         this.repository = repository;
         this.emailService = emailService;
+        this.captchaRestTemplate = captchaRestTemplate;
     }
 
     @PostMapping
@@ -164,8 +168,7 @@ public class ContactController {
         try {
             // Google reCAPTCHA v3 endpoint
             String url = "https://www.google.com/recaptcha/api/siteverify?secret=" + captchaSecret + "&response=" + token + "&remoteip=" + ip;
-            RestTemplate rt = new RestTemplate();
-            java.util.Map<?,?> resp = rt.postForObject(url, null, java.util.Map.class);
+            java.util.Map<?,?> resp = captchaRestTemplate.postForObject(url, null, java.util.Map.class);
             if (resp == null) return false;
             Object success = resp.get("success");
             if (success instanceof Boolean b) return b;
@@ -26,6 +26,7 @@ import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.SecurityUtils;
 import com.example.demo.service.DeletionAuditService;
+import com.example.demo.service.PincodeLocationService;
 import com.example.demo.service.SupabaseService;
 
 import jakarta.servlet.http.HttpServletRequest;
@@ -54,6 +55,9 @@ public class DeletionController {
 
     @Autowired
     private DeletionAuditService deletionAuditService;
+
+    @Autowired
+    private PincodeLocationService pincodeLocationService;
     
     /**
      * Main endpoint for vehicle deletion
@@ -235,10 +239,7 @@ public class DeletionController {
             }
             
             // Step 6: Delete the registration
-            int regRows = jdbcTemplate.update(
-                "DELETE FROM registration WHERE id = ?",
-                registrationId
-            );
+            int regRows = pincodeLocationService.deleteRegistration(registrationId);
             log.debug("Deleted registration row (registrationId={}, rows={})", registrationId, regRows);
             
             if (regRows == 0) {
@@ -428,10 +429,7 @@ public class DeletionController {
             }
             
             // Step 6: Delete from registration table using raw SQL
-            int regRows = jdbcTemplate.update(
-                "DELETE FROM registration WHERE id = ?",
-                registrationId
-            );
+            int regRows = pincodeLocationService.deleteRegistration(registrationId);
             log.debug("Deleted registration row (registrationId={}, rows={})", registrationId, regRows);
             
             // Step 7: Re-enable foreign key checks
@@ -512,22 +510,25 @@ public class DeletionController {
             // 1. First handle any other tables that might have foreign keys to user table
             
             // 2. Delete all registrations associated with this user
+            // IMPORTANT: Delete images BEFORE removing folder records so path info is still available
+            // 2.1 Delete vehicle images of every registration from storage in one batch
+            if (!userRegistrations.isEmpty()) {
+                List<Long> registrationIds = userRegistrations.stream().map(Registration::getId).toList();
+                try {
+                    log.debug("Deleting vehicle images (userId={}, registrations={})", userId, registrationIds.size());
+                    supabaseService.deleteAllVehicleImages(registrationIds);
+                } catch (Exception e) {
+                    String errorMsg = "Error deleting vehicle images for registrations " + registrationIds + ": " + e.getMessage();
+                    log.warn(errorMsg);
+                    deletionErrors.add(errorMsg);
+                    // Continue with deletion
+                }
+            }
+
             for (Registration registration : userRegistrations) {
                 try {
                     Long registrationId = registration.getId();
                     log.debug("Processing registration deletion (registrationId={})", registrationId);
-                    // IMPORTANT: Delete images BEFORE removing folder records so path info is still available
-                    // 2.1 Delete vehicle images from storage
-                    try {
-                        log.debug("Deleting vehicle images for registration (registrationId={})", registrationId);
-                        supabaseService.deleteAllVehicleImages(registrationId);
-                        log.debug("Deleted vehicle images for registration (registrationId={})", registrationId);
-                    } catch (Exception e) {
-                        String errorMsg = "Error deleting vehicle images for registration " + registrationId + ": " + e.getMessage();
-                        log.warn(errorMsg);
-                        deletionErrors.add(errorMsg);
-                        // Continue with deletion
-                    }
 
                     // 2.2 Delete registration_image_folders entries (after storage cleanup)
                     try {
@@ -558,7 +559,7 @@ public class DeletionController {
                     
                     // Try direct SQL as fallback
                     try {
-                        int rowsDeleted = jdbcTemplate.update("DELETE FROM registration WHERE id = ?", registration.getId());
+                        int rowsDeleted = pincodeLocationService.deleteRegistration(registration.getId());
                         if (rowsDeleted > 0) {
                             log.debug("Deleted registration using SQL fallback (registrationId={})", registration.getId());
                         } else {
@@ -0,0 +1,210 @@
+package com.example.demo.controller;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.example.demo.model.Registration;
+import com.example.demo.model.User;
+import com.example.demo.repository.RegistrationRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.DirectUploadService;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Direct-to-storage uploads: sign a PUT URL, upload the raw file to storage, then finalize.
+ * The multipart endpoints stay available; see {@link DirectUploadService}.
+ */
+@RestController
+@RequestMapping("/api/uploads")
+public class DirectUploadController {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectUploadController.class);
+
+    // front/side/back/loading
+    private static final int VEHICLE_SLOTS = 4;
+
+    @Autowired
+    private DirectUploadService directUploadService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Body: {@code kind} (vehicle | rc | dl | profile | post), {@code contentType}, optional
+     * {@code size}; {@code registrationId} for vehicle/rc/dl and {@code slot} (0-3) for vehicle.
+     */
+    @PostMapping("/sign")
+    public ResponseEntity<?> sign(@RequestBody Map<String, Object> body) {
+        String currentContact = SecurityUtils.currentContactOrNull();
+        if (currentContact == null) {
+            return SecurityUtils.forbidden("Forbidden");
+        }
+
+        String kind = body.get("kind") != null ? body.get("kind").toString().trim().toLowerCase() : "";
+        if (!DirectUploadService.KINDS.contains(kind)) {
+            return badRequest("kind must be one of " + DirectUploadService.KINDS);
+        }
+        String contentType = body.get("contentType") != null ? body.get("contentType").toString().trim().toLowerCase() : "";
+        boolean document = DirectUploadService.KIND_RC.equals(kind) || DirectUploadService.KIND_DL.equals(kind);
+        if (!contentType.startsWith("image/") && !(document && contentType.equals("application/pdf"))) {
+            return badRequest("Unsupported content type");
+        }
+        Long size = toLong(body.get("size"));
+        if (size != null && size > directUploadService.maxBytes()) {
+            return badRequest("File too large. Maximum size allowed is " + (directUploadService.maxBytes() / (1024 * 1024)) + "MB");
+        }
+
+        Long registrationId = null;
+        Integer slot = null;
+        if (DirectUploadService.KIND_VEHICLE.equals(kind) || document) {
+            registrationId = toLong(body.get("registrationId"));
+            if (registrationId == null) {
+                return badRequest("registrationId is required");
+            }
+            Registration registration = registrationRepository.findById(registrationId).orElse(null);
+            if (registration == null) {
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", false);
+                response.put("message", "Registration not found with ID: " + registrationId);
+                return ResponseEntity.status(404).body(response);
+            }
+            User currentUser = userRepository.findByContactNumber(currentContact);
+            if (currentUser == null || registration.getUserId() == null || !registration.getUserId().equals(currentUser.getId())) {
+                return SecurityUtils.forbidden("Forbidden");
+            }
+            if (DirectUploadService.KIND_VEHICLE.equals(kind)) {
+                Long s = toLong(body.get("slot"));
+                if (s == null || s < 0 || s >= VEHICLE_SLOTS) {
+                    return badRequest("slot must be 0-" + (VEHICLE_SLOTS - 1));
+                }
+                slot = s.intValue();
+            }
+        }
+
+        try {
+            String baseUrl = ServletUriComponentsBuilder.fromCurrentContextPath().build().toUriString();
+            Map<String, Object> response = new HashMap<>(directUploadService.issue(kind, currentContact, registrationId, slot, contentType, baseUrl));
+            response.put("success", true);
+            return ResponseEntity.ok(response);
+        } catch (IOException e) {
+            log.warn("Could not sign direct upload (kind={}): {}", kind, e.toString());
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Upload signing unavailable, use the regular upload");
+            return ResponseEntity.status(503).body(response);
+        }
+    }
+
+    /** Call after the PUT succeeded; returns 202 and the status URL to poll. */
+    @PostMapping("/{uploadId}/finalize")
+    public ResponseEntity<?> finalizeUpload(@PathVariable String uploadId) {
+        String currentContact = SecurityUtils.currentContactOrNull();
+        if (currentContact == null) {
+            return SecurityUtils.forbidden("Forbidden");
+        }
+        Map<String, Object> status = directUploadService.find(uploadId, currentContact);
+        if (status == null) {
+            return notFound();
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        try {
+            if (!directUploadService.finalizeUpload(uploadId, currentContact)) {
+                Map<String, Object> current = directUploadService.find(uploadId, currentContact);
+                response.put("success", false);
+                response.put("message", "Upload cannot be finalized");
+                response.put("status", current != null ? current.get("status") : null);
+                return ResponseEntity.status(409).body(response);
+            }
+        } catch (RejectedExecutionException e) {
+            response.put("success", false);
+            response.put("message", "Upload queue is full, try again shortly");
+            return ResponseEntity.status(503).header("Retry-After", "5").body(response);
+        }
+
+        response.put("success", true);
+        response.put("uploadId", uploadId);
+        response.put("status", DirectUploadService.STATUS_QUEUED);
+        response.put("statusUrl", "/api/uploads/" + uploadId);
+        return ResponseEntity.accepted().body(response);
+    }
+
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<?> status(@PathVariable String uploadId) {
+        String currentContact = SecurityUtils.currentContactOrNull();
+        if (currentContact == null) {
+            return SecurityUtils.forbidden("Forbidden");
+        }
+        Map<String, Object> status = directUploadService.find(uploadId, currentContact);
+        if (status == null) {
+            return notFound();
+        }
+        Map<String, Object> response = new HashMap<>(status);
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Stand-in for the storage PUT when {@code app.uploads.direct.storage=local}. The unguessable
+     * upload id plays the role of the signed token, as with the real signed URL.
+     */
+    @PutMapping("/stub/{uploadId}")
+    public ResponseEntity<?> stubPut(@PathVariable String uploadId, HttpServletRequest request) {
+        try {
+            if (!directUploadService.acceptStubUpload(uploadId, request.getInputStream())) {
+                return notFound();
+            }
+            return ResponseEntity.ok(Map.of("success", true));
+        } catch (ImageRejectedException e) {
+            return ResponseEntity.status(413).body(Map.of("success", false, "message", e.getMessage()));
+        } catch (IOException e) {
+            log.warn("Stub upload failed: {}", e.toString());
+            return ResponseEntity.status(500).body(Map.of("success", false, "message", "Upload failed"));
+        }
+    }
+
+    private static Long toLong(Object value) {
+        if (value == null) return null;
+        if (value instanceof Number n) return n.longValue();
+        try {
+            return Long.parseLong(value.toString().trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", message);
+        return ResponseEntity.badRequest().body(response);
+    }
+
+    private static ResponseEntity<Map<String, Object>> notFound() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", "Upload not found");
+        return ResponseEntity.status(404).body(response);
+    }
+}
@@ -1,5 +1,10 @@
 package com.example.demo.controller;
 
+import com.example.demo.service.GeoCacheStore;
+import com.example.demo.service.GeoCacheWarmer;
+import com.example.demo.service.NominatimRateGovernor;
+import com.example.demo.service.PincodeLocationService;
+import com.example.demo.service.PincodeLocationService.PincodeLocation;
 import com.example.demo.service.PostalSearchService;
 import com.example.demo.service.PostalSearchService.PostalSearchInfo;
 import com.example.demo.service.PostalLookupService;
@@ -9,16 +14,28 @@ import com.example.demo.service.ReverseGeocodeService;
 import com.example.demo.service.ReverseGeocodeService.ReverseInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Simplified geo controller: only GPS reverse geocoding remains.
@@ -30,14 +47,27 @@ public class GeoController {
     private final PostalLookupService postalLookupService;
     private final ReverseGeocodeService reverseGeocodeService;
     private final PostalSearchService postalSearchService;
-    private final JdbcTemplate jdbcTemplate;
+    private final PincodeLocationService pincodeLocationService;
+    private final NominatimRateGovernor nominatimRateGovernor;
+    private final GeoCacheStore geoCacheStore;
+    private final GeoCacheWarmer geoCacheWarmer;
+    private final ExecutorService geoLookupExecutor;
     private static final Logger log = LoggerFactory.getLogger(GeoController.class);
 
-    public GeoController(PostalLookupService postalLookupService, ReverseGeocodeService reverseGeocodeService, PostalSearchService postalSearchService, JdbcTemplate jdbcTemplate) {
+    private static final int BATCH_MAX_PINCODES = 100;
+
+    @Value("${app.geo.batch.timeout-ms:8000}")
+    private long batchTimeoutMs;
+
+    public GeoController(PostalLookupService postalLookupService, ReverseGeocodeService reverseGeocodeService, PostalSearchService postalSearchService, PincodeLocationService pincodeLocationService, NominatimRateGovernor nominatimRateGovernor, GeoCacheStore geoCacheStore, GeoCacheWarmer geoCacheWarmer, @Qualifier("geoLookupExecutor") ExecutorService geoLookupExecutor) {
         this.postalLookupService = postalLookupService;
         this.reverseGeocodeService = reverseGeocodeService;
         this.postalSearchService = postalSearchService;
-        this.jdbcTemplate = jdbcTemplate;
+        this.pincodeLocationService = pincodeLocationService;
+        this.nominatimRateGovernor = nominatimRateGovernor;
+        this.geoCacheStore = geoCacheStore;
+        this.geoCacheWarmer = geoCacheWarmer;
+        this.geoLookupExecutor = geoLookupExecutor;
     }
 
     private static String normalizePin(String pincode) {
@@ -118,82 +148,187 @@ public class GeoController {
             return ResponseEntity.ok(out);
         }
 
-        // 1) Local mapping (Puducherry UT enclaves)
-        String localDistrict = PUDUCHERRY_LOCAL_PIN_TO_DISTRICT.get(pin);
-        if (localDistrict != null) {
-            out.put("district", localDistrict);
-            out.put("state", "Puducherry");
-            out.put("source", "local");
-            out.put("valid", true);
+        if (resolveLocal(pin, out) || resolveFromDb(pin, out)) {
             return ResponseEntity.ok(out);
         }
+        resolveUpstream(pin, out);
+        return ResponseEntity.ok(out);
+    }
+
+    /**
+     * Resolve up to {@value #BATCH_MAX_PINCODES} pincodes in one round trip.
+     * Body: {"pincodes": ["110001", "400001", ...]}
+     *
+     * Local, DB and cached answers are returned straight away (flagged {@code cached=true});
+     * only the misses go upstream, concurrently on a small bounded pool. Nominatim calls still
+     * queue on the shared rate governor, so a large batch cannot exceed the upstream limits.
+     * Items that do not finish within the batch deadline come back with source "timeout".
+     */
+    @PostMapping("/resolve-batch")
+    public ResponseEntity<Map<String,Object>> resolveBatch(@RequestBody(required = false) Map<String, Object> body) {
+        Map<String,Object> response = new HashMap<>();
+        Object raw = body == null ? null : body.get("pincodes");
+        if (!(raw instanceof List<?> list)) {
+            response.put("error", "pincodes array is required");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        // Dedupe while keeping the caller's order
+        Set<String> pins = new LinkedHashSet<>();
+        for (Object o : list) {
+            pins.add(normalizePin(o == null ? null : String.valueOf(o)));
+        }
+        if (pins.size() > BATCH_MAX_PINCODES) {
+            response.put("error", "At most " + BATCH_MAX_PINCODES + " pincodes per request");
+            return ResponseEntity.badRequest().body(response);
+        }
+
+        Map<String, Map<String,Object>> results = new LinkedHashMap<>();
+        Map<String, Future<Map<String,Object>>> pending = new LinkedHashMap<>();
+        int cachedCount = 0;
+
+        for (String pin : pins) {
+            Map<String,Object> item = new HashMap<>();
+            item.put("pincode", pin);
+            results.put(pin, item);
+
+            if (!isValidPin(pin)) {
+                item.put("valid", false);
+                item.put("message", "Invalid pincode");
+                item.put("source", "none");
+                continue;
+            }
+            if (resolveLocal(pin, item) || resolveFromDb(pin, item) || resolveFromCache(pin, item)) {
+                item.put("cached", true);
+                cachedCount++;
+                continue;
+            }
+            try {
+                pending.put(pin, geoLookupExecutor.submit(() -> {
+                    Map<String,Object> r = new HashMap<>();
+                    r.put("pincode", pin);
+                    resolveUpstream(pin, r);
+                    r.put("cached", false);
+                    return r;
+                }));
+            } catch (RejectedExecutionException e) {
+                markUnresolved(item, "busy", "Lookup capacity exhausted, retry later");
+            }
+        }
 
-        // 2) DB fallback: use last known registration location
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchTimeoutMs);
+        for (Map.Entry<String, Future<Map<String,Object>>> e : pending.entrySet()) {
+            Future<Map<String,Object>> f = e.getValue();
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                results.put(e.getKey(), f.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException te) {
+                f.cancel(true);
+                markUnresolved(results.get(e.getKey()), "timeout", "Lookup did not finish in time");
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                f.cancel(true);
+                markUnresolved(results.get(e.getKey()), "timeout", "Lookup interrupted");
+            } catch (ExecutionException ee) {
+                log.info("Geo resolve-batch: lookup failed for {} -> {}", e.getKey(), ee.getCause() == null ? ee.toString() : ee.getCause().toString());
+                markUnresolved(results.get(e.getKey()), "none", "Unable to resolve pincode");
+            }
+        }
+
+        response.put("results", results);
+        response.put("count", results.size());
+        response.put("cachedCount", cachedCount);
+        response.put("upstreamCount", pending.size());
+        return ResponseEntity.ok(response);
+    }
+
+    // 1) Local mapping (Puducherry UT enclaves)
+    private boolean resolveLocal(String pin, Map<String,Object> out) {
+        String localDistrict = PUDUCHERRY_LOCAL_PIN_TO_DISTRICT.get(pin);
+        if (localDistrict == null) return false;
+        out.put("district", localDistrict);
+        out.put("state", "Puducherry");
+        out.put("source", "local");
+        out.put("valid", true);
+        return true;
+    }
+
+    // 2) DB fallback: location our own listings use for this pincode (pincode_location, PK lookup)
+    private boolean resolveFromDb(String pin, Map<String,Object> out) {
         try {
-            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
-                "SELECT city, state FROM registration WHERE pincode = ? ORDER BY id DESC LIMIT 1",
-                pin
-            );
-            if (rows != null && !rows.isEmpty()) {
-                Map<String, Object> r = rows.get(0);
-                String city = r.get("city") == null ? null : String.valueOf(r.get("city")).trim();
-                String st = r.get("state") == null ? null : String.valueOf(r.get("state")).trim();
+            PincodeLocation loc = pincodeLocationService.find(pin);
+            if (loc != null) {
+                String city = loc.district() == null ? null : loc.district().trim();
+                String st = loc.state() == null ? null : loc.state().trim();
                 if (city != null && !city.isBlank() && st != null && !st.isBlank()) {
                     out.put("district", city);
                     out.put("city", city);
                     out.put("state", st);
                     out.put("source", "db");
                     out.put("valid", true);
-                    return ResponseEntity.ok(out);
+                    return true;
                 }
             }
         } catch (Exception e) {
             log.debug("Geo resolve: DB lookup failed for pincode={}", pin, e);
         }
+        return false;
+    }
+
+    // Previously resolved India Post / Nominatim answers (memory or geo_cache), no upstream call
+    private boolean resolveFromCache(String pin, Map<String,Object> out) {
+        return applyPostal(postalLookupService.peek(pin), out)
+            || applyNominatim(postalSearchService.peek(pin), out);
+    }
 
-        // 3) India Post
+    // 3) India Post, then 4) Nominatim fallback
+    private void resolveUpstream(String pin, Map<String,Object> out) {
         try {
-            PostalInfo pinInfo = postalLookupService.resolve(pin);
-            if (pinInfo != null) {
-                String d = pinInfo.district();
-                String s = pinInfo.state();
-                if (d != null && !d.isBlank() && s != null && !s.isBlank()) {
-                    out.put("district", d);
-                    out.put("state", s);
-                    out.put("source", "postal");
-                    out.put("valid", true);
-                    return ResponseEntity.ok(out);
-                }
-            }
+            if (applyPostal(postalLookupService.resolve(pin), out)) return;
         } catch (Exception e) {
             log.info("Geo resolve: IndiaPost failed for {} -> {}", pin, e.toString());
         }
 
-        // 4) Nominatim fallback
         try {
-            PostalSearchInfo info = postalSearchService.searchByPincode(pin);
-            if (info != null) {
-                String d = info.district();
-                String s = info.state();
-                if (d != null && !d.isBlank() && s != null && !s.isBlank()) {
-                    out.put("district", d);
-                    out.put("state", s);
-                    if (info.city() != null && !info.city().isBlank()) {
-                        out.put("city", info.city());
-                    }
-                    out.put("source", "nominatim");
-                    out.put("valid", true);
-                    return ResponseEntity.ok(out);
-                }
-            }
+            if (applyNominatim(postalSearchService.searchByPincode(pin), out)) return;
         } catch (Exception e) {
             log.info("Geo resolve: Nominatim failed for {} -> {}", pin, e.toString());
         }
 
+        markUnresolved(out, "none", "Unable to resolve pincode");
+    }
+
+    private static boolean applyPostal(PostalInfo pinInfo, Map<String,Object> out) {
+        if (pinInfo == null) return false;
+        String d = pinInfo.district();
+        String s = pinInfo.state();
+        if (d == null || d.isBlank() || s == null || s.isBlank()) return false;
+        out.put("district", d);
+        out.put("state", s);
+        out.put("source", "postal");
+        out.put("valid", true);
+        return true;
+    }
+
+    private static boolean applyNominatim(PostalSearchInfo info, Map<String,Object> out) {
+        if (info == null) return false;
+        String d = info.district();
+        String s = info.state();
+        if (d == null || d.isBlank() || s == null || s.isBlank()) return false;
+        out.put("district", d);
+        out.put("state", s);
+        if (info.city() != null && !info.city().isBlank()) {
+            out.put("city", info.city());
+        }
+        out.put("source", "nominatim");
+        out.put("valid", true);
+        return true;
+    }
+
+    private static void markUnresolved(Map<String,Object> out, String source, String message) {
         out.put("valid", false);
-        out.put("message", "Unable to resolve pincode");
-        out.put("source", "none");
-        return ResponseEntity.ok(out);
+        out.put("message", message);
+        out.put("source", source);
     }
     
     /**
@@ -225,20 +360,7 @@ public class GeoController {
                 String dist = district.trim();
                 String st = state == null ? "" : state.trim();
 
-                StringBuilder sql = new StringBuilder();
-                List<Object> params = new ArrayList<>();
-
-                sql.append("SELECT DISTINCT pincode FROM registration WHERE LOWER(TRIM(city)) = LOWER(TRIM(?))");
-                params.add(dist);
-                if (!st.isBlank()) {
-                    sql.append(" AND LOWER(TRIM(state)) = LOWER(TRIM(?))");
-                    params.add(st);
-                }
-                sql.append(" AND pincode IS NOT NULL AND TRIM(pincode) <> ''");
-                sql.append(" ORDER BY pincode");
-                sql.append(" LIMIT 500");
-
-                List<String> pins = jdbcTemplate.queryForList(sql.toString(), String.class, params.toArray());
+                List<String> pins = pincodeLocationService.findPincodesByDistrict(dist, st, 500);
                 List<PincodeDetails> details = new ArrayList<>();
                 if (pins != null) {
                     for (String p : pins) {
@@ -260,4 +382,17 @@ public class GeoController {
         response.put("source", source);
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Outbound geo lookup diagnostics (Nominatim queue depth and queue-time counters,
+     * persistent cache hit/miss and write counters, cache warmer progress). Requires a JWT.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> out = new HashMap<>();
+        out.put("nominatim", nominatimRateGovernor.snapshot());
+        out.put("cache", geoCacheStore.snapshot());
+        out.put("warmer", geoCacheWarmer.snapshot());
+        return ResponseEntity.ok(out);
+    }
 }
@@ -2,15 +2,15 @@ package com.example.demo.controller;
 
 import java.io.IOException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.service.ImageMigrationService;
@@ -27,27 +27,40 @@ public class ImageMigrationController {
     private ImageMigrationService migrationService;
     
     /**
-     * Migrate all registrations from flat structure to folder structure
+     * Start (or resume from the last checkpoint) the bulk flat -> folder migration in the background.
+     * Poll GET /api/migration/images/status for progress.
      */
     @PostMapping("/images")
-    public ResponseEntity<?> migrateAllImages() {
-        try {
-            List<String> results = migrationService.migrateAllRegistrations();
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "Migration completed");
-            response.put("results", results);
-            
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            log.warn("Error during image migration", e);
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "Error during migration");
-            
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
+    public ResponseEntity<?> migrateAllImages(@RequestParam(value = "restart", defaultValue = "false") boolean restart) {
+        boolean started = migrationService.start(restart);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", started);
+        response.put("message", started ? "Migration started" : "Migration is already running");
+        response.put("status", migrationService.status());
+
+        return started ? ResponseEntity.accepted().body(response) : ResponseEntity.status(409).body(response);
+    }
+
+    /**
+     * Progress, throughput and recent errors of the bulk migration
+     */
+    @GetMapping("/images/status")
+    public ResponseEntity<?> migrationStatus() {
+        return ResponseEntity.ok(migrationService.status());
+    }
+
+    /**
+     * Stop the bulk migration after the current page; a later start resumes from the checkpoint
+     */
+    @PostMapping("/images/stop")
+    public ResponseEntity<?> stopMigration() {
+        boolean stopping = migrationService.stop();
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", stopping);
+        response.put("message", stopping ? "Migration will stop after the current page" : "Migration is not running");
+        return ResponseEntity.ok(response);
     }
     
     /**
@@ -73,4 +86,4 @@ public class ImageMigrationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
     }
-} 
\ No newline at end of file
+} 
@@ -1,6 +1,29 @@
 package com.example.demo.controller;
 
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -8,16 +31,48 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.util.AntPathMatcher;
 
+import com.example.demo.model.Registration;
+import com.example.demo.repository.RegistrationRepository;
+import com.example.demo.service.ImageDiskCache;
+import com.example.demo.service.ImageDiskCache.Entry;
+import com.example.demo.service.ImageDiskCache.Loaded;
+import com.example.demo.service.ImageDiskCache.Lookup;
+import com.example.demo.service.ImageObjectStore;
+import com.example.demo.service.ImageProcessingService;
+import com.example.demo.service.ImageProcessingService.ProcessedImage;
+import com.example.demo.util.ResponsiveImages;
+import com.example.demo.util.ResponsiveImages.Variant;
+
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 /**
- * Lightweight image proxy: keeps pretty URL compatibility but no longer resizes or watermarks.
- * Simply redirects to the public Supabase object. New images are already processed at upload.
+ * Image proxy for pretty URLs. Images are processed at upload.
+ *
+ * In the default {@code redirect} mode it sends a 302 to the public Supabase object. In
+ * {@code proxy} mode ({@code app.images.proxy.mode=proxy}) it serves the object itself from
+ * the local disk cache, with ETag/If-None-Match and single byte-range support. Content-addressed
+ * keys never change, so they are sent as immutable.
+ *
+ * Vehicle images accept {@code ?w=} (snapped to {@code app.images.variant-widths}). A variant
+ * recorded at upload is used when there is one; legacy images without variants are resized on
+ * first request and the derivative is kept in the disk cache, in either mode. The resize runs on
+ * the bounded image pool; when it is saturated the request is redirected to the original.
  */
 @RestController
 @RequestMapping("/api/images")
 public class ImageProxyController {
 
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    // Tomcat's sendfile hand-off (used by its DefaultServlet too)
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long SENDFILE_MIN_BYTES = 48 * 1024;
+    // Disk cache namespace for resized derivatives
+    private static final int MAX_VARIANT_LOOKUPS = 10_000;
+
     @Value("${supabase.url}")
     private String supabaseUrl;
 
@@ -27,42 +82,355 @@ public class ImageProxyController {
     @Value("${supabase.profile.bucket.name:profile-photos}")
     private String profileBucketName;
 
+    @Value("${app.images.proxy.mode:redirect}")
+    private String mode;
+
+    @Value("${app.images.proxy.max-age-seconds:300}")
+    private long maxAgeSeconds;
+
+    @Value("${app.images.proxy.sendfile:true}")
+    private boolean sendfileEnabled;
+
+    @Value("${app.images.variant-widths:160,360,720,1200}")
+    private List<Integer> variantWidths;
+
+    // How long a "which recorded variant serves (image, width)" answer is reused
+    @Value("${app.images.resize.variant-lookup-ttl-seconds:600}")
+    private long variantLookupTtlSeconds;
+
+    // Longest a request waits for an on-demand resize before falling back to the original
+    @Value("${app.images.resize.timeout-ms:10000}")
+    private long resizeTimeoutMs;
+
+    // Resized derivatives are rechecked against their original after this long
+    @Value("${app.images.resize.derived-ttl-seconds:3600}")
+    private long derivedTtlSeconds;
+
+    @Autowired
+    private ImageDiskCache imageDiskCache;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    @Autowired
+    private RegistrationRepository registrationRepository;
+
+    @Autowired
+    @Qualifier("imageUploadExecutor")
+    private ExecutorService imageExecutor;
+
+    // "{key}@{width}" -> recorded variant key ("" when there is none); cleared when full
+    private final ConcurrentHashMap<String, VariantLookup> variantLookups = new ConcurrentHashMap<>();
+
+    private record VariantLookup(String key, long expiresAt) {}
+
     @GetMapping("/vehicles/{registrationId}/{filename:.+}")
-    public ResponseEntity<Void> redirectVehicleImage(
+    public void vehicleImage(
             @PathVariable("registrationId") String registrationId,
-            @PathVariable("filename") String filename) {
-        try {
-            String target = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + registrationId + "/" + filename;
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.LOCATION, target);
-            // Cache redirect for a short time (client will cache final image separately)
-            headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=300");
-            return new ResponseEntity<>(headers, HttpStatus.FOUND); // 302 redirect
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            @PathVariable("filename") String filename,
+            @RequestParam(value = "w", required = false) Integer width,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        String key = registrationId + "/" + filename;
+        if (width == null || width <= 0 || key.contains("..")) {
+            serve(bucketName, key, false, request, response);
+            return;
+        }
+        int w = snapWidth(width);
+        String variantKey = recordedVariant(registrationId, key, w);
+        if (variantKey != null) {
+            // Already processed at upload: serve the stored rendition rather than re-watermarking
+            serve(bucketName, variantKey, ImageObjectStore.isCasKey(variantKey), request, response);
+            return;
+        }
+        serveDerived(bucketName, key, w, request, response);
+    }
+
+    /** Content-addressed vehicle images: {@code cas/ab/<sha256>.<ext>} */
+    @GetMapping("/vehicles/cas/{shard}/{filename:.+}")
+    public void contentAddressedImage(
+            @PathVariable("shard") String shard,
+            @PathVariable("filename") String filename,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+        if (!shard.matches("[0-9a-f]{2}") || !filename.matches("[0-9a-f]{64}\\.[A-Za-z0-9]+") || !filename.startsWith(shard)) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
         }
+        serve(bucketName, "cas/" + shard + "/" + filename, true, request, response);
     }
 
     @GetMapping("/profile/**")
-    public ResponseEntity<Void> redirectProfileImage(HttpServletRequest request) {
+    public void profileImage(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        String bestMatchPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String remaining = new AntPathMatcher().extractPathWithinPattern(bestMatchPattern, path);
+        // remaining is the object key inside the profile bucket (may contain slashes)
+        if (remaining == null) remaining = "";
+        remaining = remaining.replaceAll("^/+", "");
+        if (remaining.isBlank()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        serve(profileBucketName, remaining, false, request, response);
+    }
+
+    /** Disk cache counters (proxy mode). Requires a JWT. */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(imageDiskCache.snapshot());
+    }
+
+    private void serve(String bucket, String key, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (key.contains("..")) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (!"proxy".equalsIgnoreCase(mode)) {
+            redirect(bucket, key, immutable, response);
+            return;
+        }
+
+        Lookup lookup = imageDiskCache.get(bucket, key);
+        if (lookup.notFound()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (lookup.entry() == null) {
+            // Too large to cache or storage hiccup: let the client fetch it directly
+            redirect(bucket, key, false, response);
+            return;
+        }
+        try {
+            writeEntry(lookup.entry(), immutable, request, response);
+        } catch (NoSuchFileException e) {
+            imageDiskCache.invalidate(lookup.entry());
+            if (!response.isCommitted()) {
+                response.reset();
+                redirect(bucket, key, false, response);
+            }
+        }
+    }
+
+    /** Resized copy of bucket/key from the disk cache; falls back to the original on any failure. */
+    private void serveDerived(String bucket, String key, int width, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Lookup lookup = imageDiskCache.get(ImageDiskCache.DERIVED, ImageDiskCache.derivedKey(width, bucket, key),
+                TimeUnit.SECONDS.toMillis(derivedTtlSeconds), (target, stale) -> resize(bucket, key, width, target, stale));
+        if (lookup.notFound()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        if (lookup.entry() == null) {
+            // Original too large, undecodable, over the pixel budget, or the image pool is busy
+            redirect(bucket, key, false, response);
+            return;
+        }
+        try {
+            writeEntry(lookup.entry(), false, request, response);
+        } catch (NoSuchFileException e) {
+            imageDiskCache.invalidate(lookup.entry());
+            if (!response.isCommitted()) {
+                response.reset();
+                redirect(bucket, key, false, response);
+            }
+        }
+    }
+
+    /**
+     * Derived-cache loader: original (through the same disk cache) -> resize + watermark -> target.
+     * Decode and encode run on the image pool, never more than it allows at once. A stale
+     * derivative whose original has not changed is kept as is.
+     */
+    private Loaded resize(String bucket, String key, int width, Path target, Entry stale) throws IOException {
+        Lookup original = imageDiskCache.get(bucket, key);
+        if (original.notFound()) return null;
+        if (original.entry() == null) {
+            throw new IOException("Original not cacheable");
+        }
+        // Validator of the derivative: which original it was made from
+        String madeFrom = "w" + width + ":" + original.entry().etag();
+        if (stale != null && madeFrom.equals(stale.upstreamEtag())) {
+            return Loaded.unchanged();
+        }
+        FileSystemResource source = new FileSystemResource(original.entry().file());
+        Future<ProcessedImage> task;
         try {
-            String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
-            String bestMatchPattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
-            String remaining = new AntPathMatcher().extractPathWithinPattern(bestMatchPattern, path);
-            // remaining is the object key inside the profile bucket (may contain slashes)
-            if (remaining == null) remaining = "";
-            remaining = remaining.replaceAll("^/+", "");
-            if (remaining.isBlank()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            task = imageExecutor.submit(() -> imageProcessingService.resizeAndWatermark(source, width));
+        } catch (RejectedExecutionException e) {
+            throw new IOException("Image pool saturated", e);
+        }
+        ProcessedImage image;
+        try {
+            image = task.get(resizeTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            task.cancel(true);
+            throw new IOException("Resize timed out");
+        } catch (InterruptedException e) {
+            task.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Resize interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Resize failed", e.getCause());
+        }
+        if (image == null) {
+            throw new IOException("Original could not be decoded");
+        }
+        // Written here, not on the pool: after a timeout the target is already cleaned up
+        Files.write(target, image.bytes());
+        return new Loaded(image.contentType(), madeFrom);
+    }
+
+    /** Smallest configured width that covers the request, else the largest one. */
+    private int snapWidth(int requested) {
+        List<Integer> widths = new ArrayList<>(variantWidths);
+        widths.sort(Comparator.naturalOrder());
+        for (int w : widths) {
+            if (w >= requested) return w;
+        }
+        return widths.isEmpty() ? requested : widths.get(widths.size() - 1);
+    }
+
+    /** Key of the variant recorded at upload that best serves {@code width}, or null if none. */
+    private String recordedVariant(String registrationId, String key, int width) {
+        String memoKey = key + "@" + width;
+        long now = System.currentTimeMillis();
+        VariantLookup memo = variantLookups.get(memoKey);
+        if (memo != null && memo.expiresAt() > now) {
+            return memo.key().isEmpty() ? null : memo.key();
+        }
+
+        String found = null;
+        if (registrationId.matches("\\d{1,18}")) {
+            Registration reg = registrationRepository.findById(Long.parseLong(registrationId)).orElse(null);
+            if (reg != null) {
+                String prefix = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/";
+                List<Variant> variants = ResponsiveImages.parse(reg.getVehicleImageVariantsJson()).get(prefix + key);
+                Variant best = null;
+                if (variants != null) {
+                    for (Variant v : variants) {
+                        if (v.url() == null || !v.url().startsWith(prefix)) continue;
+                        if (best == null
+                                || (best.width() < width && v.width() > best.width())
+                                || (v.width() >= width && v.width() < best.width())) {
+                            best = v;
+                        }
+                    }
+                }
+                if (best != null) found = best.url().substring(prefix.length());
+            }
+        }
+
+        if (variantLookups.size() >= MAX_VARIANT_LOOKUPS) variantLookups.clear();
+        variantLookups.put(memoKey, new VariantLookup(found != null ? found : "", now + variantLookupTtlSeconds * 1000));
+        return found;
+    }
+
+    private void redirect(String bucket, String key, boolean immutable, HttpServletResponse response) {
+        response.setStatus(HttpStatus.FOUND.value()); // 302 redirect
+        response.setHeader(HttpHeaders.LOCATION, supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + key);
+        // Cache redirect for a short time (client will cache final image separately)
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : "public, max-age=300");
+    }
+
+    private void writeEntry(Entry entry, boolean immutable, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long size = entry.size();
+        response.setHeader(HttpHeaders.ETAG, entry.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : "public, max-age=" + maxAgeSeconds);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (etagMatches(request.getHeader(HttpHeaders.IF_NONE_MATCH), entry.etag())) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        long start = 0;
+        long end = size - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // Multi-range requests are answered with the full body, which RFC 9110 allows
+        if (range != null && !range.contains(",") && (ifRange == null || ifRange.equals(entry.etag()))) {
+            long[] r = parseRange(range, size);
+            if (r != null && r.length == 0) {
+                r = new long[] { 0, size - 1 }; // malformed: ignore the header
+            } else if (r == null) {
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                return;
+            }
+            start = r[0];
+            end = r[1];
+            if (start == 0 && end == size - 1) {
+                response.setStatus(HttpStatus.OK.value());
+            } else {
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            }
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+
+        long length = end - start + 1;
+        response.setContentType(entry.contentType());
+        response.setContentLengthLong(length);
+        if ("HEAD".equalsIgnoreCase(request.getMethod())) return;
+
+        if (sendfileEnabled && length >= SENDFILE_MIN_BYTES && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The container opens and writes the file with sendfile(2) after we return; the disk
+            // cache keeps evicted files for a grace period so the path stays valid until then
+            request.setAttribute(SENDFILE_FILENAME, entry.file().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(entry.file(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = length;
+            while (remaining > 0) {
+                long n = channel.transferTo(position, remaining, out);
+                if (n <= 0) break;
+                position += n;
+                remaining -= n;
             }
+        }
+    }
 
-            String target = supabaseUrl + "/storage/v1/object/public/" + profileBucketName + "/" + remaining;
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.LOCATION, target);
-            headers.add(HttpHeaders.CACHE_CONTROL, "public, max-age=300");
-            return new ResponseEntity<>(headers, HttpStatus.FOUND);
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || etag == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String c = candidate.trim();
+            if (c.equals("*")) return true;
+            if (c.startsWith("W/")) c = c.substring(2);
+            if (c.equals(etag)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Single "bytes=a-b", "bytes=a-" or "bytes=-n" range.
+     * Returns null when unsatisfiable and an empty array when malformed.
+     */
+    private static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=")) return new long[0];
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) return new long[0];
+        if (size == 0) return null;
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            if (first.isEmpty()) {
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) return null;
+                return new long[] { Math.max(0, size - suffix), size - 1 };
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            if (start >= size || start > end) return null;
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return new long[0];
         }
     }
 }
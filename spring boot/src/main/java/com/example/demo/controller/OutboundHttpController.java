@@ -0,0 +1,35 @@
+package com.example.demo.controller;
+
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.demo.service.OutboundHttpMetrics;
+import com.example.demo.service.RetryExecutor;
+
+@RestController
+@RequestMapping("/api/http")
+public class OutboundHttpController {
+
+    @Autowired
+    private OutboundHttpMetrics outboundHttpMetrics;
+
+    @Autowired
+    private RetryExecutor retryExecutor;
+
+    /** Per-host outbound call counters (latency buckets, errors, new connections). Requires a JWT. */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(outboundHttpMetrics.snapshot());
+    }
+
+    /** Storage retry counters (retries, recovered, exhausted, budget denials). Requires a JWT. */
+    @GetMapping("/retries")
+    public ResponseEntity<Map<String, Object>> retries() {
+        return ResponseEntity.ok(retryExecutor.snapshot());
+    }
+}
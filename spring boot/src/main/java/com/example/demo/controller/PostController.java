@@ -17,6 +17,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import com.example.demo.dto.PostCreateRequest;
 import com.example.demo.dto.PostResponse;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
 import com.example.demo.service.PostService;
 import com.example.demo.service.SupabaseService;
 
@@ -59,6 +60,8 @@ public class PostController {
         try {
             String url = supabaseService.uploadPostImage(image);
             return ResponseEntity.ok(java.util.Map.of("url", url));
+        } catch (ImageRejectedException ex) {
+            return ResponseEntity.badRequest().body(ex.getMessage());
         } catch (Exception ex) {
             return ResponseEntity.status(500).body("Image upload failed");
         }
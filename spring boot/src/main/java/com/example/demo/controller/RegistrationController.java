@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.env.Environment;
@@ -29,7 +30,11 @@ import com.example.demo.repository.RegistrationImageFolderRepository;
 import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.service.ImageUploadJobService;
 import com.example.demo.service.SupabaseService;
+import com.example.demo.util.ResponsiveImages;
+import com.example.demo.util.ResponsiveImages.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
  
@@ -52,6 +57,9 @@ public class RegistrationController {
     @Autowired
     private RegistrationImageFolderRepository registrationImageFolderRepository;
 
+    @Autowired
+    private ImageUploadJobService imageUploadJobService;
+
     @Autowired
     private Environment environment;
 
@@ -131,6 +139,7 @@ public class RegistrationController {
                 List<String> imgs = reg.getVehicleImageUrls();
                 data.put("images", imgs);
                 data.put("vehicleImageUrls", imgs);
+                data.put("imageVariants", ResponsiveImages.describe(imgs, reg.getVehicleImageVariantsJson()));
                 String json = reg.getVehicleImageUrlsJson();
                 if (json != null && !json.isBlank()) {
                     data.put("vehicle_image_urls_json", json);
@@ -195,7 +204,8 @@ public class RegistrationController {
             @RequestParam("city") String city,
             @RequestParam("pincode") String pincode,
             @RequestParam(value = "alternateContactNumber", required = false) String alternateContactNumber,
-            @RequestParam("vehicleImages") MultipartFile[] vehicleImages
+            @RequestParam("vehicleImages") MultipartFile[] vehicleImages,
+            @RequestParam(value = "async", defaultValue = "false") boolean async
     ) {
         try {
             String currentContact = SecurityUtils.currentContactOrNull();
@@ -247,6 +257,35 @@ public class RegistrationController {
 
             // Save to local database first to get the ID
             Registration savedRegistration = registrationRepository.save(registration);
+
+            if (async) {
+                // Images are processed in the background; the client polls the job for the URLs
+                String jobId;
+                try {
+                    jobId = imageUploadJobService.submit(savedRegistration.getId(), currentContact, vehicleImages);
+                } catch (RejectedExecutionException e) {
+                    registrationRepository.delete(savedRegistration);
+                    Map<String, Object> errorResponse = new HashMap<>();
+                    errorResponse.put("success", false);
+                    errorResponse.put("message", "Image processing is busy, please try again shortly");
+                    return ResponseEntity.status(503).header("Retry-After", "30").body(errorResponse);
+                }
+                try {
+                    supabaseService.saveRegistration(registration);
+                } catch (Exception e) {
+                    log.warn("Failed to save registration to Supabase (registrationId={})", savedRegistration.getId(), e);
+                }
+
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", "Vehicle registered; images are being processed");
+                response.put("id", savedRegistration.getId());
+                response.put("userId", savedRegistration.getUserId());
+                response.put("imageFolderPath", savedRegistration.getId().toString());
+                response.put("jobId", jobId);
+                response.put("statusUrl", "/api/registration-images/jobs/" + jobId);
+                return ResponseEntity.accepted().body(response);
+            }
             
             // Now upload images to Supabase storage in a folder named after registration ID
             // The uploadImagesToFolder method now returns a Map with folderPath and imageUrls
@@ -258,8 +297,11 @@ public class RegistrationController {
             List<String> imageUrls = (List<String>) uploadResult.get("imageUrls");
             
             // Update the registration with image URLs for backward compatibility
+            @SuppressWarnings("unchecked")
+            Map<String, List<Variant>> imageVariants = (Map<String, List<Variant>>) uploadResult.get("imageVariants");
             if (imageUrls != null && !imageUrls.isEmpty()) {
                 savedRegistration.setVehicleImageUrls(imageUrls);
+                savedRegistration.setVehicleImageVariantsJson(ResponsiveImages.merge(savedRegistration.getVehicleImageVariantsJson(), imageVariants, imageUrls));
                 registrationRepository.save(savedRegistration);
                 log.debug("Saved image URLs to registration (registrationId={}, count={})", savedRegistration.getId(), imageUrls.size());
             }
@@ -283,7 +325,7 @@ public class RegistrationController {
             log.warn("Error processing registration", e);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
-            errorResponse.put("message", "Error processing registration");
+            errorResponse.put("message", e instanceof ImageRejectedException ? e.getMessage() : "Error processing registration");
             
             return ResponseEntity.badRequest().body(errorResponse);
         }
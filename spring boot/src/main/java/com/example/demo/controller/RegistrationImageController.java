@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -23,7 +24,12 @@ import com.example.demo.model.Registration;
 import com.example.demo.model.RegistrationImageFolder;
 import com.example.demo.repository.RegistrationImageFolderRepository;
 import com.example.demo.repository.RegistrationRepository;
+import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.service.ImageUploadJobService;
 import com.example.demo.service.SupabaseService;
+import com.example.demo.util.ResponsiveImages;
+import com.example.demo.util.ResponsiveImages.Variant;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -41,14 +47,19 @@ public class RegistrationImageController {
     
     @Autowired
     private RegistrationImageFolderRepository registrationImageFolderRepository;
+
+    @Autowired
+    private ImageUploadJobService imageUploadJobService;
     
     /**
-     * Upload images for a specific registration ID using the new folder structure
+     * Upload images for a specific registration ID using the new folder structure.
+     * With {@code async=true} the files are queued and 202 is returned with a job id to poll.
      */
     @PostMapping("/{registrationId}")
     public ResponseEntity<?> uploadImagesToFolder(
             @PathVariable Long registrationId,
-            @RequestParam("images") MultipartFile[] images
+            @RequestParam("images") MultipartFile[] images,
+            @RequestParam(value = "async", defaultValue = "false") boolean async
     ) {
         try {
             // Check if registration exists
@@ -59,6 +70,14 @@ public class RegistrationImageController {
                 errorResponse.put("message", "Registration not found with ID: " + registrationId);
                 return ResponseEntity.status(404).body(errorResponse);
             }
+
+            if (async) {
+                String currentContact = SecurityUtils.currentContactOrNull();
+                if (currentContact == null) {
+                    return SecurityUtils.forbidden("Forbidden");
+                }
+                return queueUpload(registrationId, currentContact, images);
+            }
             
             // Upload images to Supabase storage in a folder named after registration ID
             Map<String, Object> uploadResult = supabaseService.uploadImagesToFolder(Arrays.asList(images), registrationId);
@@ -68,11 +87,19 @@ public class RegistrationImageController {
             @SuppressWarnings("unchecked")
             List<String> imageUrls = (List<String>) uploadResult.get("imageUrls");
             
-            // Update the registration with the image URLs for backward compatibility
-            Registration registrationEntity = registration.get();
+            // Update the registration with the image URLs for backward compatibility; replaced images are released
+            @SuppressWarnings("unchecked")
+            Map<String, List<Variant>> imageVariants = (Map<String, List<Variant>>) uploadResult.get("imageVariants");
+            Registration registrationEntity = imageUploadJobService.applyUpload(registrationId, imageUrls, imageVariants);
+            if (registrationEntity == null) {
+                // Deleted while we were uploading: drop what we just stored
+                supabaseService.deleteAllVehicleImages(registrationId);
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "Registration not found with ID: " + registrationId);
+                return ResponseEntity.status(404).body(errorResponse);
+            }
             if (imageUrls != null && !imageUrls.isEmpty()) {
-                registrationEntity.setVehicleImageUrls(imageUrls);
-                registrationRepository.save(registrationEntity);
                 log.debug("Saved image URLs to registration via API (registrationId={}, count={})", registrationId, imageUrls.size());
             }
             
@@ -82,18 +109,63 @@ public class RegistrationImageController {
             response.put("registrationId", registrationId);
             response.put("folderPath", folderPath);
             response.put("imageUrls", imageUrls);
+            response.put("imageVariants", ResponsiveImages.describe(imageUrls, registrationEntity.getVehicleImageVariantsJson()));
             
             return ResponseEntity.ok(response);
         } catch (IOException e) {
             log.warn("Error uploading images (registrationId={})", registrationId, e);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
-            errorResponse.put("message", "Error uploading images");
+            errorResponse.put("message", e instanceof ImageRejectedException ? e.getMessage() : "Error uploading images");
             
             return ResponseEntity.badRequest().body(errorResponse);
         }
     }
     
+    private ResponseEntity<?> queueUpload(Long registrationId, String contactNumber, MultipartFile[] images) throws IOException {
+        try {
+            String jobId = imageUploadJobService.submit(registrationId, contactNumber, images);
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Images accepted for processing");
+            response.put("registrationId", registrationId);
+            response.put("jobId", jobId);
+            response.put("statusUrl", "/api/registration-images/jobs/" + jobId);
+            return ResponseEntity.accepted().body(response);
+        } catch (RejectedExecutionException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Image processing is busy, please try again shortly");
+            return ResponseEntity.status(503).header("Retry-After", "30").body(errorResponse);
+        }
+    }
+
+    /**
+     * Status of an asynchronous upload job; only the uploader can see it
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getUploadJob(@PathVariable String jobId) {
+        String currentContact = SecurityUtils.currentContactOrNull();
+        if (currentContact == null) {
+            return SecurityUtils.forbidden("Forbidden");
+        }
+        Map<String, Object> job = imageUploadJobService.find(jobId, currentContact);
+        if (job == null) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Upload job not found");
+            return ResponseEntity.status(404).body(errorResponse);
+        }
+        @SuppressWarnings("unchecked")
+        List<String> imageUrls = (List<String>) job.get("imageUrls");
+        if (ImageUploadJobService.STATUS_SUCCEEDED.equals(job.get("status")) && !imageUrls.isEmpty()) {
+            registrationRepository.findById((Long) job.get("registrationId")).ifPresent(reg ->
+                job.put("imageVariants", ResponsiveImages.describe(imageUrls, reg.getVehicleImageVariantsJson())));
+        }
+        job.put("success", true);
+        return ResponseEntity.ok(job);
+    }
+    
     /**
      * Get all images for a specific registration ID
      */
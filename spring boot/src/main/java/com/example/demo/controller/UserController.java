@@ -29,6 +29,8 @@ import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.SecurityUtils;
 import com.example.demo.service.DeletionAuditService;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.service.PincodeLocationService;
 import com.example.demo.service.PremiumMembershipService;
 import com.example.demo.service.RazorpayPaymentService;
 import com.example.demo.service.SupabaseService;
@@ -75,6 +77,9 @@ public class UserController {
     @Autowired
     private PremiumMembershipService premiumMembershipService;
 
+    @Autowired
+    private PincodeLocationService pincodeLocationService;
+
     @PostMapping("/register")
     public ResponseEntity<?> registerUser(@RequestBody User user) {
         // Endpoint kept for backward-compat; avoid logging full payload.
@@ -367,23 +372,23 @@ public class UserController {
             user.setFullName("User " + contactNumber.substring(Math.max(0, contactNumber.length() - 4)));
         } else {
             log.debug("Found existing user for profile photo upload (maskedContact={})", maskPhone(contactNumber));
-            
-            // If user already has a profile photo, delete the old one
-            if (user.getProfilePhotoUrl() != null && !user.getProfilePhotoUrl().isEmpty()) {
-                try {
-                    supabaseService.deleteProfilePhoto(user.getProfilePhotoUrl());
-                } catch (Exception e) {
-                    log.warn("Failed to delete old profile photo from storage (maskedContact={})", maskPhone(contactNumber), e);
-                    // Continue with upload even if delete fails
-                }
-            }
         }
+        String oldPhotoUrl = user.getProfilePhotoUrl();
         
         try {
             String photoUrl = supabaseService.uploadProfilePhoto(photo);
             user.setProfilePhotoUrl(photoUrl);
             userRepository.save(user);
 
+            // Old photo goes only once the new one is in place, so a rejected upload keeps it
+            if (oldPhotoUrl != null && !oldPhotoUrl.isEmpty()) {
+                try {
+                    supabaseService.deleteProfilePhoto(oldPhotoUrl);
+                } catch (Exception e) {
+                    log.warn("Failed to delete old profile photo from storage (maskedContact={})", maskPhone(contactNumber), e);
+                }
+            }
+
             log.info("Profile photo upload successful (maskedContact={})", maskPhone(contactNumber));
             
             Map<String, Object> response = new HashMap<>();
@@ -392,6 +397,11 @@ public class UserController {
             response.put("message", "Profile photo uploaded successfully");
             
             return ResponseEntity.ok(response);
+        } catch (ImageRejectedException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
         } catch (Exception e) {
             log.warn("Failed to upload profile photo (maskedContact={})", maskPhone(contactNumber), e);
             Map<String, Object> errorResponse = new HashMap<>();
@@ -717,7 +727,7 @@ public class UserController {
                     
                     // Try direct SQL as fallback
                     try {
-                        int rowsDeleted = jdbcTemplate.update("DELETE FROM registration WHERE id = ?", registration.getId());
+                        int rowsDeleted = pincodeLocationService.deleteRegistration(registration.getId());
                         if (rowsDeleted > 0) {
                             log.info("Deleted registration using SQL fallback (registrationId={})", registrationId);
                         } else {
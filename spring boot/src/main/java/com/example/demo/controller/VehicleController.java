@@ -35,7 +35,9 @@ import com.example.demo.repository.RegistrationImageFolderRepository;
 import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.security.SecurityUtils;
+import com.example.demo.service.PincodeLocationService;
 import com.example.demo.service.SupabaseService;
+import com.example.demo.util.ResponsiveImages;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -102,6 +104,9 @@ public class VehicleController {
     
     @Autowired
     private DeletionController deletionController;
+
+    @Autowired
+    private PincodeLocationService pincodeLocationService;
     
     @GetMapping("/vehicles/check")
     public ResponseEntity<?> checkVehicleExists(@RequestParam("vehicleNumber") String vehicleNumber) {
@@ -192,6 +197,7 @@ public class VehicleController {
             vehicle.put("name", reg.getFullName() + "'s " + reg.getVehicleType());
             vehicle.put("type", reg.getVehicleType());
             vehicle.put("images", reg.getVehicleImageUrls());
+            vehicle.put("imageVariants", ResponsiveImages.describe(reg.getVehicleImageUrls(), reg.getVehicleImageVariantsJson()));
             vehicle.put("locationState", reg.getState());
             vehicle.put("locationCity", reg.getCity());
             vehicle.put("locationPincode", reg.getPincode());
@@ -515,6 +521,7 @@ public class VehicleController {
         
         // Add vehicle images
         vehicleData.put("photos", getVehiclePhotos(registration));
+        vehicleData.put("imageVariants", ResponsiveImages.describe(registration.getVehicleImageUrls(), registration.getVehicleImageVariantsJson()));
         
         // Add highlights
         Map<String, String> highlights = new HashMap<>();
@@ -585,6 +592,7 @@ public class VehicleController {
             vehicle.put("name", reg.getFullName() + "'s " + reg.getVehicleType());
             vehicle.put("type", reg.getVehicleType());
             vehicle.put("images", reg.getVehicleImageUrls());
+            vehicle.put("imageVariants", ResponsiveImages.describe(reg.getVehicleImageUrls(), reg.getVehicleImageVariantsJson()));
             vehicle.put("locationState", reg.getState());
             vehicle.put("locationCity", reg.getCity());
             vehicle.put("locationPincode", reg.getPincode());
@@ -811,10 +819,7 @@ public class VehicleController {
             
             // Step 5: Try to delete the registration
             try {
-                int deletedRegistration = jdbcTemplate.update(
-                    "DELETE FROM registration WHERE id = ?", 
-                    registrationId
-                );
+                int deletedRegistration = pincodeLocationService.deleteRegistration(registrationId);
                 result.put("deleted_registration", deletedRegistration);
             } catch (Exception e) {
                 result.put("registration_deletion_error", e.getMessage());
@@ -907,10 +912,7 @@ public class VehicleController {
             }
             
             // Step 6: Delete from registration table using raw SQL
-            int regRows = jdbcTemplate.update(
-                "DELETE FROM registration WHERE id = ?",
-                registrationId
-            );
+            int regRows = pincodeLocationService.deleteRegistration(registrationId);
             log.debug("FORCE DELETE deleted registration rows (rowsDeleted={})", regRows);
             
             // Step 7: Re-enable foreign key checks
@@ -9,6 +9,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -17,6 +18,7 @@ import jakarta.persistence.Transient;
 
 @Entity
 @Table(name = "registration")
+@EntityListeners(RegistrationLocationListener.class)
 public class Registration implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -94,6 +96,14 @@ public class Registration implements Serializable {
     @Transient
     private List<String> vehicleImageUrls = new ArrayList<>();
 
+    // Responsive variants per photo, keyed by the primary URL (see ResponsiveImages)
+    @Column(name = "vehicle_image_variants_json", columnDefinition = "TEXT")
+    private String vehicleImageVariantsJson;
+
+    // Pincode as last loaded or saved, so RegistrationLocationListener sees a pincode change
+    @Transient
+    private String loadedPincode;
+
     // Default constructor
     public Registration() {
         this.registrationDate = LocalDate.now(); // Set default registration date to today
@@ -318,6 +328,14 @@ public class Registration implements Serializable {
         }
     }
     
+    public String getVehicleImageVariantsJson() {
+        return vehicleImageVariantsJson;
+    }
+
+    public void setVehicleImageVariantsJson(String vehicleImageVariantsJson) {
+        this.vehicleImageVariantsJson = vehicleImageVariantsJson;
+    }
+    
     // Getters and setters for service highlights
     public String getHighlight1() {
         return highlight1;
@@ -359,6 +377,14 @@ public class Registration implements Serializable {
         this.highlight5 = highlight5;
     }
     
+    String loadedPincode() {
+        return loadedPincode;
+    }
+
+    void rememberLoadedPincode(String pincode) {
+        this.loadedPincode = pincode;
+    }
+
     @Override
     public String toString() {
         return "Registration{" +
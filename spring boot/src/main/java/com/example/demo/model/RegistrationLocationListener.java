@@ -0,0 +1,47 @@
+package com.example.demo.model;
+
+import java.util.Arrays;
+
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.PincodeLocationService;
+
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/**
+ * Keeps pincode_location in step with registration writes made through JPA.
+ */
+@Component
+public class RegistrationLocationListener {
+
+    private final PincodeLocationService pincodeLocationService;
+
+    public RegistrationLocationListener(PincodeLocationService pincodeLocationService) {
+        this.pincodeLocationService = pincodeLocationService;
+    }
+
+    @PostLoad
+    public void onLoaded(Registration registration) {
+        registration.rememberLoadedPincode(registration.getPincode());
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void onSaved(Registration registration) {
+        pincodeLocationService.record(registration.getPincode(), registration.getCity(), registration.getState());
+        String previous = registration.loadedPincode();
+        if (previous != null && !previous.trim().equals(registration.getPincode() == null ? "" : registration.getPincode().trim())) {
+            // Moved away from its old pincode, which may now belong to another listing or none
+            pincodeLocationService.refresh(Arrays.asList(previous));
+        }
+        registration.rememberLoadedPincode(registration.getPincode());
+    }
+
+    @PostRemove
+    public void onRemoved(Registration registration) {
+        pincodeLocationService.refresh(Arrays.asList(registration.getPincode(), registration.loadedPincode()));
+    }
+}
@@ -1,8 +1,12 @@
 package com.example.demo.repository;
 
 import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -23,4 +27,9 @@ public interface RegistrationRepository extends JpaRepository<Registration, Long
     
     // Find registrations by full name containing the search term (case insensitive)
     List<Registration> findByFullNameContainingIgnoreCase(String fullName);
+
+    // Serializes read-modify-write of the image list (direct uploads finalize slots concurrently)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM Registration r WHERE r.id = :id")
+    Optional<Registration> findByIdForUpdate(@Param("id") Long id);
 }
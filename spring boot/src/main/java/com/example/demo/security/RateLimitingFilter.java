@@ -87,6 +87,11 @@ public class RateLimitingFilter extends OncePerRequestFilter {
     @Value("${app.ratelimit.feedback.ip.window-seconds:300}")
     private int feedbackIpWindowSeconds;
 
+    @Value("${app.ratelimit.geo.batch.ip.limit:20}")
+    private int geoBatchIpLimit;
+    @Value("${app.ratelimit.geo.batch.ip.window-seconds:60}")
+    private int geoBatchIpWindowSeconds;
+
     private final ConcurrentHashMap<String, WindowCounter> counters = new ConcurrentHashMap<>();
 
     @Override
@@ -164,6 +169,11 @@ public class RateLimitingFilter extends OncePerRequestFilter {
             if (PATH_MATCHER.match("/api/save-feedback", path) || PATH_MATCHER.match("/api/save-user-feedback", path)) {
                 return enforceIpOnly(request, "feedback:submit", feedbackIpLimit, feedbackIpWindowSeconds);
             }
+
+            // Batch pincode resolve: public and fans out to upstream geo APIs
+            if (PATH_MATCHER.match("/api/geo/resolve-batch", path)) {
+                return enforceIpOnly(request, "geo:resolve-batch", geoBatchIpLimit, geoBatchIpWindowSeconds);
+            }
         }
         return RateDecision.allow();
     }
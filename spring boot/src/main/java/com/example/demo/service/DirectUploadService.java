@@ -0,0 +1,584 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.model.Registration;
+import com.example.demo.model.User;
+import com.example.demo.repository.RegistrationRepository;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.util.ResponsiveImages;
+import com.example.demo.util.ResponsiveImages.Variant;
+import com.example.demo.util.SpooledMultipartFile;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Direct-to-storage uploads: the raw file goes from the client straight to a private staging
+ * bucket through a short-lived signed URL, so the app servers only see metadata.
+ *
+ * 1. {@link #issue} records the upload and signs a PUT URL for {@code {kind}/{uploadId}}.
+ * 2. The client PUTs the file, then calls finalize ({@link #finalizeUpload}).
+ * 3. A worker on the image job pool streams the staged object to the local spool, runs the
+ *    same processing as the multipart endpoints and attaches the result (registration photo
+ *    slot, RC/DL document, profile photo) or reports its URL (post image).
+ *
+ * With {@code app.uploads.direct.storage=local} URLs point at {@code PUT /api/uploads/stub/{id}}
+ * and staged objects live in {@code local-dir}, so the flow runs without Supabase.
+ */
+@Service
+public class DirectUploadService {
+
+    public static final String KIND_VEHICLE = "vehicle";
+    public static final String KIND_RC = "rc";
+    public static final String KIND_DL = "dl";
+    public static final String KIND_PROFILE = "profile";
+    public static final String KIND_POST = "post";
+    public static final Set<String> KINDS = Set.of(KIND_VEHICLE, KIND_RC, KIND_DL, KIND_PROFILE, KIND_POST);
+
+    public static final String STATUS_ISSUED = "issued";
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_SUCCEEDED = "succeeded";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_EXPIRED = "expired";
+
+    private static final Logger log = LoggerFactory.getLogger(DirectUploadService.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SupabaseService supabaseService;
+    private final RegistrationRepository registrationRepository;
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final OkHttpClient client;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    @Value("${supabase.key}")
+    private String supabaseKey;
+
+    @Value("${app.uploads.direct.storage:supabase}")
+    private String storage;
+
+    @Value("${app.uploads.direct.bucket:upload-staging}")
+    private String stagingBucket;
+
+    @Value("${app.uploads.direct.url-ttl-seconds:900}")
+    private long urlTtlSeconds;
+
+    @Value("${app.uploads.direct.max-bytes:5242880}")
+    private long maxBytes;
+
+    @Value("${app.uploads.direct.local-dir:${java.io.tmpdir}/hpg-upload-stub}")
+    private String localDir;
+
+    @Value("${app.images.jobs.spool-dir:${java.io.tmpdir}/hpg-image-spool}")
+    private String spoolDir;
+
+    @Value("${app.uploads.direct.stale-minutes:30}")
+    private long staleMinutes;
+
+    @Value("${app.uploads.direct.retention-hours:24}")
+    private long retentionHours;
+
+    public DirectUploadService(
+        JdbcTemplate jdbcTemplate,
+        SupabaseService supabaseService,
+        RegistrationRepository registrationRepository,
+        UserRepository userRepository,
+        TransactionTemplate transactionTemplate,
+        @Qualifier("imageJobExecutor") ExecutorService executor,
+        OkHttpClient client
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.supabaseService = supabaseService;
+        this.registrationRepository = registrationRepository;
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.client = client;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public boolean isLocalStorage() {
+        return "local".equalsIgnoreCase(storage);
+    }
+
+    /**
+     * Record an upload and sign its PUT URL. The caller has already checked ownership.
+     *
+     * @param stubBaseUrl this server's base URL, used for the local stub only
+     */
+    public Map<String, Object> issue(String kind, String contactNumber, Long registrationId, Integer slot,
+                                     String contentType, String stubBaseUrl) throws IOException {
+        String uploadId = UUID.randomUUID().toString();
+        String objectKey = kind + "/" + uploadId;
+        String uploadUrl = isLocalStorage()
+            ? stubBaseUrl + "/api/uploads/stub/" + uploadId
+            : signUploadUrl(objectKey);
+        Instant expiresAt = Instant.now().plusSeconds(urlTtlSeconds);
+
+        jdbcTemplate.update(
+            "INSERT INTO direct_uploads (id, kind, contact_number, registration_id, slot, object_key, content_type, status, expires_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            uploadId, kind, contactNumber, registrationId, slot, objectKey, contentType, STATUS_ISSUED,
+            java.sql.Timestamp.from(expiresAt)
+        );
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("uploadId", uploadId);
+        out.put("method", "PUT");
+        out.put("uploadUrl", uploadUrl);
+        out.put("headers", Map.of("Content-Type", contentType));
+        out.put("maxBytes", maxBytes);
+        out.put("expiresAt", expiresAt.toString());
+        out.put("finalizeUrl", "/api/uploads/" + uploadId + "/finalize");
+        return out;
+    }
+
+    /** Supabase signed upload URL ({@code PUT .../object/upload/sign/{bucket}/{key}?token=...}). */
+    private String signUploadUrl(String objectKey) throws IOException {
+        Request request = new Request.Builder()
+                .url(supabaseUrl + "/storage/v1/object/upload/sign/" + stagingBucket + "/" + objectKey)
+                .addHeader("apikey", supabaseKey)
+                .addHeader("Authorization", "Bearer " + supabaseKey)
+                .post(RequestBody.create(MediaType.parse("application/json"), "{}"))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Could not sign upload URL (status=" + response.code() + ")");
+            }
+            String path = objectMapper.readTree(body.string()).path("url").asText("");
+            if (path.isBlank()) {
+                throw new IOException("Could not sign upload URL (no url in response)");
+            }
+            return supabaseUrl + "/storage/v1" + (path.startsWith("/") ? path : "/" + path);
+        }
+    }
+
+    /**
+     * Queue processing of an uploaded file.
+     *
+     * @return false when the upload is unknown, belongs to someone else, is already finalized
+     *         or its URL has expired
+     * @throws RejectedExecutionException when the worker queue is full (the upload stays
+     *         finalizable, so the client can retry)
+     */
+    public boolean finalizeUpload(String uploadId, String contactNumber) {
+        int claimed = jdbcTemplate.update(
+            "UPDATE direct_uploads SET status = ?, updated_at = NOW() " +
+            "WHERE id = ? AND contact_number = ? AND status = ? AND expires_at > NOW()",
+            STATUS_QUEUED, uploadId, contactNumber, STATUS_ISSUED
+        );
+        if (claimed == 0) return false;
+        try {
+            executor.execute(() -> run(uploadId));
+        } catch (RejectedExecutionException e) {
+            jdbcTemplate.update("UPDATE direct_uploads SET status = ?, updated_at = NOW() WHERE id = ? AND status = ?",
+                STATUS_ISSUED, uploadId, STATUS_QUEUED);
+            throw e;
+        }
+        return true;
+    }
+
+    private void run(String uploadId) {
+        int claimed = jdbcTemplate.update(
+            "UPDATE direct_uploads SET status = ?, updated_at = NOW() WHERE id = ? AND status = ?",
+            STATUS_PROCESSING, uploadId, STATUS_QUEUED
+        );
+        if (claimed == 0) return;
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT kind, contact_number, registration_id, slot, object_key, content_type FROM direct_uploads WHERE id = ?",
+            uploadId
+        );
+        String kind = (String) row.get("kind");
+        String objectKey = (String) row.get("object_key");
+        String contentType = (String) row.get("content_type");
+        Long registrationId = row.get("registration_id") != null ? ((Number) row.get("registration_id")).longValue() : null;
+        int slot = row.get("slot") != null ? ((Number) row.get("slot")).intValue() : 0;
+        Path spool = Paths.get(spoolDir, "direct-" + uploadId);
+
+        try {
+            Files.createDirectories(spool.getParent());
+            fetchStaged(objectKey, spool);
+            MultipartFile file = new SpooledMultipartFile("file", kind + extensionFor(contentType), contentType, spool);
+            String url = switch (kind) {
+                case KIND_VEHICLE -> attachVehicleImage(registrationId, slot, file);
+                case KIND_RC, KIND_DL -> attachDocument(kind, registrationId, file);
+                case KIND_PROFILE -> attachProfilePhoto((String) row.get("contact_number"), file);
+                case KIND_POST -> supabaseService.uploadPostImage(file);
+                default -> throw new ImageRejectedException("Unknown upload kind");
+            };
+            finish(uploadId, STATUS_SUCCEEDED, url, null);
+            log.debug("Direct upload processed (kind={}, registrationId={})", kind, registrationId);
+        } catch (Exception e) {
+            log.warn("Direct upload failed (kind={}, registrationId={}): {}", kind, registrationId, e.toString());
+            finish(uploadId, STATUS_FAILED, null, e instanceof ImageRejectedException ? e.getMessage() : "Error processing upload");
+        } finally {
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException ignored) {
+                // cleanup() sweeps the spool dir
+            }
+            // The staged raw file is never needed again: clients re-sign to retry
+            deleteStagedQuietly(objectKey);
+        }
+    }
+
+    private enum SlotAttach { ATTACHED, NOT_FOUND, SLOT_UNAVAILABLE }
+
+    /**
+     * Process one photo for its slot and put it at that position, or append it when the slot is
+     * the next free one. A slot past that is rejected: the list has no gaps, so the photo would
+     * land at a different index than the one signed for. The photo it replaces is released.
+     */
+    private String attachVehicleImage(Long registrationId, int slot, MultipartFile file) throws IOException {
+        // Cheap check before the decode/resize; repeated under the row lock below
+        Registration current = registrationRepository.findById(registrationId).orElse(null);
+        if (current != null && slot > current.getVehicleImageUrls().size()) {
+            throw slotUnavailable(slot);
+        }
+
+        Map<String, Object> uploaded = supabaseService.uploadImageToSlot(file, registrationId, slot);
+        String url = (String) uploaded.get("imageUrl");
+        @SuppressWarnings("unchecked")
+        List<Variant> variants = (List<Variant>) uploaded.get("variants");
+
+        // URLs whose references this registration no longer needs once the transaction is done
+        List<String> unused = new ArrayList<>();
+        SlotAttach outcome = transactionTemplate.execute(tx -> {
+            Registration registration = registrationRepository.findByIdForUpdate(registrationId).orElse(null);
+            if (registration == null) return SlotAttach.NOT_FOUND;
+            List<String> urls = new ArrayList<>(registration.getVehicleImageUrls());
+            if (slot > urls.size()) {
+                unused.add(url);
+                variants.forEach(v -> unused.add(v.url()));
+                unused.removeAll(urlsInUse(registration));
+                return SlotAttach.SLOT_UNAVAILABLE;
+            }
+            if (slot < urls.size()) {
+                String replaced = urls.set(slot, url);
+                unused.add(replaced);
+                ResponsiveImages.parse(registration.getVehicleImageVariantsJson())
+                    .getOrDefault(replaced, List.of())
+                    .forEach(v -> unused.add(v.url()));
+            } else {
+                urls.add(url);
+            }
+            registration.setVehicleImageUrls(urls);
+            registration.setVehicleImageVariantsJson(ResponsiveImages.merge(registration.getVehicleImageVariantsJson(),
+                variants.isEmpty() ? Map.of() : Map.of(url, variants), urls));
+            registrationRepository.save(registration);
+            // Same photo in another slot, or the replacement has the same content
+            unused.removeAll(urlsInUse(registration));
+            return SlotAttach.ATTACHED;
+        });
+        if (outcome == SlotAttach.NOT_FOUND) {
+            // Deleted while we were processing: drop what we just stored
+            supabaseService.deleteAllVehicleImages(registrationId);
+            throw new ImageRejectedException("Registration not found with ID: " + registrationId);
+        }
+        supabaseService.releaseVehicleImages(registrationId, unused);
+        if (outcome == SlotAttach.SLOT_UNAVAILABLE) {
+            throw slotUnavailable(slot);
+        }
+        return url;
+    }
+
+    private static Set<String> urlsInUse(Registration registration) {
+        return ResponsiveImages.urlsInUse(registration.getVehicleImageUrls(), registration.getVehicleImageVariantsJson());
+    }
+
+    private static ImageRejectedException slotUnavailable(int slot) {
+        return new ImageRejectedException("Photo slot " + slot + " is not available; fill the earlier slots first");
+    }
+
+    private String attachDocument(String kind, Long registrationId, MultipartFile file) throws IOException {
+        boolean rc = KIND_RC.equals(kind);
+        String url = rc ? supabaseService.uploadRcDocument(file, registrationId) : supabaseService.uploadDlDocument(file, registrationId);
+
+        String[] previous = new String[1];
+        boolean attached = Boolean.TRUE.equals(transactionTemplate.execute(tx -> {
+            Registration registration = registrationRepository.findByIdForUpdate(registrationId).orElse(null);
+            if (registration == null) return false;
+            previous[0] = rc ? registration.getRc() : registration.getD_l();
+            if (rc) {
+                registration.setRc(url);
+            } else {
+                registration.setD_l(url);
+            }
+            registrationRepository.save(registration);
+            return true;
+        }));
+        if (!attached) {
+            deleteDocumentQuietly(url);
+            throw new ImageRejectedException("Registration not found with ID: " + registrationId);
+        }
+        // Same object name when the extension matches; a different extension leaves the old one behind
+        if (previous[0] != null && !previous[0].isBlank() && !previous[0].equals(url)) {
+            deleteDocumentQuietly(previous[0]);
+        }
+        return url;
+    }
+
+    private String attachProfilePhoto(String contactNumber, MultipartFile file) throws IOException {
+        String url = supabaseService.uploadProfilePhoto(file);
+        User user = userRepository.findByContactNumber(contactNumber);
+        if (user == null) {
+            supabaseService.deleteProfilePhoto(url);
+            throw new ImageRejectedException("User not found");
+        }
+        String oldUrl = user.getProfilePhotoUrl();
+        user.setProfilePhotoUrl(url);
+        userRepository.save(user);
+        if (oldUrl != null && !oldUrl.isEmpty()) {
+            try {
+                supabaseService.deleteProfilePhoto(oldUrl);
+            } catch (Exception e) {
+                log.warn("DirectUpload: could not delete old profile photo -> {}", e.toString());
+            }
+        }
+        return url;
+    }
+
+    private void finish(String uploadId, String status, String resultUrl, String error) {
+        try {
+            jdbcTemplate.update(
+                "UPDATE direct_uploads SET status = ?, result_url = ?, error = ?, updated_at = NOW(), finished_at = NOW() WHERE id = ?",
+                status, resultUrl, error, uploadId
+            );
+        } catch (Exception e) {
+            log.warn("Could not record direct upload status {}: {}", status, e.toString());
+        }
+    }
+
+    /** Status for polling, or null if unknown or not this contact's upload. */
+    public Map<String, Object> find(String uploadId, String contactNumber) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+            "SELECT id, kind, registration_id, slot, status, result_url, error, created_at, expires_at, updated_at, finished_at " +
+            "FROM direct_uploads WHERE id = ? AND contact_number = ?",
+            uploadId, contactNumber
+        );
+        if (rows.isEmpty()) return null;
+        Map<String, Object> r = rows.get(0);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("uploadId", r.get("id"));
+        out.put("kind", r.get("kind"));
+        out.put("registrationId", r.get("registration_id") != null ? ((Number) r.get("registration_id")).longValue() : null);
+        out.put("slot", r.get("slot"));
+        out.put("status", r.get("status"));
+        out.put("url", r.get("result_url"));
+        out.put("error", r.get("error"));
+        out.put("createdAt", r.get("created_at") != null ? r.get("created_at").toString() : null);
+        out.put("expiresAt", r.get("expires_at") != null ? r.get("expires_at").toString() : null);
+        out.put("updatedAt", r.get("updated_at") != null ? r.get("updated_at").toString() : null);
+        out.put("finishedAt", r.get("finished_at") != null ? r.get("finished_at").toString() : null);
+        return out;
+    }
+
+    /**
+     * Local stub for the signed PUT: store the body as the staged object.
+     *
+     * @return false when the stub is disabled or the upload is not open for a PUT
+     */
+    public boolean acceptStubUpload(String uploadId, InputStream body) throws IOException {
+        if (!isLocalStorage()) return false;
+        List<String> keys = jdbcTemplate.queryForList(
+            "SELECT object_key FROM direct_uploads WHERE id = ? AND status = ? AND expires_at > NOW()",
+            String.class, uploadId, STATUS_ISSUED
+        );
+        if (keys.isEmpty()) return false;
+        Path target = Paths.get(localDir).resolve(keys.get(0));
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), uploadId, ".part");
+        try {
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                copyCapped(body, out);
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return true;
+    }
+
+    /** Staged object -> target file, refusing missing or oversized uploads. */
+    private void fetchStaged(String objectKey, Path target) throws IOException {
+        if (isLocalStorage()) {
+            Path staged = Paths.get(localDir).resolve(objectKey);
+            if (!Files.isRegularFile(staged)) {
+                throw new ImageRejectedException("No file was uploaded for this upload id");
+            }
+            try (InputStream in = Files.newInputStream(staged); OutputStream out = Files.newOutputStream(target)) {
+                copyCapped(in, out);
+            }
+            return;
+        }
+
+        Request request = new Request.Builder()
+                .url(supabaseUrl + "/storage/v1/object/" + stagingBucket + "/" + objectKey)
+                .addHeader("apikey", supabaseKey)
+                .addHeader("Authorization", "Bearer " + supabaseKey)
+                .get()
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 404 || response.code() == 400) {
+                throw new ImageRejectedException("No file was uploaded for this upload id");
+            }
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Staged upload download failed (status=" + response.code() + ")");
+            }
+            if (body.contentLength() > maxBytes) {
+                throw new ImageRejectedException("File too large. Maximum size allowed is " + (maxBytes / (1024 * 1024)) + "MB");
+            }
+            try (InputStream in = body.byteStream(); OutputStream out = Files.newOutputStream(target)) {
+                copyCapped(in, out);
+            }
+        }
+    }
+
+    private void copyCapped(InputStream in, OutputStream out) throws IOException {
+        byte[] buf = new byte[16 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buf)) > 0) {
+            total += n;
+            if (total > maxBytes) {
+                throw new ImageRejectedException("File too large. Maximum size allowed is " + (maxBytes / (1024 * 1024)) + "MB");
+            }
+            out.write(buf, 0, n);
+        }
+        if (total == 0) {
+            throw new ImageRejectedException("Empty file received");
+        }
+    }
+
+    private void deleteStagedQuietly(String objectKey) {
+        try {
+            if (isLocalStorage()) {
+                Files.deleteIfExists(Paths.get(localDir).resolve(objectKey));
+                return;
+            }
+            Request request = new Request.Builder()
+                    .url(supabaseUrl + "/storage/v1/object/" + stagingBucket + "/" + objectKey)
+                    .addHeader("apikey", supabaseKey)
+                    .addHeader("Authorization", "Bearer " + supabaseKey)
+                    .delete()
+                    .build();
+            try (Response response = client.newCall(request).execute()) {
+                if (!response.isSuccessful() && response.code() != 404 && response.code() != 400) {
+                    log.debug("DirectUpload: staged delete returned {}", response.code());
+                }
+            }
+        } catch (Exception e) {
+            log.debug("DirectUpload: could not delete staged object -> {}", e.toString());
+        }
+    }
+
+    private void deleteDocumentQuietly(String url) {
+        try {
+            supabaseService.deleteDocument(url);
+        } catch (Exception e) {
+            log.warn("DirectUpload: could not delete document -> {}", e.toString());
+        }
+    }
+
+    private static String extensionFor(String contentType) {
+        if (contentType == null) return ".jpg";
+        return switch (contentType.toLowerCase()) {
+            case "image/png" -> ".png";
+            case "image/webp" -> ".webp";
+            case "image/gif" -> ".gif";
+            case "application/pdf" -> ".pdf";
+            default -> ".jpg";
+        };
+    }
+
+    /**
+     * Expire unused URLs (and their staged files), re-queue work stranded by a restart and drop
+     * finished rows past retention. Re-queueing is claimed in SQL, so one instance wins.
+     */
+    @Scheduled(cron = "${app.uploads.direct.cleanup-cron:0 */10 * * * *}")
+    public void cleanup() {
+        try {
+            List<Map<String, Object>> expired = jdbcTemplate.queryForList(
+                "SELECT id, object_key FROM direct_uploads WHERE status = ? AND expires_at < NOW()",
+                STATUS_ISSUED
+            );
+            for (Map<String, Object> r : expired) {
+                int updated = jdbcTemplate.update(
+                    "UPDATE direct_uploads SET status = ?, updated_at = NOW(), finished_at = NOW() WHERE id = ? AND status = ?",
+                    STATUS_EXPIRED, r.get("id"), STATUS_ISSUED
+                );
+                if (updated > 0) deleteStagedQuietly((String) r.get("object_key"));
+            }
+
+            List<String> stranded = jdbcTemplate.queryForList(
+                "SELECT id FROM direct_uploads WHERE status IN (?, ?) AND updated_at < NOW() - (? * INTERVAL '1 minute')",
+                String.class, STATUS_QUEUED, STATUS_PROCESSING, staleMinutes
+            );
+            for (String id : stranded) {
+                int requeued = jdbcTemplate.update(
+                    "UPDATE direct_uploads SET status = ?, updated_at = NOW() WHERE id = ? AND status IN (?, ?) " +
+                    "AND updated_at < NOW() - (? * INTERVAL '1 minute')",
+                    STATUS_QUEUED, id, STATUS_QUEUED, STATUS_PROCESSING, staleMinutes
+                );
+                if (requeued == 0) continue;
+                try {
+                    executor.execute(() -> run(id));
+                } catch (RejectedExecutionException e) {
+                    break; // picked up again on the next sweep
+                }
+            }
+
+            int removed = jdbcTemplate.update(
+                "DELETE FROM direct_uploads WHERE finished_at IS NOT NULL AND finished_at < NOW() - (? * INTERVAL '1 hour')",
+                retentionHours
+            );
+            if (removed > 0) log.debug("DirectUpload: removed {} finished upload(s)", removed);
+        } catch (Exception e) {
+            log.info("DirectUpload: cleanup failed -> {}", e.toString());
+        }
+    }
+}
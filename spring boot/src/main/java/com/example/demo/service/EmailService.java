@@ -7,6 +7,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -34,6 +35,7 @@ public class EmailService {
     }
 
     private final ObjectProvider<JavaMailSender> mailSenderProvider;
+    private final RestTemplate restTemplate;
 
     @Value("${mail.enabled:false}")
     private boolean enabled;
@@ -61,8 +63,9 @@ public class EmailService {
     @Value("${mail.from:}")
     private String smtpFrom;
 
-    public EmailService(ObjectProvider<JavaMailSender> mailSenderProvider) {
+    public EmailService(ObjectProvider<JavaMailSender> mailSenderProvider, @Qualifier("emailRestTemplate") RestTemplate restTemplate) {
         this.mailSenderProvider = mailSenderProvider;
+        this.restTemplate = restTemplate;
     }
 
     public boolean sendPlainText(String to, String subject, String text) {
@@ -122,8 +125,6 @@ public class EmailService {
             throw new IllegalStateException("brevo.api.key missing");
         }
 
-        RestTemplate rt = new RestTemplate();
-
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         headers.set("api-key", brevoApiKey);
@@ -153,7 +154,7 @@ public class EmailService {
         url = url + "/smtp/email";
 
         try {
-            ResponseEntity<String> resp = rt.postForEntity(url, entity, String.class);
+            ResponseEntity<String> resp = restTemplate.postForEntity(url, entity, String.class);
             if (!resp.getStatusCode().is2xxSuccessful()) {
                 throw new IllegalStateException("Brevo send failed: status=" + resp.getStatusCode() + ", body=" + resp.getBody());
             }
@@ -0,0 +1,184 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Second cache tier for geo lookups, backed by the {@code geo_cache} table.
+ *
+ * Lookup order in the geo services is: local memory, then this store, then the upstream API.
+ * Reads are synchronous (single primary-key lookup). Writes are queued and flushed in batches
+ * by a scheduled job so request threads never wait on an INSERT.
+ */
+@Service
+public class GeoCacheStore {
+
+    public static final String KIND_POSTAL = "postal";
+    public static final String KIND_NOMINATIM = "nominatim";
+    public static final String KIND_REVERSE = "reverse";
+    public static final String KIND_DISTRICT = "district";
+
+    private static final Logger log = LoggerFactory.getLogger(GeoCacheStore.class);
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_PENDING = 10_000;
+
+    private record PendingWrite(String kind, String payloadJson) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentHashMap<String, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    @Value("${app.geo.cache.persistent.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.geo.cache.db-ttl-days:30}")
+    private int ttlDays;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writesFlushed = new AtomicLong();
+    private final AtomicLong writesDropped = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public GeoCacheStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    private static String cacheKey(String kind, String key) {
+        return kind + ":" + key;
+    }
+
+    /**
+     * Read a non-expired entry. Returns null on miss or on any DB/parse error,
+     * so callers simply fall through to the upstream API.
+     */
+    public <T> T get(String kind, String key, Class<T> type) {
+        return read(kind, key, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    public <T> T get(String kind, String key, TypeReference<T> type) {
+        return read(kind, key, objectMapper.getTypeFactory().constructType(type));
+    }
+
+    private <T> T read(String kind, String key, JavaType type) {
+        if (!enabled || key == null) return null;
+        String ck = cacheKey(kind, key);
+        try {
+            PendingWrite queued = pending.get(ck);
+            if (queued != null) {
+                hits.incrementAndGet();
+                return objectMapper.readValue(queued.payloadJson(), type);
+            }
+            List<String> rows = jdbcTemplate.queryForList(
+                "SELECT payload::text FROM geo_cache WHERE cache_key = ? AND expires_at > NOW()",
+                String.class,
+                ck
+            );
+            if (rows == null || rows.isEmpty() || rows.get(0) == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            return objectMapper.readValue(rows.get(0), type);
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.debug("GeoCache: read failed for {} -> {}", ck, e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Queue an entry for the next batched write. Never blocks; drops the write if the queue is full.
+     */
+    public void putAsync(String kind, String key, Object value) {
+        if (!enabled || key == null || value == null) return;
+        if (pending.size() >= MAX_PENDING) {
+            writesDropped.incrementAndGet();
+            return;
+        }
+        try {
+            pending.put(cacheKey(kind, key), new PendingWrite(kind, objectMapper.writeValueAsString(value)));
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.debug("GeoCache: could not serialize {} value for {} -> {}", kind, key, e.toString());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.geo.cache.flush-interval-ms:5000}")
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        Iterator<Map.Entry<String, PendingWrite>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PendingWrite> e = it.next();
+            // remove(key, value) so a newer write for the same key queued meanwhile is kept
+            if (pending.remove(e.getKey(), e.getValue())) {
+                batch.add(new Object[] { e.getKey(), e.getValue().kind(), e.getValue().payloadJson(), ttlDays });
+            }
+            if (batch.size() >= BATCH_SIZE) {
+                writeBatch(batch);
+                batch = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch);
+        }
+    }
+
+    private void writeBatch(List<Object[]> batch) {
+        try {
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO geo_cache (cache_key, kind, payload, resolved_at, expires_at) " +
+                "VALUES (?, ?, ?::jsonb, NOW(), NOW() + (? * INTERVAL '1 day')) " +
+                "ON CONFLICT (cache_key) DO UPDATE SET kind = EXCLUDED.kind, payload = EXCLUDED.payload, " +
+                "resolved_at = EXCLUDED.resolved_at, expires_at = EXCLUDED.expires_at",
+                batch
+            );
+            writesFlushed.addAndGet(batch.size());
+        } catch (Exception e) {
+            errors.incrementAndGet();
+            log.info("GeoCache: batch write of {} entries failed -> {}", batch.size(), e.toString());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.debug("GeoCache: final flush failed -> {}", e.toString());
+        }
+    }
+
+    /** Point-in-time counters for diagnostics. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("hits", hits.get());
+        out.put("misses", misses.get());
+        out.put("pendingWrites", pending.size());
+        out.put("writesFlushed", writesFlushed.get());
+        out.put("writesDropped", writesDropped.get());
+        out.put("errors", errors.get());
+        return out;
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Pre-warms the geo caches from data we already have, so the first visitor for a pincode
+ * (or a district dropdown) does not pay the India Post round trip.
+ *
+ * Runs once after startup and then nightly, on its own background thread, pacing upstream
+ * calls with a fixed delay. The startup run only fills entries missing (or expired) from the
+ * shared geo_cache, so a deploy does not re-fetch what another instance already stored. The
+ * nightly run also re-fetches every district list; it is run by whichever instance takes the
+ * job_leases row first, and the others skip it.
+ */
+@Component
+public class GeoCacheWarmer {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoCacheWarmer.class);
+    private static final int PAGE_SIZE = 500;
+    private static final String NIGHTLY_LEASE = "geo-cache-warm-nightly";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PostalLookupService postalLookupService;
+
+    @Value("${app.geo.warm.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.geo.warm.delay-ms:250}")
+    private long delayMs;
+
+    // Held (not released) after a nightly run so instances whose cron fires later skip it
+    @Value("${app.geo.warm.nightly-lease-minutes:720}")
+    private long nightlyLeaseMinutes;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "geo-cache-warmer");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Instant lastStartedAt;
+    private volatile Instant lastFinishedAt;
+    private final AtomicLong pincodesSeen = new AtomicLong();
+    private final AtomicLong pincodesFetched = new AtomicLong();
+    private final AtomicLong districtsFetched = new AtomicLong();
+
+    public GeoCacheWarmer(JdbcTemplate jdbcTemplate, PostalLookupService postalLookupService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.postalLookupService = postalLookupService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmOnStartup() {
+        trigger("startup", false);
+    }
+
+    // Nightly by default; only hands off to the warmer thread so the shared scheduler is not blocked
+    @Scheduled(cron = "${app.geo.warm.cron:0 30 2 * * *}")
+    public void warmNightly() {
+        if (!enabled) return;
+        if (!claimNightly()) {
+            log.debug("GeoWarm: nightly run taken by another instance");
+            return;
+        }
+        trigger("nightly", true);
+    }
+
+    /** @param force re-fetch district lists even when the cache holds a fresh entry */
+    public boolean trigger(String reason, boolean force) {
+        if (!enabled) return false;
+        if (!running.compareAndSet(false, true)) {
+            log.debug("GeoWarm: run already in progress, skipping {} trigger", reason);
+            return false;
+        }
+        try {
+            executor.submit(() -> {
+                try {
+                    warm(reason, force);
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            running.set(false);
+            log.info("GeoWarm: could not start {} run -> {}", reason, e.toString());
+            return false;
+        }
+    }
+
+    /** Take the nightly lease unless another instance took it within the lease window. */
+    private boolean claimNightly() {
+        try {
+            int claimed = jdbcTemplate.update(
+                "INSERT INTO job_leases (job_name, owner, lease_until) " +
+                "VALUES (?, ?, NOW() + (? * INTERVAL '1 minute')) " +
+                "ON CONFLICT (job_name) DO UPDATE SET owner = EXCLUDED.owner, lease_until = EXCLUDED.lease_until " +
+                "WHERE job_leases.lease_until < NOW()",
+                NIGHTLY_LEASE, instanceId, nightlyLeaseMinutes
+            );
+            return claimed > 0;
+        } catch (Exception e) {
+            log.info("GeoWarm: nightly lease unavailable, skipping run -> {}", e.toString());
+            return false;
+        }
+    }
+
+    private void warm(String reason, boolean force) {
+        lastStartedAt = Instant.now();
+        pincodesSeen.set(0);
+        pincodesFetched.set(0);
+        districtsFetched.set(0);
+        log.info("GeoWarm: {} run started", reason);
+        try {
+            warmPincodes();
+            warmDistricts(force);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            log.info("GeoWarm: interrupted");
+        } catch (Exception e) {
+            log.info("GeoWarm: run failed -> {}", e.toString());
+        } finally {
+            lastFinishedAt = Instant.now();
+            log.info("GeoWarm: {} run finished (pincodes seen={}, fetched={}, districts fetched={})",
+                reason, pincodesSeen.get(), pincodesFetched.get(), districtsFetched.get());
+        }
+    }
+
+    /**
+     * Streams known pincodes from pincode_location page by page (keyset on the primary key),
+     * so no connection is held open while we wait between upstream calls.
+     */
+    private void warmPincodes() throws InterruptedException {
+        String after = "";
+        while (true) {
+            List<String> page = jdbcTemplate.queryForList(
+                "SELECT pincode FROM pincode_location WHERE pincode > ? ORDER BY pincode LIMIT ?",
+                String.class,
+                after,
+                PAGE_SIZE
+            );
+            if (page == null || page.isEmpty()) return;
+
+            for (String pin : page) {
+                if (pin == null || !pin.matches("\\d{6}")) continue;
+                pincodesSeen.incrementAndGet();
+                if (postalLookupService.peek(pin) != null) continue;
+                postalLookupService.resolve(pin);
+                pincodesFetched.incrementAndGet();
+                Thread.sleep(delayMs);
+            }
+            after = page.get(page.size() - 1);
+            if (page.size() < PAGE_SIZE) return;
+        }
+    }
+
+    /**
+     * Loads the pincode dropdown list for every district we have listings in: only missing or
+     * expired lists, unless {@code force} re-fetches all of them.
+     */
+    private void warmDistricts(boolean force) throws InterruptedException {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+            "SELECT MIN(district) AS district, MIN(state) AS state FROM pincode_location " +
+            "GROUP BY district_key, state_key"
+        );
+        for (Map<String, Object> r : rows) {
+            String district = r.get("district") == null ? null : String.valueOf(r.get("district"));
+            String state = r.get("state") == null ? null : String.valueOf(r.get("state"));
+            if (district == null || district.isBlank()) continue;
+            if (force) {
+                postalLookupService.refreshPincodesByDistrict(district, state);
+            } else {
+                if (postalLookupService.peekPincodesByDistrict(district, state) != null) continue;
+                postalLookupService.getPincodesByDistrict(district, state);
+            }
+            districtsFetched.incrementAndGet();
+            Thread.sleep(delayMs);
+        }
+    }
+
+    /** Point-in-time status for diagnostics. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("enabled", enabled);
+        out.put("running", running.get());
+        out.put("lastStartedAt", lastStartedAt != null ? lastStartedAt.toString() : null);
+        out.put("lastFinishedAt", lastFinishedAt != null ? lastFinishedAt.toString() : null);
+        out.put("pincodesSeen", pincodesSeen.get());
+        out.put("pincodesFetched", pincodesFetched.get());
+        out.put("districtsFetched", districtsFetched.get());
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
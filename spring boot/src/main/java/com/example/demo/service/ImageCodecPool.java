@@ -0,0 +1,241 @@
+package com.example.demo.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.spi.IIORegistry;
+import javax.imageio.spi.ImageReaderSpi;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reusable ImageIO codecs, canvases and encoder output buffers for the upload pipeline.
+ *
+ * {@code ImageIO.getImageReaders/getImageWritersByFormatName} walk the service registry and
+ * build a new codec (with its native libjpeg state) on every call; the provider is resolved
+ * once here and instances are recycled. A borrowed codec or canvas is owned by the borrowing
+ * thread until it is returned, so nothing is shared while in use. Every pool is bounded and
+ * anything that does not fit is disposed or left to the GC, so idle memory stays small and
+ * Tomcat's request threads (proxy resizes) cannot pin one instance each.
+ */
+final class ImageCodecPool {
+
+    private static final int CODECS_PER_PROVIDER = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    // Canvases are bucketed by size rounded up to CANVAS_STEP and handed out as exact-size views
+    private static final int CANVAS_STEP = 64;
+    private static final int CANVASES_PER_BUCKET = 4;
+    private static final long MAX_POOLED_CANVAS_PIXELS = 6_000_000L;
+    static final int CANVAS_TYPE = BufferedImage.TYPE_3BYTE_BGR;
+
+    private static final int ENCODE_BUFFER_BYTES = 256 * 1024;
+    private static final int MAX_POOLED_BUFFER_BYTES = 2 * 1024 * 1024;
+
+    static final float QUALITY = 0.82f;
+
+    private static final ConcurrentHashMap<String, Optional<ImageWriterSpi>> WRITER_SPIS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ImageWriterSpi, ArrayBlockingQueue<PooledWriter>> WRITERS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<ImageReaderSpi, ArrayBlockingQueue<ImageReader>> READERS = new ConcurrentHashMap<>();
+    private static volatile List<ImageReaderSpi> readerSpis;
+
+    private static final ConcurrentHashMap<Long, ArrayBlockingQueue<BufferedImage>> CANVASES = new ConcurrentHashMap<>();
+    private static final AtomicLong pooledCanvasPixels = new AtomicLong();
+
+    private static final ArrayBlockingQueue<byte[]> ENCODE_BUFFERS =
+            new ArrayBlockingQueue<>(Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+
+    private ImageCodecPool() {}
+
+    /** A writer plus its write param, configured once for the pipeline's quality. */
+    static final class PooledWriter {
+        final ImageWriterSpi spi;
+        final ImageWriter writer;
+        final ImageWriteParam param;
+
+        private PooledWriter(ImageWriterSpi spi, ImageWriter writer, String format) {
+            this.spi = spi;
+            this.writer = writer;
+            this.param = writer.getDefaultWriteParam();
+            // PNG keeps the writer's default deflate level
+            if (param.canWriteCompressed() && !"png".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                if ("webp".equals(format)) {
+                    param.setCompressionType(param.getCompressionType());
+                }
+                param.setCompressionQuality(QUALITY);
+            }
+        }
+    }
+
+    /** A borrowed canvas: {@link #image()} is exactly the requested size. */
+    static final class Canvas implements AutoCloseable {
+        private final BufferedImage backing;
+        private final BufferedImage image;
+        private final Long bucket;
+
+        private Canvas(BufferedImage backing, BufferedImage image, Long bucket) {
+            this.backing = backing;
+            this.image = image;
+            this.bucket = bucket;
+        }
+
+        BufferedImage image() {
+            return image;
+        }
+
+        @Override
+        public void close() {
+            returnCanvas(this);
+        }
+    }
+
+    // ---------------------------------------------------------------- writers
+
+    /** A writer for {@code format} ("jpg", "webp", "png"), or null if none is registered. */
+    static PooledWriter borrowWriter(String format) throws IOException {
+        String key = format.toLowerCase(Locale.ROOT);
+        ImageWriterSpi spi = WRITER_SPIS.computeIfAbsent(key, f -> {
+            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(f);
+            if (!writers.hasNext()) return Optional.empty();
+            ImageWriter probe = writers.next();
+            ImageWriterSpi provider = probe.getOriginatingProvider();
+            probe.dispose();
+            return Optional.ofNullable(provider);
+        }).orElse(null);
+        if (spi == null) return null;
+
+        PooledWriter pooled = queue(WRITERS, spi).poll();
+        if (pooled != null) return pooled;
+        return new PooledWriter(spi, spi.createWriterInstance(), key);
+    }
+
+    /** @param reusable false after a failed write: the codec's native state is not trusted again */
+    static void returnWriter(PooledWriter pooled, boolean reusable) {
+        if (pooled == null) return;
+        if (reusable) {
+            pooled.writer.reset();
+            if (queue(WRITERS, pooled.spi).offer(pooled)) return;
+        }
+        pooled.writer.dispose();
+    }
+
+    // ---------------------------------------------------------------- readers
+
+    /** A reader that can decode {@code iis} (stream position left at 0), or null if none can. */
+    static ImageReader borrowReader(ImageInputStream iis) throws IOException {
+        for (ImageReaderSpi spi : readerSpis()) {
+            boolean match;
+            iis.mark();
+            try {
+                match = spi.canDecodeInput(iis);
+            } finally {
+                iis.reset();
+            }
+            if (!match) continue;
+            ImageReader reader = queue(READERS, spi).poll();
+            return reader != null ? reader : spi.createReaderInstance();
+        }
+        return null;
+    }
+
+    static void returnReader(ImageReader reader, boolean reusable) {
+        if (reader == null) return;
+        ImageReaderSpi spi = reader.getOriginatingProvider();
+        if (reusable && spi != null) {
+            reader.reset();
+            if (queue(READERS, spi).offer(reader)) return;
+        }
+        reader.dispose();
+    }
+
+    /** Reader providers in ImageIO's own preference order, resolved once. */
+    private static List<ImageReaderSpi> readerSpis() {
+        List<ImageReaderSpi> spis = readerSpis;
+        if (spis == null) {
+            spis = new ArrayList<>();
+            Iterator<ImageReaderSpi> it = IIORegistry.getDefaultInstance().getServiceProviders(ImageReaderSpi.class, true);
+            while (it.hasNext()) {
+                spis.add(it.next());
+            }
+            readerSpis = spis;
+        }
+        return spis;
+    }
+
+    private static <K, V> ArrayBlockingQueue<V> queue(ConcurrentHashMap<K, ArrayBlockingQueue<V>> pools, K key) {
+        return pools.computeIfAbsent(key, k -> new ArrayBlockingQueue<>(CODECS_PER_PROVIDER));
+    }
+
+    // ---------------------------------------------------------------- canvases
+
+    /**
+     * Opaque canvas of exactly w x h. Contents are undefined: callers paint every pixel.
+     *
+     * 3BYTE_BGR rather than INT_RGB: the JPEG writer copies INT_RGB rows out through fresh
+     * int[] arrays (about 12 bytes per pixel of garbage per encode), while interleaved bytes
+     * go through almost as-is. Drawn and encoded output is identical.
+     */
+    static Canvas borrowCanvas(int w, int h) {
+        int bw = roundUp(w);
+        int bh = roundUp(h);
+        Long bucket = ((long) bw << 32) | bh;
+        ArrayBlockingQueue<BufferedImage> free = CANVASES.get(bucket);
+        BufferedImage backing = free != null ? free.poll() : null;
+        if (backing != null) {
+            pooledCanvasPixels.addAndGet(-(long) bw * bh);
+        } else {
+            backing = new BufferedImage(bw, bh, CANVAS_TYPE);
+        }
+        BufferedImage image = bw == w && bh == h ? backing : backing.getSubimage(0, 0, w, h);
+        return new Canvas(backing, image, bucket);
+    }
+
+    private static void returnCanvas(Canvas canvas) {
+        long pixels = (long) canvas.backing.getWidth() * canvas.backing.getHeight();
+        if (pooledCanvasPixels.addAndGet(pixels) <= MAX_POOLED_CANVAS_PIXELS
+                && CANVASES.computeIfAbsent(canvas.bucket, b -> new ArrayBlockingQueue<>(CANVASES_PER_BUCKET)).offer(canvas.backing)) {
+            return;
+        }
+        pooledCanvasPixels.addAndGet(-pixels);
+        canvas.backing.flush();
+    }
+
+    private static int roundUp(int v) {
+        return ((v + CANVAS_STEP - 1) / CANVAS_STEP) * CANVAS_STEP;
+    }
+
+    // ---------------------------------------------------------------- output buffers
+
+    /** An output buffer of at least {@code expectedBytes} (capped at the poolable size). */
+    static byte[] borrowBuffer(int expectedBytes) {
+        int wanted = Math.min(MAX_POOLED_BUFFER_BYTES, Math.max(ENCODE_BUFFER_BYTES, expectedBytes));
+        byte[] buf = ENCODE_BUFFERS.poll();
+        if (buf != null && buf.length >= wanted) return buf;
+        if (buf != null) ENCODE_BUFFERS.offer(buf);
+        return new byte[wanted];
+    }
+
+    static void returnBuffer(byte[] buf) {
+        // Buffers grown by an unusually large rendition are left to the GC
+        if (buf.length <= MAX_POOLED_BUFFER_BYTES) {
+            ENCODE_BUFFERS.offer(buf);
+        }
+    }
+
+    /** Rough encoded size at quality 0.82 (about half a byte per pixel for photos). */
+    static int expectedEncodedBytes(int w, int h) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) w * h / 2);
+    }
+}
@@ -0,0 +1,567 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Local disk tier for the image proxy ({@code /api/images/**} in proxy mode) and for
+ * resized derivatives ({@code ?w=}).
+ *
+ * Public storage objects are downloaded once into {@code cache-dir} and served from there;
+ * the node's page cache keeps hot listing photos in memory. The index is an access-ordered
+ * LRU capped by total bytes, rebuilt from the {@code .meta} sidecars on startup. Concurrent
+ * misses for the same object share one download, and a missing object is remembered for
+ * not-found-ttl-seconds so repeated requests for it do not each go to storage.
+ *
+ * Entries older than their max age are revalidated with a conditional GET (If-None-Match),
+ * so objects deleted or replaced in storage stop being served from here; content-addressed
+ * ({@code cas/}) keys never change and get a much longer max age. Deletes made through this
+ * node also drop the copies at once ({@link #invalidate(String, String)}).
+ *
+ * Every download gets its own data file, and replaced or evicted files are unlinked only after
+ * a grace period: with sendfile the container opens the file by name after the handler has
+ * returned, so a file handed out just before must still be there.
+ */
+@Service
+public class ImageDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDiskCache.class);
+    private static final int MAX_NOT_FOUND = 10_000;
+
+    /** Namespace of resized derivatives, keyed by {@link #derivedKey}. */
+    public static final String DERIVED = "derived";
+
+    /**
+     * A cached object; after eviction {@code file} stays on disk for evicted-grace-seconds.
+     *
+     * @param upstreamEtag validator for revalidation (storage's ETag, or the source's for derived entries), may be null
+     * @param fetchedAt when the content was last loaded or revalidated (epoch ms)
+     */
+    public record Entry(String bucket, String key, Path file, long size, String contentType, String etag,
+                        String upstreamEtag, long fetchedAt) {}
+
+    /** Result of a lookup: an entry, or why there is none. */
+    public record Lookup(Entry entry, boolean notFound) {
+        static Lookup hit(Entry e) { return new Lookup(e, false); }
+        static Lookup missing() { return new Lookup(null, true); }
+        static Lookup uncacheable() { return new Lookup(null, false); }
+    }
+
+    // file is null in sidecars written before per-download data files ({id}.bin)
+    private record Meta(String bucket, String key, String file, long size, String contentType, String etag,
+                        String upstreamEtag, long fetchedAt) {}
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private OkHttpClient client;
+
+    // Access-ordered; guarded by itself
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Lookup>> inFlight = new ConcurrentHashMap<>();
+
+    // id -> until (epoch ms) for objects the loader reported missing; cleared when full
+    private final ConcurrentHashMap<String, Long> notFound = new ConcurrentHashMap<>();
+
+    // Data files no longer indexed -> when they were retired (nanoTime); guarded by index
+    private final LinkedHashMap<Path, Long> retired = new LinkedHashMap<>();
+
+    @Value("${supabase.url}")
+    private String supabaseUrl;
+
+    @Value("${app.images.proxy.cache-dir:${java.io.tmpdir}/hpg-image-cache}")
+    private String cacheDir;
+
+    @Value("${app.images.proxy.cache-max-bytes:536870912}")
+    private long maxBytes;
+
+    // Larger objects are not cached (the proxy redirects to storage instead)
+    @Value("${app.images.proxy.max-object-bytes:10485760}")
+    private long maxObjectBytes;
+
+    @Value("${app.images.proxy.not-found-ttl-seconds:60}")
+    private long notFoundTtlSeconds;
+
+    // Max age before a cached storage object is revalidated; cas/ keys use the immutable one
+    @Value("${app.images.proxy.revalidate-seconds:300}")
+    private long revalidateSeconds;
+
+    @Value("${app.images.proxy.immutable-revalidate-seconds:86400}")
+    private long immutableRevalidateSeconds;
+
+    // How long an evicted file is kept for responses that were handed its path (sendfile)
+    @Value("${app.images.proxy.evicted-grace-seconds:120}")
+    private long evictedGraceSeconds;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notFoundHits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong loadErrors = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        Path root = Paths.get(cacheDir);
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            log.warn("ImageCache: cannot create cache dir -> {}", e.toString());
+            return;
+        }
+        // Rebuild the LRU from disk, oldest download first
+        List<Path> metas = new ArrayList<>();
+        List<Path> others = new ArrayList<>();
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(p -> (p.getFileName().toString().endsWith(".meta") ? metas : others).add(p));
+        } catch (IOException e) {
+            log.warn("ImageCache: cannot scan cache dir -> {}", e.toString());
+            return;
+        }
+        metas.sort(Comparator.comparing(ImageDiskCache::lastModified));
+        Set<Path> referenced = new HashSet<>();
+        int loaded = 0;
+        for (Path metaFile : metas) {
+            String id = metaFile.getFileName().toString().replace(".meta", "");
+            try {
+                Meta m = objectMapper.readValue(metaFile.toFile(), Meta.class);
+                Path dataFile = root.resolve(m.file() != null ? m.file() : id + ".bin");
+                if (!Files.isRegularFile(dataFile) || Files.size(dataFile) != m.size()) {
+                    deleteQuietly(metaFile);
+                    continue;
+                }
+                referenced.add(dataFile);
+                synchronized (index) {
+                    index.put(id, new Entry(m.bucket(), m.key(), dataFile, m.size(), m.contentType(), m.etag(),
+                        m.upstreamEtag(), m.fetchedAt()));
+                    totalBytes += m.size();
+                }
+                loaded++;
+            } catch (Exception e) {
+                deleteQuietly(metaFile);
+            }
+        }
+        // Files of evicted or replaced entries, and downloads interrupted by the restart
+        for (Path p : others) {
+            if (!referenced.contains(p)) deleteQuietly(p);
+        }
+        evictIfNeeded();
+        log.info("ImageCache: loaded {} cached object(s), {} bytes", loaded, totalBytes);
+    }
+
+    /**
+     * Produces the bytes for a cache miss, or revalidates an entry past its max age.
+     *
+     * Writes the object to {@code target} and returns its metadata, or null if the object does
+     * not exist. With a {@code stale} entry it may instead return {@link Loaded#unchanged()}
+     * and leave {@code target} empty. Throwing means "cannot be cached right now"; the caller
+     * should fall back (a stale entry keeps being served).
+     */
+    @FunctionalInterface
+    public interface Loader {
+        Loaded load(Path target, Entry stale) throws IOException;
+    }
+
+    /**
+     * @param etag upstream ETag if known, else null (a strong one is derived from the content);
+     *             kept as the validator for revalidation
+     * @param notModified the stale entry is still current
+     */
+    public record Loaded(String contentType, String etag, boolean notModified) {
+        public Loaded(String contentType, String etag) {
+            this(contentType, etag, false);
+        }
+
+        public static Loaded unchanged() {
+            return new Loaded(null, null, true);
+        }
+    }
+
+    /**
+     * Cached copy of a public storage object, downloading it on a miss and revalidating it
+     * once it is older than its max age.
+     * Returns {@code notFound} for a missing object and an empty lookup when the object
+     * cannot be cached (too large, storage error) so the caller can fall back to a redirect.
+     */
+    public Lookup get(String bucket, String key) {
+        long maxAgeSeconds = ImageObjectStore.isCasKey(key) ? immutableRevalidateSeconds : revalidateSeconds;
+        return get(bucket, key, TimeUnit.SECONDS.toMillis(maxAgeSeconds), (target, stale) -> download(bucket, key, target, stale));
+    }
+
+    /**
+     * Cached entry under (namespace, key), produced by {@code loader} on a miss and revalidated
+     * through it once older than {@code maxAgeMillis} (0 = never). Concurrent loads of the same
+     * entry are shared.
+     */
+    public Lookup get(String namespace, String key, long maxAgeMillis, Loader loader) {
+        String id = cacheId(namespace, key);
+        Entry cached;
+        synchronized (index) {
+            cached = index.get(id);
+        }
+        if (cached != null && (maxAgeMillis <= 0 || System.currentTimeMillis() - cached.fetchedAt() < maxAgeMillis)) {
+            hits.incrementAndGet();
+            return Lookup.hit(cached);
+        }
+        if (cached == null) {
+            Long missingUntil = notFound.get(id);
+            if (missingUntil != null) {
+                if (missingUntil > System.currentTimeMillis()) {
+                    notFoundHits.incrementAndGet();
+                    return Lookup.missing();
+                }
+                notFound.remove(id, missingUntil);
+            }
+            misses.incrementAndGet();
+        } else {
+            revalidations.incrementAndGet();
+        }
+
+        CompletableFuture<Lookup> mine = new CompletableFuture<>();
+        CompletableFuture<Lookup> existing = inFlight.putIfAbsent(id, mine);
+        if (existing != null) {
+            try {
+                return existing.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Lookup.uncacheable();
+            } catch (ExecutionException e) {
+                return Lookup.uncacheable();
+            }
+        }
+        try {
+            Lookup result = load(id, namespace, key, loader, cached);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.complete(Lookup.uncacheable());
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    private Lookup load(String id, String namespace, String key, Loader loader, Entry stale) {
+        Path root = Paths.get(cacheDir);
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(root, id, ".part");
+            Loaded loaded = loader.load(tmp, stale);
+            if (loaded == null) {
+                if (stale != null) drop(id, stale);
+                if (notFound.size() >= MAX_NOT_FOUND) notFound.clear();
+                notFound.put(id, System.currentTimeMillis() + notFoundTtlSeconds * 1000);
+                return Lookup.missing();
+            }
+
+            long now = System.currentTimeMillis();
+            if (loaded.notModified() && stale != null) {
+                notModified.incrementAndGet();
+                Entry fresh = new Entry(stale.bucket(), stale.key(), stale.file(), stale.size(), stale.contentType(),
+                    stale.etag(), stale.upstreamEtag(), now);
+                boolean replaced;
+                synchronized (index) {
+                    replaced = index.replace(id, stale, fresh);
+                }
+                if (!replaced) return Lookup.hit(stale); // invalidated or reloaded meanwhile
+                writeMeta(root, id, fresh);
+                return Lookup.hit(fresh);
+            }
+
+            long size = Files.size(tmp);
+            String contentType = loaded.contentType() != null ? loaded.contentType() : "application/octet-stream";
+            String etag = strongEtag(loaded.etag(), id, size);
+            String tmpName = tmp.getFileName().toString();
+            Path data = root.resolve(tmpName.substring(0, tmpName.length() - ".part".length()) + ".bin");
+            moveIntoPlace(tmp, data);
+            tmp = null;
+
+            Entry entry = new Entry(namespace, key, data, size, contentType, etag, loaded.etag(), now);
+            writeMeta(root, id, entry);
+            synchronized (index) {
+                Entry previous = index.put(id, entry);
+                if (previous != null) {
+                    totalBytes -= previous.size();
+                    retire(previous.file());
+                }
+                totalBytes += size;
+            }
+            evictIfNeeded();
+            return Lookup.hit(entry);
+        } catch (IOException e) {
+            loadErrors.incrementAndGet();
+            log.debug("ImageCache: load failed for {}/{} -> {}", namespace, key, e.toString());
+            // Could not revalidate (storage hiccup): keep serving what we have
+            return stale != null ? Lookup.hit(stale) : Lookup.uncacheable();
+        } finally {
+            if (tmp != null) {
+                deleteQuietly(tmp);
+            }
+        }
+    }
+
+    private void writeMeta(Path root, String id, Entry e) throws IOException {
+        objectMapper.writeValue(root.resolve(id + ".meta").toFile(), new Meta(e.bucket(), e.key(), e.file().getFileName().toString(),
+            e.size(), e.contentType(), e.etag(), e.upstreamEtag(), e.fetchedAt()));
+    }
+
+    /**
+     * Public storage object -> target, refusing objects above max-object-bytes. With a stale
+     * entry the request is conditional on its ETag.
+     */
+    private Loaded download(String bucket, String key, Path target, Entry stale) throws IOException {
+        Request.Builder builder = new Request.Builder()
+                .url(supabaseUrl + "/storage/v1/object/public/" + bucket + "/" + key)
+                .get();
+        if (stale != null && stale.upstreamEtag() != null) {
+            builder.header("If-None-Match", stale.upstreamEtag());
+        }
+        try (Response response = client.newCall(builder.build()).execute()) {
+            ResponseBody body = response.body();
+            if (response.code() == 304 && stale != null) {
+                return Loaded.unchanged();
+            }
+            if (response.code() == 404 || response.code() == 400) {
+                // Supabase answers 400 for some missing public objects
+                return null;
+            }
+            if (!response.isSuccessful() || body == null) {
+                throw new IOException("Storage responded " + response.code());
+            }
+            if (body.contentLength() > maxObjectBytes) {
+                throw new IOException("Object too large to cache");
+            }
+
+            long size = 0;
+            try (InputStream in = body.byteStream(); OutputStream out = Files.newOutputStream(target)) {
+                byte[] buf = new byte[16 * 1024];
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    size += n;
+                    if (size > maxObjectBytes) {
+                        throw new IOException("Object too large to cache");
+                    }
+                    out.write(buf, 0, n);
+                }
+            }
+            return new Loaded(body.contentType() != null ? body.contentType().toString() : null, response.header("ETag"));
+        }
+    }
+
+    /** Drop an entry whose file has gone missing (e.g. removed outside the app). */
+    public void invalidate(Entry entry) {
+        drop(cacheId(entry.bucket(), entry.key()), entry);
+    }
+
+    /**
+     * Drop the cached copies of {@code bucket/path}, or of every object under it when
+     * {@code path} ends with "/" (e.g. a registration's folder), together with their resized
+     * derivatives. Called when objects are deleted or replaced in storage; other nodes drop
+     * theirs when they next revalidate.
+     *
+     * @return the number of entries dropped
+     */
+    public int invalidate(String bucket, String path) {
+        if (bucket == null || path == null) return 0;
+        String p = path.startsWith("/") ? path.substring(1) : path;
+        if (p.isEmpty()) return 0;
+        boolean prefix = p.endsWith("/");
+
+        List<String> dropped = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> e = it.next();
+                if (!matches(e.getValue(), bucket, p, prefix)) continue;
+                it.remove();
+                totalBytes -= e.getValue().size();
+                retire(e.getValue().file());
+                dropped.add(e.getKey());
+            }
+        }
+        Path root = Paths.get(cacheDir);
+        for (String id : dropped) {
+            deleteQuietly(root.resolve(id + ".meta"));
+        }
+        invalidations.addAndGet(dropped.size());
+        return dropped.size();
+    }
+
+    private static boolean matches(Entry e, String bucket, String path, boolean prefix) {
+        String key;
+        if (e.bucket().equals(bucket)) {
+            key = e.key();
+        } else if (e.bucket().equals(DERIVED)) {
+            // w{width}/{bucket}/{key}
+            String source = e.key().substring(e.key().indexOf('/') + 1);
+            if (!source.startsWith(bucket + "/")) return false;
+            key = source.substring(bucket.length() + 1);
+        } else {
+            return false;
+        }
+        return prefix ? key.startsWith(path) : key.equals(path);
+    }
+
+    /** Key of the {@code width}-wide derivative of bucket/key in the {@link #DERIVED} namespace. */
+    public static String derivedKey(int width, String bucket, String key) {
+        return "w" + width + "/" + bucket + "/" + key;
+    }
+
+    private void drop(String id, Entry entry) {
+        boolean removed;
+        synchronized (index) {
+            removed = index.remove(id, entry);
+            if (removed) {
+                totalBytes -= entry.size();
+                retire(entry.file());
+            }
+        }
+        if (removed) deleteQuietly(Paths.get(cacheDir).resolve(id + ".meta"));
+    }
+
+    private void evictIfNeeded() {
+        List<String> victims = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<String, Entry>> it = index.entrySet().iterator();
+            while (totalBytes > maxBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                totalBytes -= eldest.getValue().size();
+                victims.add(eldest.getKey());
+                retire(eldest.getValue().file());
+                it.remove();
+            }
+        }
+        Path root = Paths.get(cacheDir);
+        for (String id : victims) {
+            // The .meta goes now so a restart does not bring the entry back; the data file waits
+            deleteQuietly(root.resolve(id + ".meta"));
+            evictions.incrementAndGet();
+        }
+        purgeRetired();
+    }
+
+    /** Caller holds the index lock. */
+    private void retire(Path file) {
+        retired.put(file, System.nanoTime());
+    }
+
+    /** Unlink retired data files whose grace period has passed. */
+    private void purgeRetired() {
+        long cutoff = System.nanoTime() - TimeUnit.SECONDS.toNanos(evictedGraceSeconds);
+        List<Path> expired = new ArrayList<>();
+        synchronized (index) {
+            Iterator<Map.Entry<Path, Long>> it = retired.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Path, Long> e = it.next();
+                if (e.getValue() - cutoff > 0) break; // insertion order = retirement order
+                expired.add(e.getKey());
+                it.remove();
+            }
+        }
+        // File names are never reused, so nothing can have been put in place under them
+        expired.forEach(ImageDiskCache::deleteQuietly);
+    }
+
+    /** Unlink retired files past their grace period even when nothing new is cached. */
+    @Scheduled(fixedDelayString = "${app.images.proxy.evicted-purge-interval-ms:60000}")
+    public void purgeRetiredScheduled() {
+        purgeRetired();
+    }
+
+    private static void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.debug("ImageCache: could not delete {} -> {}", p, e.toString());
+        }
+    }
+
+    private static void moveIntoPlace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Upstream ETag when it is a strong one, otherwise one derived from the cache id and size. */
+    private static String strongEtag(String upstream, String id, long size) {
+        if (upstream != null && upstream.startsWith("\"")) return upstream;
+        return "\"" + id.substring(0, 16) + "-" + Long.toHexString(size) + "\"";
+    }
+
+    private static String cacheId(String bucket, String key) {
+        return ImageObjectStore.sha256Hex((bucket + "/" + key).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FileTime lastModified(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    /** Point-in-time counters for diagnostics. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        synchronized (index) {
+            out.put("entries", index.size());
+            out.put("bytes", totalBytes);
+        }
+        out.put("maxBytes", maxBytes);
+        out.put("hits", hits.get());
+        out.put("misses", misses.get());
+        out.put("notFoundHits", notFoundHits.get());
+        out.put("revalidations", revalidations.get());
+        out.put("notModified", notModified.get());
+        out.put("invalidations", invalidations.get());
+        out.put("evictions", evictions.get());
+        synchronized (index) {
+            out.put("retiredPendingUnlink", retired.size());
+        }
+        out.put("loadErrors", loadErrors.get());
+        out.put("inFlight", inFlight.size());
+        return out;
+    }
+}
@@ -1,143 +1,474 @@
 package com.example.demo.service;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.model.Registration;
 import com.example.demo.model.RegistrationImageFolder;
 import com.example.demo.repository.RegistrationImageFolderRepository;
 import com.example.demo.repository.RegistrationRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import jakarta.annotation.PreDestroy;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
 
+/**
+ * Moves legacy flat-layout vehicle images into the per-registration folder layout.
+ *
+ * The bulk run is a background job: registrations are read in keyset pages, each page is
+ * migrated with bounded concurrency, and the cursor is checkpointed in
+ * {@code image_migration_checkpoint} after every page so a crash or redeploy resumes at the
+ * first unfinished page. Images are streamed from the download straight into the upload.
+ * Re-running is safe: images already in the folder layout (or content-addressed) are skipped.
+ */
 @Service
 public class ImageMigrationService {
 
     private static final Logger log = LoggerFactory.getLogger(ImageMigrationService.class);
+    private static final String JOB_NAME = "vehicle-images-folder-layout";
+    private static final int MAX_RECENT_ERRORS = 20;
 
     @Value("${supabase.url}")
     private String supabaseUrl;
-    
+
     @Value("${supabase.key}")
     private String supabaseKey;
-    
+
     @Value("${supabase.bucket.name}")
     private String bucketName;
-    
+
+    @Value("${app.migration.images.page-size:100}")
+    private int pageSize;
+
+    // A 'running' checkpoint not touched for this long is considered abandoned (crashed instance)
+    @Value("${app.migration.images.lease-seconds:300}")
+    private long leaseSeconds;
+
+    @Value("${app.migration.images.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
     @Autowired
     private RegistrationRepository registrationRepository;
-    
+
     @Autowired
     private RegistrationImageFolderRepository registrationImageFolderRepository;
-    
-    private final OkHttpClient client = new OkHttpClient();
-    
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("imageMigrationExecutor")
+    private ExecutorService migrationExecutor;
+
+    @Autowired
+    private OkHttpClient client;
+
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "image-migration");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicBoolean stopRequested = new AtomicBoolean(false);
+    private final AtomicLong leaseRenewedAt = new AtomicLong();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Totals, seeded from the checkpoint when a run starts
+    private final AtomicLong registrationsProcessed = new AtomicLong();
+    private final AtomicLong imagesMigrated = new AtomicLong();
+    private final AtomicLong imagesSkipped = new AtomicLong();
+    private final AtomicLong imagesFailed = new AtomicLong();
+    private final AtomicLong bytesCopied = new AtomicLong();
+    private final AtomicLong cursor = new AtomicLong();
+
+    // This run only, for throughput
+    private volatile Instant runStartedAt;
+    private volatile Instant runFinishedAt;
+    private final AtomicLong runImagesMigrated = new AtomicLong();
+    private final AtomicLong runBytesCopied = new AtomicLong();
+    private final Deque<String> recentErrors = new ArrayDeque<>();
+
+    private record Outcome(int migrated, int skipped, int failed, long bytes) {}
+
     /**
      * Migrate images for a specific registration from flat structure to folder structure
-     * 
+     *
      * @param registrationId Registration ID to migrate
      * @return Number of migrated images
      * @throws IOException If migration fails
      */
     public int migrateRegistrationImages(Long registrationId) throws IOException {
+        return migrateRegistration(registrationId).migrated();
+    }
+
+    private Outcome migrateRegistration(Long registrationId) throws IOException {
         Registration registration = registrationRepository.findById(registrationId)
                 .orElseThrow(() -> new IOException("Registration not found with ID: " + registrationId));
-        
+
         // Skip if there are no image URLs
         List<String> existingImageUrls = registration.getVehicleImageUrls();
         if (existingImageUrls == null || existingImageUrls.isEmpty()) {
-            return 0;
+            return new Outcome(0, 0, 0, 0);
         }
-        
+
         // Create folder path for this registration
         String folderPath = registrationId.toString();
-        int migratedCount = 0;
-        
-        // Process each image URL
+        String folderUrlPrefix = publicUrl(folderPath + "/");
+        String casUrlPrefix = publicUrl(ImageObjectStore.CAS_PREFIX);
+        int migrated = 0;
+        int skipped = 0;
+        int failed = 0;
+        long bytes = 0;
+
+        // Failed images keep their old URL, so a later run picks them up again
+        List<String> newImageUrls = new ArrayList<>(existingImageUrls.size());
         for (String imageUrl : existingImageUrls) {
+            if (imageUrl == null || imageUrl.startsWith(folderUrlPrefix) || imageUrl.startsWith(casUrlPrefix)) {
+                newImageUrls.add(imageUrl);
+                skipped++;
+                continue;
+            }
             String filename = null;
             try {
                 // Extract filename from URL
                 filename = extractFilenameFromUrl(imageUrl);
-                
-                // Download the image content
-                byte[] imageContent = downloadImageContent(imageUrl);
-                
-                if (imageContent != null && imageContent.length > 0) {
-                    // Upload to new location with folder structure
-                    String newPath = folderPath + "/" + filename;
-                    uploadToNewLocation(newPath, imageContent, getMimeType(filename));
-                    migratedCount++;
-                }
+                String newPath = folderPath + "/" + filename;
+                bytes += copyToNewLocation(imageUrl, newPath);
+                newImageUrls.add(publicUrl(newPath));
+                migrated++;
+                renewLeaseIfDue();
             } catch (Exception e) {
                 log.warn("Error migrating image (registrationId={}, filename={}): {}", registrationId, filename, e.toString());
-                // Continue with other images even if one fails
+                recordError("registration " + registrationId + ": " + e.getMessage());
+                newImageUrls.add(imageUrl);
+                failed++;
             }
         }
-        
-        if (migratedCount > 0) {
+
+        if (migrated > 0) {
             // Create or update folder record
             RegistrationImageFolder imageFolder = registrationImageFolderRepository
                     .findFirstByRegistrationId(registrationId)
                     .orElse(new RegistrationImageFolder(registrationId, folderPath));
-            
+
             registrationImageFolderRepository.save(imageFolder);
-            
-            // Instead of clearing image URLs, get the new ones and update the registration
+
+            // Point the registration at the migrated copies. Only the URL column is written, and
+            // only if it still holds what we read: an edit made during the copies wins, and the
+            // images are picked up again by a later run.
             try {
-                List<String> newImageUrls = new ArrayList<>();
-                for (String imageUrl : existingImageUrls) {
-                    String filename = extractFilenameFromUrl(imageUrl);
-                    String newUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + folderPath + "/" + filename;
-                    newImageUrls.add(newUrl);
+                int updated = jdbcTemplate.update(
+                    "UPDATE registration SET vehicle_image_urls_json = ? " +
+                    "WHERE id = ? AND vehicle_image_urls_json IS NOT DISTINCT FROM ?",
+                    objectMapper.writeValueAsString(newImageUrls), registrationId, registration.getVehicleImageUrlsJson()
+                );
+                if (updated == 0) {
+                    log.info("Registration images changed during migration, leaving them for a later run (registrationId={})", registrationId);
+                    return new Outcome(0, skipped, failed + migrated, bytes);
                 }
-                
-                // Update the registration with the new URLs
-                registration.setVehicleImageUrls(newImageUrls);
-                registrationRepository.save(registration);
-
-                log.info("Updated registration image URLs after migration (registrationId={}, count={})", registrationId, newImageUrls.size());
-            } catch (Exception e) {
+                log.info("Updated registration image URLs after migration (registrationId={}, count={})", registrationId, migrated);
+            } catch (JsonProcessingException | RuntimeException e) {
                 log.warn("Error updating registration with new image URLs (registrationId={}): {}", registrationId, e.toString());
             }
         }
-        
-        return migratedCount;
+
+        return new Outcome(migrated, skipped, failed, bytes);
     }
-    
+
     /**
-     * Migrate all registrations from flat structure to folder structure
-     * 
-     * @return Map of registration IDs to migration status
+     * Start (or resume from the checkpoint) the bulk migration in the background.
+     *
+     * @param restart discard the checkpoint and start from the first registration
+     * @return false if a run is already in progress (here or on another instance)
      */
-    public List<String> migrateAllRegistrations() {
-        List<String> results = new ArrayList<>();
-        List<Registration> registrations = registrationRepository.findAll();
-        
-        for (Registration registration : registrations) {
+    public boolean start(boolean restart) {
+        if (!running.compareAndSet(false, true)) return false;
+        try {
+            if (restart) {
+                jdbcTemplate.update(
+                    "UPDATE image_migration_checkpoint SET last_registration_id = 0, registrations_processed = 0, " +
+                    "images_migrated = 0, images_skipped = 0, images_failed = 0, bytes_copied = 0, last_error = NULL " +
+                    "WHERE job_name = ? AND status <> 'running'",
+                    JOB_NAME
+                );
+            }
+            if (!claim()) {
+                running.set(false);
+                return false;
+            }
+            stopRequested.set(false);
+            runner.submit(() -> {
+                try {
+                    runJob();
+                } finally {
+                    running.set(false);
+                }
+            });
+            return true;
+        } catch (Exception e) {
+            running.set(false);
+            log.warn("ImageMigration: could not start -> {}", e.toString());
+            return false;
+        }
+    }
+
+    /** Ask the running job to stop after the current page; the checkpoint is kept. */
+    public boolean stop() {
+        if (!running.get()) return false;
+        stopRequested.set(true);
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeOnStartup() {
+        if (!resumeOnStartup) return;
+        try {
+            List<String> status = jdbcTemplate.queryForList(
+                "SELECT status FROM image_migration_checkpoint WHERE job_name = ?", String.class, JOB_NAME);
+            // Only an interrupted run is resumed; claim() ignores it while another instance holds the lease
+            if (!status.isEmpty() && "running".equals(status.get(0)) && start(false)) {
+                log.info("ImageMigration: resuming interrupted run");
+            }
+        } catch (Exception e) {
+            log.debug("ImageMigration: resume check skipped -> {}", e.toString());
+        }
+    }
+
+    /** Take the job lease: succeeds unless another live run holds it. */
+    private boolean claim() {
+        int claimed = jdbcTemplate.update(
+            "INSERT INTO image_migration_checkpoint (job_name, status, started_at, updated_at) VALUES (?, 'running', NOW(), NOW()) " +
+            "ON CONFLICT (job_name) DO UPDATE SET status = 'running', started_at = NOW(), updated_at = NOW(), finished_at = NULL " +
+            "WHERE image_migration_checkpoint.status <> 'running' " +
+            "OR image_migration_checkpoint.updated_at < NOW() - (? * INTERVAL '1 second')",
+            JOB_NAME, leaseSeconds
+        );
+        if (claimed == 0) return false;
+
+        Map<String, Object> row = jdbcTemplate.queryForMap(
+            "SELECT last_registration_id, registrations_processed, images_migrated, images_skipped, images_failed, bytes_copied " +
+            "FROM image_migration_checkpoint WHERE job_name = ?",
+            JOB_NAME
+        );
+        cursor.set(((Number) row.get("last_registration_id")).longValue());
+        registrationsProcessed.set(((Number) row.get("registrations_processed")).longValue());
+        imagesMigrated.set(((Number) row.get("images_migrated")).longValue());
+        imagesSkipped.set(((Number) row.get("images_skipped")).longValue());
+        imagesFailed.set(((Number) row.get("images_failed")).longValue());
+        bytesCopied.set(((Number) row.get("bytes_copied")).longValue());
+        return true;
+    }
+
+    private void runJob() {
+        runStartedAt = Instant.now();
+        runFinishedAt = null;
+        leaseRenewedAt.set(System.nanoTime());
+        runImagesMigrated.set(0);
+        runBytesCopied.set(0);
+        log.info("ImageMigration: run started at registration id > {}", cursor.get());
+
+        String finalStatus = "failed";
+        String lastError = null;
+        try {
+            while (!stopRequested.get()) {
+                List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT id FROM registration WHERE id > ? ORDER BY id LIMIT ?",
+                    Long.class,
+                    cursor.get(),
+                    pageSize
+                );
+                if (ids.isEmpty()) {
+                    finalStatus = "completed";
+                    break;
+                }
+                migratePage(ids);
+                cursor.set(ids.get(ids.size() - 1));
+                saveCheckpoint("running", null);
+            }
+            if (stopRequested.get() && !"completed".equals(finalStatus)) {
+                finalStatus = "stopped";
+            }
+        } catch (Exception e) {
+            lastError = e.toString();
+            log.warn("ImageMigration: run failed at registration id > {} -> {}", cursor.get(), lastError);
+        } finally {
+            runFinishedAt = Instant.now();
+            saveCheckpoint(finalStatus, lastError);
+            log.info("ImageMigration: run {} (registrations={}, migrated={}, skipped={}, failed={}, bytes={})",
+                finalStatus, registrationsProcessed.get(), imagesMigrated.get(), imagesSkipped.get(), imagesFailed.get(), bytesCopied.get());
+        }
+    }
+
+    /** Migrate one page concurrently; returns once every registration in it has finished. */
+    private void migratePage(List<Long> ids) throws InterruptedException {
+        List<Future<Outcome>> pending = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            FutureTask<Outcome> task = new FutureTask<>(() -> migrateRegistration(id));
             try {
-                int migratedCount = migrateRegistrationImages(registration.getId());
-                results.add("Registration " + registration.getId() + ": Migrated " + migratedCount + " images");
-            } catch (Exception e) {
-                log.warn("Migration failed for registration (registrationId={}): {}", registration.getId(), e.toString());
-                results.add("Registration " + registration.getId() + ": Failed");
+                migrationExecutor.execute(task);
+            } catch (RejectedExecutionException e) {
+                // Pool saturated: run it here, which also throttles submission
+                task.run();
             }
+            pending.add(task);
+        }
+        for (int i = 0; i < pending.size(); i++) {
+            try {
+                Outcome o = pending.get(i).get();
+                imagesMigrated.addAndGet(o.migrated());
+                imagesSkipped.addAndGet(o.skipped());
+                imagesFailed.addAndGet(o.failed());
+                bytesCopied.addAndGet(o.bytes());
+                runImagesMigrated.addAndGet(o.migrated());
+                runBytesCopied.addAndGet(o.bytes());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                log.warn("Migration failed for registration (registrationId={}): {}", ids.get(i), cause.toString());
+                recordError("registration " + ids.get(i) + ": " + cause.getMessage());
+            }
+            registrationsProcessed.incrementAndGet();
+            renewLeaseIfDue();
+        }
+    }
+
+    /**
+     * Keep the job lease alive while a page is in progress: claim() treats a 'running'
+     * checkpoint as abandoned once updated_at is older than the lease, and a page of slow
+     * copies can take longer than that. Renews at most every third of the lease.
+     */
+    private void renewLeaseIfDue() {
+        if (!running.get()) return; // single-registration calls outside the bulk job
+        long now = System.nanoTime();
+        long last = leaseRenewedAt.get();
+        if (now - last < TimeUnit.SECONDS.toNanos(leaseSeconds) / 3 || !leaseRenewedAt.compareAndSet(last, now)) return;
+        try {
+            jdbcTemplate.update(
+                "UPDATE image_migration_checkpoint SET updated_at = NOW() WHERE job_name = ? AND status = 'running'",
+                JOB_NAME
+            );
+        } catch (Exception e) {
+            log.warn("ImageMigration: could not renew lease -> {}", e.toString());
+        }
+    }
+
+    private void saveCheckpoint(String status, String lastError) {
+        try {
+            jdbcTemplate.update(
+                "UPDATE image_migration_checkpoint SET status = ?, last_registration_id = ?, registrations_processed = ?, " +
+                "images_migrated = ?, images_skipped = ?, images_failed = ?, bytes_copied = ?, " +
+                "last_error = COALESCE(?, last_error), updated_at = NOW(), " +
+                "finished_at = CASE WHEN ? = 'running' THEN NULL ELSE NOW() END WHERE job_name = ?",
+                status, cursor.get(), registrationsProcessed.get(),
+                imagesMigrated.get(), imagesSkipped.get(), imagesFailed.get(), bytesCopied.get(),
+                lastError, status, JOB_NAME
+            );
+        } catch (Exception e) {
+            log.warn("ImageMigration: could not save checkpoint -> {}", e.toString());
+        }
+    }
+
+    private void recordError(String message) {
+        synchronized (recentErrors) {
+            if (recentErrors.size() >= MAX_RECENT_ERRORS) recentErrors.removeFirst();
+            recentErrors.addLast(message);
+        }
+    }
+
+    /** Checkpoint plus live counters and throughput of the current (or last) run. */
+    public Map<String, Object> status() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT status, last_registration_id, registrations_processed, images_migrated, images_skipped, " +
+                "images_failed, bytes_copied, last_error, started_at, updated_at, finished_at " +
+                "FROM image_migration_checkpoint WHERE job_name = ?",
+                JOB_NAME
+            );
+            if (!rows.isEmpty()) {
+                Map<String, Object> r = rows.get(0);
+                out.put("status", r.get("status"));
+                out.put("lastRegistrationId", r.get("last_registration_id"));
+                out.put("registrationsProcessed", r.get("registrations_processed"));
+                out.put("imagesMigrated", r.get("images_migrated"));
+                out.put("imagesSkipped", r.get("images_skipped"));
+                out.put("imagesFailed", r.get("images_failed"));
+                out.put("bytesCopied", r.get("bytes_copied"));
+                out.put("lastError", r.get("last_error"));
+                out.put("startedAt", r.get("started_at") != null ? r.get("started_at").toString() : null);
+                out.put("updatedAt", r.get("updated_at") != null ? r.get("updated_at").toString() : null);
+                out.put("finishedAt", r.get("finished_at") != null ? r.get("finished_at").toString() : null);
+            } else {
+                out.put("status", "never-run");
+            }
+        } catch (Exception e) {
+            out.put("status", "unknown");
+        }
+
+        Map<String, Object> live = new LinkedHashMap<>();
+        live.put("running", running.get());
+        live.put("stopRequested", stopRequested.get());
+        live.put("cursor", cursor.get());
+        live.put("registrationsProcessed", registrationsProcessed.get());
+        live.put("imagesMigrated", imagesMigrated.get());
+        live.put("imagesFailed", imagesFailed.get());
+        Instant started = runStartedAt;
+        if (started != null) {
+            Instant end = runFinishedAt != null ? runFinishedAt : Instant.now();
+            double seconds = Math.max(1, Duration.between(started, end).toMillis()) / 1000.0;
+            live.put("runStartedAt", started.toString());
+            live.put("imagesPerSecond", Math.round(runImagesMigrated.get() / seconds * 100) / 100.0);
+            live.put("bytesPerSecond", Math.round(runBytesCopied.get() / seconds));
         }
-        
-        return results;
+        synchronized (recentErrors) {
+            live.put("recentErrors", new ArrayList<>(recentErrors));
+        }
+        out.put("live", live);
+        return out;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested.set(true);
+        runner.shutdownNow();
     }
-    
+
+    private String publicUrl(String path) {
+        return supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + path;
+    }
+
     /**
      * Extract filename from a Supabase URL
      */
@@ -146,45 +477,68 @@ public class ImageMigrationService {
         String[] parts = url.split("/");
         return parts[parts.length - 1];
     }
-    
+
     /**
-     * Download image content from URL
+     * Stream an image from its current URL into the new location in Supabase, without
+     * holding the whole object in memory.
+     *
+     * @return number of bytes copied
      */
-    private byte[] downloadImageContent(String imageUrl) throws IOException {
-        Request request = new Request.Builder()
+    private long copyToNewLocation(String imageUrl, String path) throws IOException {
+        Request download = new Request.Builder()
                 .url(imageUrl)
                 .get()
                 .build();
-        
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to download image: " + response.message());
+
+        try (Response source = client.newCall(download).execute()) {
+            ResponseBody sourceBody = source.body();
+            if (!source.isSuccessful() || sourceBody == null) {
+                throw new IOException("Failed to download image: " + source.message());
             }
-            
-            return response.body().bytes();
-        }
-    }
-    
-    /**
-     * Upload content to new location in Supabase with folder structure
-     */
-    private void uploadToNewLocation(String path, byte[] content, String contentType) throws IOException {
-        RequestBody fileBody = RequestBody.create(MediaType.parse(contentType), content);
-        
-        Request request = new Request.Builder()
-                .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + path)
-                .addHeader("apikey", supabaseKey)
-                .addHeader("Authorization", "Bearer " + supabaseKey)
-                .put(fileBody)
-                .build();
-        
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Failed to upload image: " + response.message());
+
+            MediaType contentType = sourceBody.contentType() != null ? sourceBody.contentType() : MediaType.parse(getMimeType(path));
+            long contentLength = sourceBody.contentLength();
+            AtomicLong written = new AtomicLong();
+            RequestBody fileBody = new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return contentType;
+                }
+
+                @Override
+                public long contentLength() {
+                    return contentLength; // -1 means chunked
+                }
+
+                @Override
+                public boolean isOneShot() {
+                    return true;
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    written.set(sink.writeAll(sourceBody.source()));
+                }
+            };
+
+            // x-upsert: a partially finished earlier run may already have written this object
+            Request upload = new Request.Builder()
+                    .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + path)
+                    .addHeader("apikey", supabaseKey)
+                    .addHeader("Authorization", "Bearer " + supabaseKey)
+                    .addHeader("x-upsert", "true")
+                    .put(fileBody)
+                    .build();
+
+            try (Response response = client.newCall(upload).execute()) {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Failed to upload image: " + response.message());
+                }
             }
+            return written.get();
         }
     }
-    
+
     /**
      * Get MIME type based on file extension
      */
@@ -201,4 +555,4 @@ public class ImageMigrationService {
             return "application/octet-stream";
         }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,305 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Reference counting for content-addressed vehicle images ({@code image_objects} +
+ * {@code image_object_refs}).
+ *
+ * Identical processed bytes map to one storage key, so re-uploading the same photo only adds
+ * a reference. References are per registration; the object is deleted from storage when the
+ * last registration releases it.
+ *
+ * Acquire and release lock the object row only inside short ref-count transactions; the
+ * storage delete runs after the release committed. An unreferenced row is first claimed
+ * ({@code deleting_since}, {@code uploaded = FALSE}), so an upload that reuses the key while
+ * the delete is in flight PUTs the object again; its PUT may land before the storage DELETE,
+ * so {@link #upload} waits for the claim to end and PUTs once more. Rows whose delete failed
+ * or never ran are retried by {@link #sweep}.
+ */
+@Service
+public class ImageObjectStore {
+
+    public static final String CAS_PREFIX = "cas/";
+
+    private static final Logger log = LoggerFactory.getLogger(ImageObjectStore.class);
+    private static final int MAX_PUT_ATTEMPTS = 3;
+    private static final long CLAIM_POLL_MS = 100;
+
+    /**
+     * Deletes objects of one bucket from storage (one multi-object call where possible);
+     * called outside any transaction, on claimed rows. Returns the keys known to be gone from
+     * storage; the rest (or all of them, if it throws) are kept for a retry.
+     */
+    @FunctionalInterface
+    public interface ObjectDeleter {
+        Collection<String> delete(String bucket, List<String> objectKeys) throws Exception;
+    }
+
+    /** PUTs the object into storage; called outside any transaction. */
+    @FunctionalInterface
+    public interface ObjectUploader {
+        void put() throws IOException;
+    }
+
+    /**
+     * @param uploaded the object is already in storage, so the caller can skip the PUT
+     * @param newReference this registration did not reference the object before
+     */
+    public record Acquired(String objectKey, boolean uploaded, boolean newReference) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long deleteLeaseSeconds;
+    private final long reputWaitMs;
+
+    public ImageObjectStore(
+        JdbcTemplate jdbcTemplate,
+        TransactionTemplate transactionTemplate,
+        @Value("${app.images.objects.delete-lease-seconds:300}") long deleteLeaseSeconds,
+        @Value("${app.images.objects.reput-wait-ms:10000}") long reputWaitMs
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.deleteLeaseSeconds = deleteLeaseSeconds;
+        this.reputWaitMs = reputWaitMs;
+    }
+
+    public static String sha256Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /** cas/ab/abcdef....webp */
+    public static String casKey(String sha256, String extension) {
+        String ext = extension == null || extension.isBlank() ? "bin" : extension.toLowerCase(Locale.ROOT);
+        return CAS_PREFIX + sha256.substring(0, 2) + "/" + sha256 + "." + ext;
+    }
+
+    public static boolean isCasKey(String objectKey) {
+        return objectKey != null && objectKey.startsWith(CAS_PREFIX);
+    }
+
+    /**
+     * Ensure the object row exists and add a reference from {@code registrationId}.
+     */
+    @Transactional
+    public Acquired acquire(String bucket, String objectKey, String sha256, String contentType, long sizeBytes, long registrationId) {
+        // Insert-or-lock in one statement: a row deleted by a concurrent release is simply re-inserted
+        Boolean uploaded = jdbcTemplate.queryForObject(
+            "INSERT INTO image_objects (object_key, bucket, sha256, content_type, size_bytes) VALUES (?, ?, ?, ?, ?) " +
+            "ON CONFLICT (object_key) DO UPDATE SET last_referenced_at = image_objects.last_referenced_at " +
+            "RETURNING uploaded",
+            Boolean.class,
+            objectKey, bucket, sha256, contentType, sizeBytes
+        );
+        int added = jdbcTemplate.update(
+            "INSERT INTO image_object_refs (object_key, registration_id) VALUES (?, ?) ON CONFLICT DO NOTHING",
+            objectKey, registrationId
+        );
+        if (added > 0) {
+            jdbcTemplate.update(
+                "UPDATE image_objects SET ref_count = ref_count + 1, last_referenced_at = NOW() WHERE object_key = ?",
+                objectKey
+            );
+        }
+        return new Acquired(objectKey, Boolean.TRUE.equals(uploaded), added > 0);
+    }
+
+    /**
+     * No-op while a delete of the object is in flight: the PUT may have landed before it.
+     *
+     * @return whether the row was marked
+     */
+    public boolean markUploaded(String objectKey) {
+        return jdbcTemplate.update("UPDATE image_objects SET uploaded = TRUE WHERE object_key = ? AND deleting_since IS NULL", objectKey) > 0;
+    }
+
+    /**
+     * PUT an acquired object that is not uploaded yet, then mark it uploaded.
+     *
+     * When a delete of the key was claimed before the acquire, the storage DELETE may remove
+     * this PUT. The object is then PUT again once the claim has ended, so the caller's
+     * reference never points at a missing object. Gives up (IOException) when the claim has
+     * not ended within reput-wait-ms.
+     */
+    public void upload(String objectKey, ObjectUploader uploader) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(reputWaitMs);
+        for (int attempt = 1; ; attempt++) {
+            uploader.put();
+            if (markUploaded(objectKey)) return;
+            if (attempt >= MAX_PUT_ATTEMPTS) {
+                throw new IOException("Object " + objectKey + " is still being deleted");
+            }
+            awaitClaimEnd(objectKey, deadline);
+            log.debug("ImageObjects: {} was claimed for delete during its upload, putting it again", objectKey);
+        }
+    }
+
+    private void awaitClaimEnd(String objectKey, long deadline) throws IOException {
+        while (true) {
+            List<Boolean> ended = jdbcTemplate.queryForList(
+                "SELECT deleting_since IS NULL FROM image_objects WHERE object_key = ?", Boolean.class, objectKey);
+            // A missing row means the delete went through; the next PUT recreates the object
+            if (ended.isEmpty() || Boolean.TRUE.equals(ended.get(0))) return;
+            if (System.nanoTime() - deadline > 0) {
+                throw new IOException("Object " + objectKey + " is still being deleted");
+            }
+            try {
+                Thread.sleep(CLAIM_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a delete of " + objectKey, e);
+            }
+        }
+    }
+
+    public List<String> keysFor(long registrationId) {
+        return jdbcTemplate.queryForList(
+            "SELECT object_key FROM image_object_refs WHERE registration_id = ? ORDER BY object_key",
+            String.class,
+            registrationId
+        );
+    }
+
+    /** Release every reference held by a registration. Returns the keys deleted from storage. */
+    public List<String> releaseAll(long registrationId, ObjectDeleter deleter) {
+        return releaseKeys(Map.of(registrationId, keysFor(registrationId)), deleter);
+    }
+
+    /**
+     * Release every reference held by several registrations (account deletion), so objects
+     * that became unreferenced are deleted with one call per bucket rather than one per registration.
+     */
+    public List<String> releaseAll(Collection<Long> registrationIds, ObjectDeleter deleter) {
+        Map<Long, Collection<String>> refs = new LinkedHashMap<>();
+        for (Long id : registrationIds) {
+            if (id != null) refs.put(id, keysFor(id));
+        }
+        return releaseKeys(refs, deleter);
+    }
+
+    /** Release specific references (e.g. rollback of a failed upload). Returns the keys deleted from storage. */
+    public List<String> release(long registrationId, Collection<String> objectKeys, ObjectDeleter deleter) {
+        if (objectKeys == null) return new ArrayList<>();
+        return releaseKeys(Map.of(registrationId, objectKeys), deleter);
+    }
+
+    /**
+     * Delete unreferenced objects left behind by failed or interrupted deletes (and claims whose
+     * lease expired), at most {@code limit} per call. Returns the keys deleted from storage.
+     */
+    public List<String> sweep(int limit, ObjectDeleter deleter) {
+        Map<String, List<String>> claimed = new LinkedHashMap<>();
+        jdbcTemplate.query(
+            "UPDATE image_objects SET deleting_since = NOW(), uploaded = FALSE WHERE object_key IN (" +
+            "  SELECT object_key FROM image_objects WHERE ref_count = 0 " +
+            "  AND (deleting_since IS NULL OR deleting_since < NOW() - (? * INTERVAL '1 second')) " +
+            "  ORDER BY object_key LIMIT ? FOR UPDATE SKIP LOCKED" +
+            ") AND ref_count = 0 RETURNING object_key, bucket",
+            rs -> {
+                claimed.computeIfAbsent(rs.getString("bucket"), b -> new ArrayList<>()).add(rs.getString("object_key"));
+            },
+            deleteLeaseSeconds, limit
+        );
+        return deleteClaimed(claimed, deleter);
+    }
+
+    private List<String> releaseKeys(Map<Long, Collection<String>> refs, ObjectDeleter deleter) {
+        // Commit the decrements before touching storage, so no row lock or connection is held during the delete
+        List<String> unreferenced = transactionTemplate.execute(status -> decrement(refs));
+        if (unreferenced == null || unreferenced.isEmpty()) return new ArrayList<>();
+        return deleteClaimed(claim(unreferenced), deleter);
+    }
+
+    /** Drop the references; returns the keys whose ref_count reached zero. */
+    private List<String> decrement(Map<Long, Collection<String>> refs) {
+        List<String> unreferenced = new ArrayList<>();
+        for (Map.Entry<Long, Collection<String>> ref : refs.entrySet()) {
+            for (String key : ref.getValue()) {
+                int removed = jdbcTemplate.update(
+                    "DELETE FROM image_object_refs WHERE object_key = ? AND registration_id = ?",
+                    key, ref.getKey()
+                );
+                if (removed == 0) continue;
+
+                List<Integer> remaining = jdbcTemplate.queryForList(
+                    "UPDATE image_objects SET ref_count = GREATEST(ref_count - 1, 0) WHERE object_key = ? RETURNING ref_count",
+                    Integer.class,
+                    key
+                );
+                if (!remaining.isEmpty() && remaining.get(0) == 0) unreferenced.add(key);
+            }
+        }
+        return unreferenced;
+    }
+
+    /** Claim still-unreferenced rows for deletion; returns the claimed keys per bucket. */
+    private Map<String, List<String>> claim(List<String> keys) {
+        Map<String, List<String>> claimed = new LinkedHashMap<>();
+        for (String key : keys) {
+            // A reference acquired since the release committed keeps the object
+            List<String> bucket = jdbcTemplate.queryForList(
+                "UPDATE image_objects SET deleting_since = NOW(), uploaded = FALSE " +
+                "WHERE object_key = ? AND ref_count = 0 " +
+                "AND (deleting_since IS NULL OR deleting_since < NOW() - (? * INTERVAL '1 second')) RETURNING bucket",
+                String.class,
+                key, deleteLeaseSeconds
+            );
+            if (!bucket.isEmpty()) claimed.computeIfAbsent(bucket.get(0), b -> new ArrayList<>()).add(key);
+        }
+        return claimed;
+    }
+
+    /** Delete claimed objects from storage (outside any transaction), then settle their rows. */
+    private List<String> deleteClaimed(Map<String, List<String>> claimed, ObjectDeleter deleter) {
+        List<String> deleted = new ArrayList<>();
+        for (Map.Entry<String, List<String>> e : claimed.entrySet()) {
+            Set<String> gone = new HashSet<>();
+            try {
+                Collection<String> confirmed = deleter.delete(e.getKey(), e.getValue());
+                if (confirmed != null) gone.addAll(confirmed);
+            } catch (Exception ex) {
+                log.warn("ImageObjects: could not delete {} unreferenced object(s) -> {}", e.getValue().size(), ex.toString());
+            }
+            if (gone.size() < e.getValue().size()) {
+                // Rows go back to unclaimed (uploaded stays FALSE): reused by a later upload, or swept
+                log.warn("ImageObjects: delete status unknown for {} object(s), left for the sweeper", e.getValue().size() - gone.size());
+            }
+            for (String key : e.getValue()) {
+                if (gone.contains(key) && jdbcTemplate.update("DELETE FROM image_objects WHERE object_key = ? AND ref_count = 0", key) > 0) {
+                    deleted.add(key);
+                } else {
+                    // Delete failed, or the object was referenced again meanwhile: the upload that
+                    // acquired it is waiting in upload() and PUTs it again once this claim ends
+                    jdbcTemplate.update("UPDATE image_objects SET deleting_since = NULL WHERE object_key = ?", key);
+                }
+            }
+        }
+        return deleted;
+    }
+
+}
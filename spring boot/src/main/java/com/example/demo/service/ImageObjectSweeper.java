@@ -0,0 +1,41 @@
+package com.example.demo.service;
+
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Retries storage deletes of unreferenced content-addressed images: rows left with
+ * {@code ref_count = 0} by a failed delete, or by an instance that stopped mid-delete.
+ * Claims use SKIP LOCKED and a lease, so several instances can run this at once.
+ */
+@Component
+public class ImageObjectSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageObjectSweeper.class);
+
+    private final ImageObjectStore imageObjectStore;
+    private final SupabaseService supabaseService;
+
+    @Value("${app.images.objects.sweep-batch:500}")
+    private int sweepBatch;
+
+    public ImageObjectSweeper(ImageObjectStore imageObjectStore, SupabaseService supabaseService) {
+        this.imageObjectStore = imageObjectStore;
+        this.supabaseService = supabaseService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.images.objects.sweep-interval-ms:600000}", initialDelayString = "${app.images.objects.sweep-initial-delay-ms:120000}")
+    public void sweep() {
+        try {
+            List<String> deleted = imageObjectStore.sweep(sweepBatch, supabaseService::deleteObjectsConfirmed);
+            if (!deleted.isEmpty()) log.info("ImageObjects: swept {} unreferenced object(s)", deleted.size());
+        } catch (Exception e) {
+            log.info("ImageObjects: sweep failed -> {}", e.toString());
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.example.demo.service;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Composite;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.util.ByteArrayImageOutputStream;
+import com.example.demo.util.ExifOrientation;
+
+/**
+ * Resize (+ watermark for vehicle photos) + encode pipeline for uploaded photos.
+ *
+ * Large phone photos are never decoded at full resolution: the reader is asked for the image
+ * dimensions first, inputs above {@code app.images.max-input-pixels} are rejected, and the rest
+ * are decoded with source subsampling so the decoded raster lands just above the target width.
+ * A process-wide semaphore (in kilo-pixels) bounds how many decoded pixels are held at once.
+ * The EXIF orientation of JPEG inputs is applied to the pixels; output is re-encoded from
+ * pixels only, so EXIF/GPS, camera and other input metadata never survive.
+ */
+@Service
+public class ImageProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessingService.class);
+
+    public record ProcessedImage(byte[] bytes, String extension, String contentType, int width, int height) {}
+
+    /**
+     * The image was refused (over the pixel budget, or no decode capacity in time).
+     * Unlike a decode failure, the caller must not fall back to the original bytes.
+     */
+    public static class ImageRejectedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public ImageRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    static final String WATERMARK_TEXT = "HPG";
+    static final float WATERMARK_ALPHA = 0.12f;
+    private static final int MAX_WATERMARK_STAMPS = 64;
+    private static final ConcurrentHashMap<Integer, WatermarkStamp> WATERMARK_STAMPS = new ConcurrentHashMap<>();
+
+    private final long maxInputPixels;
+    private final int budgetKilopixels;
+    private final long budgetWaitMs;
+    private final Semaphore pixelBudget;
+
+    public ImageProcessingService(
+        @Value("${app.images.max-input-pixels:60000000}") long maxInputPixels,
+        @Value("${app.images.decode-budget-pixels:80000000}") long decodeBudgetPixels,
+        @Value("${app.images.decode-wait-ms:15000}") long budgetWaitMs
+    ) {
+        this.maxInputPixels = Math.max(1, maxInputPixels);
+        this.budgetKilopixels = (int) Math.max(1, Math.min(Integer.MAX_VALUE, decodeBudgetPixels / 1000));
+        this.budgetWaitMs = Math.max(0, budgetWaitMs);
+        this.pixelBudget = new Semaphore(this.budgetKilopixels, true);
+    }
+
+    /**
+     * Resize to at most {@code targetWidth}, apply the diagonal "HPG" watermark and encode
+     * (WebP when a writer is available, else JPEG, else PNG).
+     *
+     * @return the encoded image, or null if the input could not be decoded
+     * @throws ImageRejectedException if the input exceeds the pixel budget or the decode
+     *         budget could not be acquired in time
+     */
+    public ProcessedImage resizeAndWatermark(InputStreamSource source, int targetWidth) throws IOException {
+        List<ProcessedImage> out = render(source, List.of(targetWidth), true);
+        return out == null || out.isEmpty() ? null : out.get(0);
+    }
+
+    /**
+     * Resize to at most {@code targetWidth} and encode, without the watermark (profile photos,
+     * post images). Same decode guards as {@link #resizeAndWatermark(InputStreamSource, int)}.
+     *
+     * @return the encoded image, or null if the input could not be decoded
+     */
+    public ProcessedImage resize(InputStreamSource source, int targetWidth) throws IOException {
+        List<ProcessedImage> out = render(source, List.of(targetWidth), false);
+        return out == null || out.isEmpty() ? null : out.get(0);
+    }
+
+    /**
+     * Decode once and emit one watermarked rendition per requested width. Widths larger than
+     * the source collapse to the source width, so the result holds distinct widths only,
+     * smallest first.
+     *
+     * @return the renditions, or null if the input could not be decoded
+     */
+    public List<ProcessedImage> resizeAndWatermark(InputStreamSource source, List<Integer> targetWidths) throws IOException {
+        return render(source, targetWidths, true);
+    }
+
+    private List<ProcessedImage> render(InputStreamSource source, List<Integer> targetWidths, boolean watermark) throws IOException {
+        TreeSet<Integer> requested = new TreeSet<>();
+        for (Integer tw : targetWidths) {
+            if (tw != null && tw > 0) requested.add(tw);
+        }
+        if (requested.isEmpty()) return List.of();
+        int largest = requested.last();
+
+        // In-memory stream: ImageIO.createImageInputStream would spool every upload to a temp file
+        try (InputStream in = source.getInputStream(); ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            ImageReader reader = ImageCodecPool.borrowReader(iis);
+            if (reader == null) return null;
+
+            boolean readerOk = false;
+            try {
+                int orientation = ExifOrientation.read(iis);
+                boolean swap = ExifOrientation.swapsDimensions(orientation);
+                reader.setInput(iis, true, true);
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                if ((long) w * h > maxInputPixels) {
+                    throw new ImageRejectedException("Image is too large (" + w + "x" + h + ")");
+                }
+
+                // Target widths refer to the image as displayed (after the EXIF rotation)
+                int sub = subsampling(swap ? h : w, largest);
+                int decodedW = (w + sub - 1) / sub;
+                int decodedH = (h + sub - 1) / sub;
+                int shownW = swap ? decodedH : decodedW;
+                int shownH = swap ? decodedW : decodedH;
+
+                // Renditions are drawn one at a time, so only the decoded raster and the biggest canvas coexist
+                int maxW = Math.min(shownW, largest);
+                int permits = kilopixels((long) decodedW * decodedH + (long) maxW * scaledHeight(shownW, shownH, maxW));
+                if (!pixelBudget.tryAcquire(permits, budgetWaitMs, TimeUnit.MILLISECONDS)) {
+                    throw new ImageRejectedException("Image processing is busy, please retry");
+                }
+                try {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    if (sub > 1) {
+                        param.setSourceSubsampling(sub, sub, 0, 0);
+                    }
+                    BufferedImage src = reader.read(0, param);
+                    if (src == null) return null;
+
+                    List<ProcessedImage> out = new ArrayList<>();
+                    int lastW = -1;
+                    int srcW = swap ? src.getHeight() : src.getWidth();
+                    int srcH = swap ? src.getWidth() : src.getHeight();
+                    for (int tw : requested) {
+                        int newW = Math.min(srcW, tw);
+                        if (newW == lastW) continue;
+                        lastW = newW;
+                        int newH = scaledHeight(srcW, srcH, newW);
+                        try (ImageCodecPool.Canvas canvas = ImageCodecPool.borrowCanvas(newW, newH)) {
+                            paint(src, orientation, canvas.image(), watermark);
+                            out.add(encode(canvas.image()));
+                        }
+                    }
+                    src.flush();
+                    readerOk = true;
+                    return out;
+                } finally {
+                    pixelBudget.release(permits);
+                }
+            } finally {
+                ImageCodecPool.returnReader(reader, readerOk);
+            }
+        } catch (ImageRejectedException e) {
+            throw e;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", ie);
+        } catch (Exception e) {
+            log.debug("Image processing failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    /** Largest integer decode step that keeps the decoded width >= the largest target. */
+    static int subsampling(int srcWidth, int largestTarget) {
+        return Math.max(1, srcWidth / largestTarget);
+    }
+
+    static int scaledHeight(int w, int h, int newW) {
+        return newW >= w ? h : Math.max(1, (int) Math.round((newW / (double) w) * h));
+    }
+
+    private int kilopixels(long pixels) {
+        long kp = (pixels + 999) / 1000;
+        // A single image may never need more than the whole budget, or it would wait forever
+        return (int) Math.max(1, Math.min(budgetKilopixels, kp));
+    }
+
+    static BufferedImage drawWatermarked(BufferedImage src, int newW, int newH) {
+        return draw(src, ExifOrientation.NORMAL, newW, newH, true);
+    }
+
+    private static BufferedImage draw(BufferedImage src, int orientation, int newW, int newH, boolean watermark) {
+        BufferedImage canvas = new BufferedImage(newW, newH, ImageCodecPool.CANVAS_TYPE);
+        paint(src, orientation, canvas, watermark);
+        return canvas;
+    }
+
+    /**
+     * Scale {@code src} (stored pixels, displayed per {@code orientation}) over the whole of
+     * {@code canvas}. Every pixel is painted, so a recycled canvas needs no clearing.
+     */
+    static void paint(BufferedImage src, int orientation, BufferedImage canvas, boolean watermark) {
+        int newW = canvas.getWidth();
+        int newH = canvas.getHeight();
+        Graphics2D g = canvasGraphics(canvas);
+        if (src.getColorModel().hasAlpha()) {
+            // Transparent PNG avatars would otherwise turn black on the opaque canvas
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, newW, newH);
+        }
+        if (orientation == ExifOrientation.NORMAL) {
+            g.drawImage(src, 0, 0, newW, newH, null);
+        } else {
+            boolean swap = ExifOrientation.swapsDimensions(orientation);
+            double shownW = swap ? src.getHeight() : src.getWidth();
+            double shownH = swap ? src.getWidth() : src.getHeight();
+            AffineTransform at = AffineTransform.getScaleInstance(newW / shownW, newH / shownH);
+            at.concatenate(ExifOrientation.transform(orientation, src.getWidth(), src.getHeight()));
+            g.drawImage(src, at, null);
+        }
+        if (watermark) {
+            applyWatermark(g, newW, newH);
+        }
+        g.dispose();
+    }
+
+    /** Graphics with the pipeline's rendering hints (bilinear scaling, antialiased watermark). */
+    static Graphics2D canvasGraphics(BufferedImage canvas) {
+        Graphics2D g = canvas.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        return g;
+    }
+
+    /**
+     * Diagonal tiled "HPG" watermark at 12% white, rotated -30 degrees around the centre.
+     *
+     * The glyph run is pre-rendered once per font size, already rotated, into a small ARGB
+     * stamp. Each grid cell is then a plain alpha blit at the cell's device position, and cells
+     * that land entirely off the canvas (most of the 3x3 grid area) are skipped.
+     */
+    static void applyWatermark(Graphics2D g, int w, int h) {
+        int fontSize = Math.max(24, (int) (w * 0.12));
+        WatermarkStamp stamp = watermarkStamp(fontSize);
+        int step = stamp.step();
+        int sw = stamp.image().getWidth();
+        int sh = stamp.image().getHeight();
+
+        Composite origComposite = g.getComposite();
+        g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, WATERMARK_ALPHA));
+        AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(-30), w / 2.0, h / 2.0);
+        double[] pt = new double[2];
+        for (int y = -h; y < h * 2; y += step) {
+            for (int x = -w; x < w * 2; x += step) {
+                pt[0] = x;
+                pt[1] = y;
+                rot.transform(pt, 0, pt, 0, 1);
+                int dx = (int) Math.round(pt[0]) + stamp.offsetX();
+                int dy = (int) Math.round(pt[1]) + stamp.offsetY();
+                if (dx >= w || dy >= h || dx + sw <= 0 || dy + sh <= 0) continue;
+                g.drawImage(stamp.image(), dx, dy, null);
+            }
+        }
+        g.setComposite(origComposite);
+    }
+
+    /** Pre-rotated glyph run; (offsetX, offsetY) is the image corner relative to the text origin. */
+    record WatermarkStamp(BufferedImage image, int offsetX, int offsetY, int step) {}
+
+    static WatermarkStamp watermarkStamp(int fontSize) {
+        WatermarkStamp stamp = WATERMARK_STAMPS.get(fontSize);
+        if (stamp != null) return stamp;
+        // Font size follows the output width, so only a handful of sizes are live at once
+        if (WATERMARK_STAMPS.size() >= MAX_WATERMARK_STAMPS) {
+            WATERMARK_STAMPS.clear();
+        }
+        return WATERMARK_STAMPS.computeIfAbsent(fontSize, ImageProcessingService::renderWatermarkStamp);
+    }
+
+    private static WatermarkStamp renderWatermarkStamp(int fontSize) {
+        Font font = new Font("Arial", Font.BOLD, fontSize);
+        AffineTransform rot = AffineTransform.getRotateInstance(Math.toRadians(-30));
+        GlyphVector glyphs = font.createGlyphVector(new FontRenderContext(null, true, false), WATERMARK_TEXT);
+        Rectangle2D bounds = rot.createTransformedShape(glyphs.getVisualBounds()).getBounds2D();
+        // 2px margin for antialiasing
+        int bx = (int) Math.floor(bounds.getX()) - 2;
+        int by = (int) Math.floor(bounds.getY()) - 2;
+        int bw = (int) Math.ceil(bounds.getMaxX()) + 2 - bx;
+        int bh = (int) Math.ceil(bounds.getMaxY()) + 2 - by;
+
+        BufferedImage image = new BufferedImage(bw, bh, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setFont(font);
+            g.setColor(Color.WHITE);
+            g.translate(-bx, -by);
+            g.transform(rot);
+            g.drawString(WATERMARK_TEXT, 0, 0);
+        } finally {
+            g.dispose();
+        }
+        return new WatermarkStamp(image, bx, by, (int) (fontSize * 3.0));
+    }
+
+    static ProcessedImage encode(BufferedImage canvas) throws IOException {
+        // WebP when a writer is registered, else JPEG, else PNG
+        ProcessedImage encoded = encodeAs(canvas, "webp");
+        if (encoded == null) encoded = encodeAs(canvas, "jpg");
+        return encoded != null ? encoded : encodeAs(canvas, "png");
+    }
+
+    /** {@code canvas} as "webp", "jpg" (quality 0.82) or "png", or null if no writer is registered for it. */
+    static ProcessedImage encodeAs(BufferedImage canvas, String format) throws IOException {
+        ImageCodecPool.PooledWriter writer = ImageCodecPool.borrowWriter(format);
+        if (writer == null) return null;
+        byte[] bytes = write(writer, canvas);
+        return switch (format) {
+            case "webp" -> new ProcessedImage(bytes, "webp", "image/webp", canvas.getWidth(), canvas.getHeight());
+            case "png" -> new ProcessedImage(bytes, "png", "image/png", canvas.getWidth(), canvas.getHeight());
+            default -> new ProcessedImage(bytes, "jpg", "image/jpeg", canvas.getWidth(), canvas.getHeight());
+        };
+    }
+
+    private static byte[] write(ImageCodecPool.PooledWriter pooled, BufferedImage canvas) throws IOException {
+        int expected = ImageCodecPool.expectedEncodedBytes(canvas.getWidth(), canvas.getHeight());
+        ByteArrayImageOutputStream ios = new ByteArrayImageOutputStream(ImageCodecPool.borrowBuffer(expected));
+        boolean ok = false;
+        try {
+            pooled.writer.setOutput(ios);
+            pooled.writer.write(null, new IIOImage(canvas, null, null), pooled.param);
+            ok = true;
+            return ios.toByteArray();
+        } finally {
+            ImageCodecPool.returnWriter(pooled, ok);
+            ios.close();
+            ImageCodecPool.returnBuffer(ios.buffer());
+        }
+    }
+}
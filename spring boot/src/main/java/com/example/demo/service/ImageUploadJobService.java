@@ -0,0 +1,340 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.demo.model.Registration;
+import com.example.demo.repository.RegistrationRepository;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.util.ResponsiveImages;
+import com.example.demo.util.ResponsiveImages.Variant;
+import com.example.demo.util.SpooledMultipartFile;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Asynchronous vehicle image uploads.
+ *
+ * The request thread only copies the raw files to a local spool directory and records a job
+ * row; a bounded worker pool then runs the usual decode/resize/upload and updates the
+ * registration. Clients poll {@code GET /api/registration-images/jobs/{id}}.
+ *
+ * Spool layout: {@code {spool-dir}/{jobId}/slot-{n}} plus a {@code manifest.json} with the
+ * original file names and content types, so queued jobs survive a restart of this instance.
+ */
+@Service
+public class ImageUploadJobService {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_PROCESSING = "processing";
+    public static final String STATUS_SUCCEEDED = "succeeded";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final Logger log = LoggerFactory.getLogger(ImageUploadJobService.class);
+    private static final String MANIFEST = "manifest.json";
+
+    private record SpoolEntry(String name, String originalFilename, String contentType) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final SupabaseService supabaseService;
+    private final RegistrationRepository registrationRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Value("${app.images.jobs.spool-dir:${java.io.tmpdir}/hpg-image-spool}")
+    private String spoolDir;
+
+    @Value("${app.images.jobs.stale-minutes:30}")
+    private long staleMinutes;
+
+    @Value("${app.images.jobs.retention-hours:24}")
+    private long retentionHours;
+
+    public ImageUploadJobService(
+        JdbcTemplate jdbcTemplate,
+        SupabaseService supabaseService,
+        RegistrationRepository registrationRepository,
+        TransactionTemplate transactionTemplate,
+        @Qualifier("imageJobExecutor") ExecutorService executor
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.supabaseService = supabaseService;
+        this.registrationRepository = registrationRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+    }
+
+    /**
+     * Spool the uploads and queue a job. Empty slots are kept so the front image stays first.
+     *
+     * @param contactNumber the uploader; only they can read the job back through {@link #find}
+     * @return the job id
+     * @throws RejectedExecutionException when the worker queue is full
+     */
+    public String submit(Long registrationId, String contactNumber, MultipartFile[] images) throws IOException {
+        if (images == null || images.length == 0) {
+            throw new IOException("No images provided to upload");
+        }
+        String jobId = UUID.randomUUID().toString();
+        Path dir = jobDir(jobId);
+        Files.createDirectories(dir);
+
+        int nonEmpty = 0;
+        try {
+            List<SpoolEntry> manifest = new ArrayList<>();
+            for (int i = 0; i < images.length; i++) {
+                MultipartFile image = images[i];
+                Path target = dir.resolve("slot-" + i);
+                if (image == null || image.isEmpty()) {
+                    Files.createFile(target);
+                    manifest.add(new SpoolEntry("images", null, null));
+                    continue;
+                }
+                SpooledMultipartFile.spool(image, target);
+                manifest.add(new SpoolEntry(image.getName(), image.getOriginalFilename(), image.getContentType()));
+                nonEmpty++;
+            }
+            objectMapper.writeValue(dir.resolve(MANIFEST).toFile(), manifest);
+        } catch (IOException | RuntimeException e) {
+            deleteSpool(jobId);
+            throw e;
+        }
+
+        jdbcTemplate.update(
+            "INSERT INTO image_upload_jobs (id, registration_id, contact_number, status, total_images) VALUES (?, ?, ?, ?, ?)",
+            jobId, registrationId, contactNumber, STATUS_QUEUED, nonEmpty
+        );
+        try {
+            executor.execute(() -> run(jobId, registrationId));
+        } catch (RejectedExecutionException e) {
+            finish(jobId, STATUS_FAILED, null, "Image processing queue is full");
+            deleteSpool(jobId);
+            throw e;
+        }
+        log.debug("Queued image upload job (registrationId={}, images={})", registrationId, nonEmpty);
+        return jobId;
+    }
+
+    private void run(String jobId, Long registrationId) {
+        int claimed = jdbcTemplate.update(
+            "UPDATE image_upload_jobs SET status = ?, updated_at = NOW() WHERE id = ? AND status = ?",
+            STATUS_PROCESSING, jobId, STATUS_QUEUED
+        );
+        if (claimed == 0) return; // already picked up (or failed) elsewhere
+
+        try {
+            List<MultipartFile> files = readSpool(jobId);
+            Map<String, Object> uploadResult = supabaseService.uploadImagesToFolder(files, registrationId,
+                done -> jdbcTemplate.update(
+                    "UPDATE image_upload_jobs SET processed_images = ?, updated_at = NOW() WHERE id = ?",
+                    done, jobId
+                ));
+
+            @SuppressWarnings("unchecked")
+            List<String> imageUrls = (List<String>) uploadResult.get("imageUrls");
+            @SuppressWarnings("unchecked")
+            Map<String, List<Variant>> imageVariants = (Map<String, List<Variant>>) uploadResult.get("imageVariants");
+
+            if (applyUpload(registrationId, imageUrls, imageVariants) == null) {
+                // Deleted while we were uploading: drop what we just stored
+                supabaseService.deleteAllVehicleImages(registrationId);
+                finish(jobId, STATUS_FAILED, null, "Registration not found with ID: " + registrationId);
+                return;
+            }
+            finish(jobId, STATUS_SUCCEEDED, objectMapper.writeValueAsString(imageUrls != null ? imageUrls : List.of()), null);
+            log.debug("Image upload job finished (registrationId={}, count={})", registrationId, imageUrls != null ? imageUrls.size() : 0);
+        } catch (Exception e) {
+            log.warn("Image upload job failed (registrationId={}): {}", registrationId, e.toString());
+            finish(jobId, STATUS_FAILED, null, e instanceof ImageRejectedException ? e.getMessage() : "Error uploading images");
+        } finally {
+            deleteSpool(jobId);
+        }
+    }
+
+    /**
+     * Point the registration at freshly uploaded images, then release the images (and variants)
+     * they replaced that it no longer uses. Returns the registration, or null if it is gone.
+     *
+     * The row is locked like a direct-upload slot attach, so neither overwrites the other and
+     * a slot image replaced here is released too.
+     */
+    public Registration applyUpload(Long registrationId, List<String> imageUrls, Map<String, List<Variant>> imageVariants) {
+        Set<String> dropped = new HashSet<>();
+        Registration saved = transactionTemplate.execute(tx -> {
+            Registration registration = registrationRepository.findByIdForUpdate(registrationId).orElse(null);
+            if (registration == null || imageUrls == null || imageUrls.isEmpty()) return registration;
+
+            dropped.addAll(ResponsiveImages.urlsInUse(registration.getVehicleImageUrls(), registration.getVehicleImageVariantsJson()));
+            registration.setVehicleImageUrls(imageUrls);
+            registration.setVehicleImageVariantsJson(ResponsiveImages.merge(registration.getVehicleImageVariantsJson(), imageVariants, imageUrls));
+            registrationRepository.save(registration);
+            dropped.removeAll(ResponsiveImages.urlsInUse(registration.getVehicleImageUrls(), registration.getVehicleImageVariantsJson()));
+            return registration;
+        });
+        // After the commit, as in DirectUploadService: a release must not outlive a rolled-back save
+        supabaseService.releaseVehicleImages(registrationId, dropped);
+        return saved;
+    }
+
+    private void finish(String jobId, String status, String resultJson, String error) {
+        try {
+            jdbcTemplate.update(
+                "UPDATE image_upload_jobs SET status = ?, result_json = ?, error = ?, updated_at = NOW(), finished_at = NOW() WHERE id = ?",
+                status, resultJson, error, jobId
+            );
+        } catch (Exception e) {
+            log.warn("Could not record image upload job status {}: {}", status, e.toString());
+        }
+    }
+
+    /** Job status for polling, or null if unknown or not this contact's job. */
+    public Map<String, Object> find(String jobId, String contactNumber) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+            "SELECT id, registration_id, status, total_images, processed_images, result_json, error, " +
+            "created_at, updated_at, finished_at FROM image_upload_jobs WHERE id = ? AND contact_number = ?",
+            jobId, contactNumber
+        );
+        if (rows.isEmpty()) return null;
+        Map<String, Object> r = rows.get(0);
+
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("jobId", r.get("id"));
+        out.put("registrationId", ((Number) r.get("registration_id")).longValue());
+        out.put("status", r.get("status"));
+        out.put("totalImages", r.get("total_images"));
+        out.put("processedImages", r.get("processed_images"));
+        out.put("error", r.get("error"));
+        out.put("createdAt", r.get("created_at") != null ? r.get("created_at").toString() : null);
+        out.put("updatedAt", r.get("updated_at") != null ? r.get("updated_at").toString() : null);
+        out.put("finishedAt", r.get("finished_at") != null ? r.get("finished_at").toString() : null);
+        List<String> imageUrls = List.of();
+        Object json = r.get("result_json");
+        if (json != null) {
+            try {
+                imageUrls = objectMapper.readValue(json.toString(), new TypeReference<List<String>>() {});
+            } catch (Exception ignored) {
+                // keep empty
+            }
+        }
+        out.put("imageUrls", imageUrls);
+        return out;
+    }
+
+    /**
+     * Re-queue jobs whose spool is still on this instance; fail jobs that have been stuck
+     * (queued or processing) for longer than stale-minutes with no spool to resume from.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverOnStartup() {
+        try {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, registration_id, status, updated_at < NOW() - (? * INTERVAL '1 minute') AS stale " +
+                "FROM image_upload_jobs WHERE status IN (?, ?)",
+                staleMinutes, STATUS_QUEUED, STATUS_PROCESSING
+            );
+            for (Map<String, Object> r : rows) {
+                String jobId = String.valueOf(r.get("id"));
+                Long registrationId = ((Number) r.get("registration_id")).longValue();
+                boolean stale = Boolean.TRUE.equals(r.get("stale"));
+                if (Files.isRegularFile(jobDir(jobId).resolve(MANIFEST))) {
+                    jdbcTemplate.update(
+                        "UPDATE image_upload_jobs SET status = ?, processed_images = 0, updated_at = NOW() WHERE id = ?",
+                        STATUS_QUEUED, jobId
+                    );
+                    try {
+                        executor.execute(() -> run(jobId, registrationId));
+                    } catch (RejectedExecutionException e) {
+                        finish(jobId, STATUS_FAILED, null, "Image processing queue is full");
+                        deleteSpool(jobId);
+                    }
+                } else if (stale) {
+                    finish(jobId, STATUS_FAILED, null, "Image upload was interrupted");
+                }
+            }
+        } catch (Exception e) {
+            log.info("ImageJobs: recovery skipped -> {}", e.toString());
+        }
+    }
+
+    /** Drop finished jobs past retention and spool directories left behind by a crash. */
+    @Scheduled(cron = "${app.images.jobs.cleanup-cron:0 15 * * * *}")
+    public void cleanup() {
+        try {
+            int removed = jdbcTemplate.update(
+                "DELETE FROM image_upload_jobs WHERE finished_at IS NOT NULL AND finished_at < NOW() - (? * INTERVAL '1 hour')",
+                retentionHours
+            );
+            if (removed > 0) log.debug("ImageJobs: removed {} finished job(s)", removed);
+        } catch (Exception e) {
+            log.info("ImageJobs: cleanup failed -> {}", e.toString());
+        }
+
+        Path root = Paths.get(spoolDir);
+        if (!Files.isDirectory(root)) return;
+        Instant cutoff = Instant.now().minus(Duration.ofHours(retentionHours));
+        try (Stream<Path> dirs = Files.list(root)) {
+            for (Path dir : dirs.toList()) {
+                if (Files.getLastModifiedTime(dir).toInstant().isBefore(cutoff)) {
+                    deleteSpool(dir.getFileName().toString());
+                }
+            }
+        } catch (IOException e) {
+            log.info("ImageJobs: spool cleanup failed -> {}", e.toString());
+        }
+    }
+
+    private List<MultipartFile> readSpool(String jobId) throws IOException {
+        Path dir = jobDir(jobId);
+        List<SpoolEntry> manifest = objectMapper.readValue(dir.resolve(MANIFEST).toFile(), new TypeReference<List<SpoolEntry>>() {});
+        List<MultipartFile> files = new ArrayList<>(manifest.size());
+        for (int i = 0; i < manifest.size(); i++) {
+            SpoolEntry e = manifest.get(i);
+            files.add(new SpooledMultipartFile(e.name(), e.originalFilename(), e.contentType(), dir.resolve("slot-" + i)));
+        }
+        return files;
+    }
+
+    private Path jobDir(String jobId) {
+        return Paths.get(spoolDir, jobId);
+    }
+
+    private void deleteSpool(String jobId) {
+        Path dir = jobDir(jobId);
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path p : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(p);
+            }
+        } catch (IOException e) {
+            log.debug("ImageJobs: could not delete spool {} -> {}", dir, e.toString());
+        }
+    }
+}
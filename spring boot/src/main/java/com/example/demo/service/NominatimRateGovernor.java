@@ -0,0 +1,156 @@
+package com.example.demo.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Shared client-side rate governor for nominatim.openstreetmap.org.
+ *
+ * The public Nominatim usage policy allows at most one request per second per application,
+ * so every caller (reverse geocoding, postal search) must take a permit from this token bucket
+ * before going upstream. Callers that cannot get a permit within their wait budget (or find the
+ * wait queue full) are told to skip the call, so we degrade to "unresolved" instead of getting
+ * throttled for everyone.
+ *
+ * Interactive requests (a user is waiting) always go ahead of background enrichment.
+ */
+@Component
+public class NominatimRateGovernor {
+
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    private static final Logger log = LoggerFactory.getLogger(NominatimRateGovernor.class);
+
+    /** Identifies us to Nominatim as required by the usage policy. */
+    public static final String USER_AGENT = "HerapheriGoods/1.0 (contact: support@herapherigoods.in)";
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final int queueCapacity;
+    private final long interactiveMaxWaitNanos;
+    private final long backgroundMaxWaitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private double tokens;
+    private long lastRefillNanos;
+    private int waitingInteractive;
+    private int waitingBackground;
+
+    // Metrics
+    private final AtomicLong grantedInteractive = new AtomicLong();
+    private final AtomicLong grantedBackground = new AtomicLong();
+    private final AtomicLong rejectedQueueFull = new AtomicLong();
+    private final AtomicLong rejectedTimeout = new AtomicLong();
+    private final AtomicLong totalQueueNanos = new AtomicLong();
+    private final AtomicLong maxQueueNanos = new AtomicLong();
+
+    public NominatimRateGovernor(
+        @Value("${app.geo.nominatim.permits-per-second:1}") double permitsPerSecond,
+        @Value("${app.geo.nominatim.burst:1}") int burst,
+        @Value("${app.geo.nominatim.queue-capacity:20}") int queueCapacity,
+        @Value("${app.geo.nominatim.interactive-max-wait-ms:3000}") long interactiveMaxWaitMs,
+        @Value("${app.geo.nominatim.background-max-wait-ms:30000}") long backgroundMaxWaitMs
+    ) {
+        this.permitsPerNano = Math.max(0.001, permitsPerSecond) / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.interactiveMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, interactiveMaxWaitMs));
+        this.backgroundMaxWaitNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, backgroundMaxWaitMs));
+        this.tokens = this.burst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Wait for a permit to call Nominatim.
+     *
+     * @return true if the caller may go upstream now, false if it should skip the call
+     *         (queue full, wait budget exceeded or interrupted)
+     */
+    public boolean acquire(Priority priority) {
+        Priority p = priority == null ? Priority.INTERACTIVE : priority;
+        long start = System.nanoTime();
+        long deadline = start + (p == Priority.INTERACTIVE ? interactiveMaxWaitNanos : backgroundMaxWaitNanos);
+
+        lock.lock();
+        try {
+            if (waitingInteractive + waitingBackground >= queueCapacity) {
+                rejectedQueueFull.incrementAndGet();
+                log.debug("Nominatim governor: queue full, rejecting {} request", p);
+                return false;
+            }
+            if (p == Priority.INTERACTIVE) waitingInteractive++; else waitingBackground++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    refill(now);
+                    // Background callers only proceed when no interactive caller is waiting
+                    boolean myTurn = p == Priority.INTERACTIVE || waitingInteractive == 0;
+                    if (myTurn && tokens >= 1.0) {
+                        tokens -= 1.0;
+                        recordGrant(p, now - start);
+                        return true;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        rejectedTimeout.incrementAndGet();
+                        log.debug("Nominatim governor: {} request gave up after {} ms", p, TimeUnit.NANOSECONDS.toMillis(now - start));
+                        return false;
+                    }
+                    long untilToken = tokens >= 1.0 ? remaining : (long) Math.ceil((1.0 - tokens) / permitsPerNano);
+                    changed.awaitNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(1), Math.min(remaining, untilToken)));
+                }
+            } finally {
+                if (p == Priority.INTERACTIVE) waitingInteractive--; else waitingBackground--;
+                changed.signalAll();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        long elapsed = now - lastRefillNanos;
+        if (elapsed <= 0) return;
+        tokens = Math.min(burst, tokens + elapsed * permitsPerNano);
+        lastRefillNanos = now;
+    }
+
+    private void recordGrant(Priority p, long queuedNanos) {
+        if (p == Priority.INTERACTIVE) grantedInteractive.incrementAndGet(); else grantedBackground.incrementAndGet();
+        totalQueueNanos.addAndGet(queuedNanos);
+        maxQueueNanos.accumulateAndGet(queuedNanos, Math::max);
+    }
+
+    /** Point-in-time counters for diagnostics. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        long granted = grantedInteractive.get() + grantedBackground.get();
+        lock.lock();
+        try {
+            out.put("waitingInteractive", waitingInteractive);
+            out.put("waitingBackground", waitingBackground);
+        } finally {
+            lock.unlock();
+        }
+        out.put("grantedInteractive", grantedInteractive.get());
+        out.put("grantedBackground", grantedBackground.get());
+        out.put("rejectedQueueFull", rejectedQueueFull.get());
+        out.put("rejectedTimeout", rejectedTimeout.get());
+        out.put("avgQueueMs", granted == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalQueueNanos.get() / granted));
+        out.put("maxQueueMs", TimeUnit.NANOSECONDS.toMillis(maxQueueNanos.get()));
+        return out;
+    }
+}
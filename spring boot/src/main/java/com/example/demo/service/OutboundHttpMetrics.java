@@ -0,0 +1,143 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Per-host counters for every outbound HTTP call (storage, geo, SMS, email, captcha).
+ *
+ * Latency is measured to the response headers (body streaming is the caller's). For the
+ * OkHttp client, new TCP connections and TLS handshakes are counted as well, so
+ * {@code connects / calls} shows how well keep-alive is working.
+ */
+@Component
+public class OutboundHttpMetrics {
+
+    // Upper bounds (ms) of the latency buckets; the last bucket is open-ended
+    private static final long[] BUCKETS_MS = { 50, 200, 1000, 5000 };
+
+    private static final class HostStats {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong ioErrors = new AtomicLong();
+        final AtomicLong clientErrors = new AtomicLong();
+        final AtomicLong serverErrors = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong[] buckets = new AtomicLong[BUCKETS_MS.length + 1];
+        final AtomicLong connects = new AtomicLong();
+        final AtomicLong tlsHandshakes = new AtomicLong();
+
+        HostStats() {
+            for (int i = 0; i < buckets.length; i++) buckets[i] = new AtomicLong();
+        }
+    }
+
+    private final ConcurrentHashMap<String, HostStats> hosts = new ConcurrentHashMap<>();
+
+    /** @param status HTTP status, or -1 when the call failed with an I/O error */
+    public void record(String host, int status, long nanos) {
+        HostStats s = stats(host);
+        s.calls.incrementAndGet();
+        if (status < 0) s.ioErrors.incrementAndGet();
+        else if (status >= 500) s.serverErrors.incrementAndGet();
+        else if (status >= 400) s.clientErrors.incrementAndGet();
+        s.totalNanos.addAndGet(nanos);
+        s.maxNanos.accumulateAndGet(nanos, Math::max);
+        long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int b = 0;
+        while (b < BUCKETS_MS.length && ms > BUCKETS_MS[b]) b++;
+        s.buckets[b].incrementAndGet();
+    }
+
+    private HostStats stats(String host) {
+        return hosts.computeIfAbsent(host == null ? "unknown" : host, h -> new HostStats());
+    }
+
+    /** Application interceptor for OkHttp clients (one measurement per call, retries included). */
+    public Interceptor okHttpInterceptor() {
+        return chain -> {
+            String host = chain.request().url().host();
+            long start = System.nanoTime();
+            try {
+                Response response = chain.proceed(chain.request());
+                record(host, response.code(), System.nanoTime() - start);
+                return response;
+            } catch (IOException e) {
+                record(host, -1, System.nanoTime() - start);
+                throw e;
+            }
+        };
+    }
+
+    /** Connection-level events for OkHttp clients. */
+    public EventListener okHttpEventListener() {
+        return new EventListener() {
+            @Override
+            public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+                stats(call.request().url().host()).connects.incrementAndGet();
+            }
+
+            @Override
+            public void secureConnectStart(Call call) {
+                stats(call.request().url().host()).tlsHandshakes.incrementAndGet();
+            }
+        };
+    }
+
+    /** Interceptor for RestTemplates. */
+    public ClientHttpRequestInterceptor restTemplateInterceptor() {
+        return (request, body, execution) -> {
+            String host = request.getURI().getHost();
+            long start = System.nanoTime();
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                record(host, response.getStatusCode().value(), System.nanoTime() - start);
+                return response;
+            } catch (IOException e) {
+                record(host, -1, System.nanoTime() - start);
+                throw e;
+            }
+        };
+    }
+
+    /** Point-in-time counters per host, sorted by host name. */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new TreeMap<>();
+        hosts.forEach((host, s) -> {
+            long calls = s.calls.get();
+            Map<String, Object> h = new LinkedHashMap<>();
+            h.put("calls", calls);
+            h.put("ioErrors", s.ioErrors.get());
+            h.put("clientErrors", s.clientErrors.get());
+            h.put("serverErrors", s.serverErrors.get());
+            h.put("avgMs", calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(s.totalNanos.get() / calls));
+            h.put("maxMs", TimeUnit.NANOSECONDS.toMillis(s.maxNanos.get()));
+            Map<String, Object> latency = new LinkedHashMap<>();
+            for (int i = 0; i < BUCKETS_MS.length; i++) {
+                latency.put("le" + BUCKETS_MS[i] + "ms", s.buckets[i].get());
+            }
+            latency.put("gt" + BUCKETS_MS[BUCKETS_MS.length - 1] + "ms", s.buckets[BUCKETS_MS.length].get());
+            h.put("latency", latency);
+            h.put("connects", s.connects.get());
+            h.put("tlsHandshakes", s.tlsHandshakes.get());
+            out.put(host, h);
+        });
+        return out;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.demo.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Maintains and queries the {@code pincode_location} table: the district/state our own
+ * listings use for each pincode.
+ *
+ * Rows are upserted whenever a registration is saved (see RegistrationLocationListener) and
+ * recomputed when one is deleted or moves to another pincode, so the geo DB fallbacks are
+ * single index lookups instead of scans over registration.
+ */
+@Service
+public class PincodeLocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PincodeLocationService.class);
+
+    public record PincodeLocation(String pincode, String district, String state) {}
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PincodeLocationService(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** Same normalization as the *_key columns: LOWER(TRIM(value)). */
+    public static String normalizeKey(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Record the location of a saved registration. Inside a transaction the upsert runs after
+     * commit, so a rolled back registration never leaves a row behind.
+     */
+    public void record(String pincode, String district, String state) {
+        String pin = pincode == null ? "" : pincode.trim();
+        if (!pin.matches("\\d{6}")) return;
+        if (district == null || district.isBlank() || state == null || state.isBlank()) return;
+
+        String d = district.trim();
+        String s = state.trim();
+        afterCommit(() -> upsert(pin, d, s));
+    }
+
+    /**
+     * Recompute pincodes a registration no longer uses (deleted, or moved to another pincode):
+     * each row follows the latest remaining registration with that pincode, or is dropped when
+     * none is left. Runs after commit, like {@link #record}.
+     */
+    public void refresh(Collection<String> pincodes) {
+        Set<String> pins = new LinkedHashSet<>();
+        for (String pincode : pincodes) {
+            String pin = pincode == null ? "" : pincode.trim();
+            if (pin.matches("\\d{6}")) pins.add(pin);
+        }
+        if (pins.isEmpty()) return;
+        afterCommit(() -> pins.forEach(this::recompute));
+    }
+
+    /**
+     * Delete a registration row with plain SQL (the callers' fallback when JPA fails, so no
+     * entity listener runs) and refresh its pincode.
+     *
+     * @return the number of rows deleted
+     */
+    public int deleteRegistration(Long registrationId) {
+        List<String> pincodes = jdbcTemplate.queryForList("DELETE FROM registration WHERE id = ? RETURNING pincode", String.class, registrationId);
+        refresh(pincodes);
+        return pincodes.size();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void upsert(String pin, String district, String state) {
+        try {
+            jdbcTemplate.update(
+                "INSERT INTO pincode_location (pincode, district, district_key, state, state_key, last_seen) " +
+                "VALUES (?, ?, ?, ?, ?, NOW()) " +
+                "ON CONFLICT (pincode) DO UPDATE SET district = EXCLUDED.district, district_key = EXCLUDED.district_key, " +
+                "state = EXCLUDED.state, state_key = EXCLUDED.state_key, last_seen = EXCLUDED.last_seen",
+                pin, district, normalizeKey(district), state, normalizeKey(state)
+            );
+        } catch (Exception e) {
+            log.info("PincodeLocation: upsert failed for {} -> {}", pin, e.toString());
+        }
+    }
+
+    private void recompute(String pin) {
+        // Same listing filter as the V8 backfill; latest registration wins
+        String latest = "FROM registration WHERE TRIM(pincode) = ? " +
+            "AND city IS NOT NULL AND TRIM(city) <> '' AND state IS NOT NULL AND TRIM(state) <> ''";
+        try {
+            int updated = jdbcTemplate.update(
+                "INSERT INTO pincode_location (pincode, district, district_key, state, state_key, last_seen) " +
+                "SELECT TRIM(pincode), TRIM(city), LOWER(TRIM(city)), TRIM(state), LOWER(TRIM(state)), NOW() " +
+                latest + " ORDER BY id DESC LIMIT 1 " +
+                "ON CONFLICT (pincode) DO UPDATE SET district = EXCLUDED.district, district_key = EXCLUDED.district_key, " +
+                "state = EXCLUDED.state, state_key = EXCLUDED.state_key",
+                pin
+            );
+            if (updated == 0) {
+                // Re-checked in the statement so a listing saved meanwhile keeps its row
+                jdbcTemplate.update("DELETE FROM pincode_location WHERE pincode = ? AND NOT EXISTS (SELECT 1 " + latest + ")", pin, pin);
+            }
+        } catch (Exception e) {
+            log.info("PincodeLocation: refresh failed for {} -> {}", pin, e.toString());
+        }
+    }
+
+    /** Primary-key lookup; null when the pincode has never been used in a listing. */
+    public PincodeLocation find(String pincode) {
+        String pin = pincode == null ? "" : pincode.trim();
+        if (!pin.matches("\\d{6}")) return null;
+        List<PincodeLocation> rows = jdbcTemplate.query(
+            "SELECT pincode, district, state FROM pincode_location WHERE pincode = ?",
+            (rs, i) -> new PincodeLocation(rs.getString("pincode"), rs.getString("district"), rs.getString("state")),
+            pin
+        );
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    /** Pincodes seen in listings for a district (and state, when given), in pincode order. */
+    public List<String> findPincodesByDistrict(String district, String state, int limit) {
+        String dk = normalizeKey(district);
+        if (dk.isEmpty()) return List.of();
+        String sk = normalizeKey(state);
+
+        StringBuilder sql = new StringBuilder("SELECT pincode FROM pincode_location WHERE district_key = ?");
+        List<Object> params = new ArrayList<>();
+        params.add(dk);
+        if (!sk.isEmpty()) {
+            sql.append(" AND state_key = ?");
+            params.add(sk);
+        }
+        sql.append(" ORDER BY pincode LIMIT ?");
+        params.add(limit);
+        return jdbcTemplate.queryForList(sql.toString(), String.class, params.toArray());
+    }
+}
@@ -8,10 +8,12 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+
 @Service
 public class PostalLookupService {
 
@@ -27,16 +29,25 @@ public class PostalLookupService {
         CacheEntry(PostalInfo info, long expiry) { this.info = info; this.expiry = expiry; }
     }
 
+    private static class DistrictCacheEntry {
+        final List<PincodeDetails> pincodes;
+        final long expiry;
+        DistrictCacheEntry(List<PincodeDetails> pincodes, long expiry) { this.pincodes = pincodes; this.expiry = expiry; }
+    }
+
+    private static final TypeReference<List<PincodeDetails>> PINCODE_LIST = new TypeReference<>() {};
+
     private final RestTemplate restTemplate;
+    private final GeoCacheStore geoCacheStore;
     private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DistrictCacheEntry> districtCache = new ConcurrentHashMap<>();
     private static final long TTL_MILLIS = 24L * 60L * 60L * 1000L; // 24 hours
+    private static final long NEGATIVE_TTL_MILLIS = 10L * 60L * 1000L; // 10 minutes, for answers without a district
 
-    public PostalLookupService() {
-        // Configure short timeouts so the page doesn't hang if API is slow
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        factory.setConnectTimeout(2000);
-        factory.setReadTimeout(2000);
-        this.restTemplate = new RestTemplate(factory);
+    public PostalLookupService(@Qualifier("indiaPostRestTemplate") RestTemplate restTemplate, GeoCacheStore geoCacheStore) {
+        // Short timeouts (see HttpClientConfig) so the page doesn't hang if API is slow
+        this.restTemplate = restTemplate;
+        this.geoCacheStore = geoCacheStore;
     }
 
     public PostalInfo resolve(String pincode) {
@@ -44,11 +55,11 @@ public class PostalLookupService {
         String pin = pincode.trim();
         if (pin.isEmpty() || pin.length() < 4) return null;
 
-        CacheEntry ce = cache.get(pin);
-        long now = Instant.now().toEpochMilli();
-        if (ce != null && ce.expiry > now) {
-            return ce.info;
+        PostalInfo cached = peek(pin);
+        if (cached != null) {
+            return cached;
         }
+        long now = Instant.now().toEpochMilli();
 
         try {
             String url = "https://api.postalpincode.in/pincode/" + pin;
@@ -80,11 +91,15 @@ public class PostalLookupService {
                 }
             }
             PostalInfo info = new PostalInfo(pin, district, state);
-            cache.put(pin, new CacheEntry(info, now + TTL_MILLIS));
-            if (district != null && !district.isBlank()) {
+            boolean complete = district != null && !district.isBlank() && state != null && !state.isBlank();
+            if (complete) {
+                cache.put(pin, new CacheEntry(info, now + TTL_MILLIS));
+                geoCacheStore.putAsync(GeoCacheStore.KIND_POSTAL, pin, info);
                 log.info("PostalLookup: pincode={} -> district={}, state={}", pin, district, state);
             } else {
-                log.info("PostalLookup: pincode={} resolved but district missing", pin);
+                // Only briefly in memory: a partial answer must not stick in geo_cache for its full TTL
+                cache.put(pin, new CacheEntry(info, now + NEGATIVE_TTL_MILLIS));
+                log.info("PostalLookup: pincode={} resolved but district/state missing", pin);
             }
             return info;
         } catch (Exception e) {
@@ -93,6 +108,28 @@ public class PostalLookupService {
         }
     }
 
+    /**
+     * Cached-only lookup: memory, then the shared geo_cache table. Never calls India Post.
+     */
+    public PostalInfo peek(String pincode) {
+        if (pincode == null) return null;
+        String pin = pincode.trim();
+        if (pin.isEmpty()) return null;
+
+        CacheEntry ce = cache.get(pin);
+        long now = Instant.now().toEpochMilli();
+        if (ce != null && ce.expiry > now) {
+            return ce.info;
+        }
+
+        // Second tier: shared Postgres cache (survives restarts, shared across instances)
+        PostalInfo stored = geoCacheStore.get(GeoCacheStore.KIND_POSTAL, pin, PostalInfo.class);
+        if (stored != null) {
+            cache.put(pin, new CacheEntry(stored, now + TTL_MILLIS));
+        }
+        return stored;
+    }
+
     private static String str(Object o) { return o == null ? null : String.valueOf(o); }
 
     private static String clean(String s) {
@@ -122,7 +159,8 @@ public class PostalLookupService {
     
     /**
      * Fetch all pincodes for a given district and state.
-     * Uses India Post API's postoffice search endpoint.
+     * Uses India Post API's postoffice search endpoint; non-empty results are cached
+     * in memory and in the shared geo_cache table.
      * 
      * @param district The district name
      * @param state The state name
@@ -132,7 +170,55 @@ public class PostalLookupService {
         if (district == null || district.trim().isEmpty()) {
             return List.of();
         }
-        
+
+        List<PincodeDetails> cached = peekPincodesByDistrict(district, state);
+        if (cached != null) {
+            return cached;
+        }
+        return fetchPincodesByDistrict(district, state, districtCacheKey(district, state));
+    }
+
+    /**
+     * A district's pincode list from the memory or geo_cache tier, or null when neither has a
+     * fresh entry. Never calls India Post.
+     */
+    public List<PincodeDetails> peekPincodesByDistrict(String district, String state) {
+        if (district == null || district.trim().isEmpty()) {
+            return null;
+        }
+
+        String key = districtCacheKey(district, state);
+        long now = Instant.now().toEpochMilli();
+        DistrictCacheEntry ce = districtCache.get(key);
+        if (ce != null && ce.expiry > now) {
+            return ce.pincodes;
+        }
+
+        List<PincodeDetails> stored = geoCacheStore.get(GeoCacheStore.KIND_DISTRICT, key, PINCODE_LIST);
+        if (stored != null && !stored.isEmpty()) {
+            List<PincodeDetails> copy = List.copyOf(stored);
+            districtCache.put(key, new DistrictCacheEntry(copy, now + TTL_MILLIS));
+            return copy;
+        }
+        return null;
+    }
+
+    /**
+     * Re-fetch a district's pincode list from India Post, bypassing both cache tiers.
+     * Keeps the previously cached list when the upstream returns nothing.
+     */
+    public List<PincodeDetails> refreshPincodesByDistrict(String district, String state) {
+        if (district == null || district.trim().isEmpty()) {
+            return List.of();
+        }
+        return fetchPincodesByDistrict(district, state, districtCacheKey(district, state));
+    }
+
+    private static String districtCacheKey(String district, String state) {
+        return normalizeStateKey(district) + "|" + normalizeStateKey(state);
+    }
+
+    private List<PincodeDetails> fetchPincodesByDistrict(String district, String state, String key) {
         try {
             // Use postoffice search by district name
             String url = "https://api.postalpincode.in/postoffice/" + district.trim();
@@ -209,7 +295,13 @@ public class PostalLookupService {
             
             log.info("PostalLookup: Found {} pincodes for district={}, state={}", 
                      pincodes.size(), district, state);
-            return pincodes;
+            if (pincodes.isEmpty()) {
+                return pincodes;
+            }
+            List<PincodeDetails> result = List.copyOf(pincodes);
+            districtCache.put(key, new DistrictCacheEntry(result, Instant.now().toEpochMilli() + TTL_MILLIS));
+            geoCacheStore.putAsync(GeoCacheStore.KIND_DISTRICT, key, result);
+            return result;
             
         } catch (Exception e) {
             log.error("PostalLookup: Error fetching pincodes for district={}, state={}: {}", 
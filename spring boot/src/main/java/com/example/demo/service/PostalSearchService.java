@@ -10,14 +10,16 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.demo.service.NominatimRateGovernor.Priority;
+
 @Service
 public class PostalSearchService {
 
@@ -26,6 +28,8 @@ public class PostalSearchService {
     private static final Logger log = LoggerFactory.getLogger(PostalSearchService.class);
 
     private final RestTemplate restTemplate;
+    private final NominatimRateGovernor rateGovernor;
+    private final GeoCacheStore geoCacheStore;
 
     private static class CacheEntry {
         final PostalSearchInfo info;
@@ -36,11 +40,10 @@ public class PostalSearchService {
     private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
     private static final long TTL_MILLIS = 24L * 60L * 60L * 1000L; // 24 hours
 
-    public PostalSearchService() {
-        SimpleClientHttpRequestFactory f = new SimpleClientHttpRequestFactory();
-        f.setConnectTimeout(2000);
-        f.setReadTimeout(3000);
-        this.restTemplate = new RestTemplate(f);
+    public PostalSearchService(@Qualifier("nominatimRestTemplate") RestTemplate restTemplate, NominatimRateGovernor rateGovernor, GeoCacheStore geoCacheStore) {
+        this.restTemplate = restTemplate;
+        this.rateGovernor = rateGovernor;
+        this.geoCacheStore = geoCacheStore;
     }
 
     /**
@@ -48,13 +51,23 @@ public class PostalSearchService {
      * Not authoritative, but useful when India Post is down.
      */
     public PostalSearchInfo searchByPincode(String pincode) {
+        return searchByPincode(pincode, Priority.INTERACTIVE);
+    }
+
+    public PostalSearchInfo searchByPincode(String pincode, Priority priority) {
         if (pincode == null) return null;
         String pin = pincode.trim();
         if (!pin.matches("\\d{6}")) return null;
 
+        PostalSearchInfo cached = peek(pin);
+        if (cached != null) return cached;
         long now = Instant.now().toEpochMilli();
-        CacheEntry ce = cache.get(pin);
-        if (ce != null && ce.expiry > now) return ce.info;
+
+        // Respect Nominatim's 1 req/s policy; skip the lookup rather than get throttled
+        if (!rateGovernor.acquire(priority)) {
+            log.info("PostalSearch: rate limited, skipping pincode {}", pin);
+            return null;
+        }
 
         try {
             String url = "https://nominatim.openstreetmap.org/search?format=json&addressdetails=1&countrycodes=in&postalcode="
@@ -62,7 +75,7 @@ public class PostalSearchService {
                 + "&limit=1";
 
             HttpHeaders headers = new HttpHeaders();
-            headers.add("User-Agent", "HerapheriGoods/1.0 (contact: support@herapherigoods.in)");
+            headers.add("User-Agent", NominatimRateGovernor.USER_AGENT);
 
             @SuppressWarnings("unchecked")
             ResponseEntity<List<Object>> resp = (ResponseEntity<List<Object>>) (ResponseEntity<?>) restTemplate.exchange(
@@ -108,6 +121,7 @@ public class PostalSearchService {
             );
 
             cache.put(pin, new CacheEntry(info, now + TTL_MILLIS));
+            geoCacheStore.putAsync(GeoCacheStore.KIND_NOMINATIM, pin, info);
             log.info("PostalSearch: pincode={} -> city={}, district={}, state={}", pin, info.city(), info.district(), info.state());
             return info;
         } catch (Exception e) {
@@ -116,6 +130,25 @@ public class PostalSearchService {
         }
     }
 
+    /**
+     * Cached-only lookup: memory, then the shared geo_cache table. Never calls Nominatim.
+     */
+    public PostalSearchInfo peek(String pincode) {
+        if (pincode == null) return null;
+        String pin = pincode.trim();
+        if (!pin.matches("\\d{6}")) return null;
+
+        long now = Instant.now().toEpochMilli();
+        CacheEntry ce = cache.get(pin);
+        if (ce != null && ce.expiry > now) return ce.info;
+
+        PostalSearchInfo stored = geoCacheStore.get(GeoCacheStore.KIND_NOMINATIM, pin, PostalSearchInfo.class);
+        if (stored != null) {
+            cache.put(pin, new CacheEntry(stored, now + TTL_MILLIS));
+        }
+        return stored;
+    }
+
     private static String firstNonBlank(String... vals) {
         if (vals == null) return null;
         for (String v : vals) {
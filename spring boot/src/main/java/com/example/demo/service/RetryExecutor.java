@@ -0,0 +1,298 @@
+package com.example.demo.service;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Retries for upstream (storage) calls without sleeping on the caller's thread.
+ *
+ * A failed attempt is re-run after a jittered exponential delay ("full jitter": uniform in
+ * [0, min(cap, base * 2^n)]) that is timed by a scheduler, so no thread is held while
+ * waiting; attempts themselves run on the executor the caller passes in. Only transient
+ * failures are retried (I/O errors, 408/425/429 and 5xx), and all callers share a budget of
+ * retries per second: during an outage extra attempts stop instead of multiplying the load.
+ *
+ * The timer is owned here rather than exposed as a bean: a ScheduledExecutorService bean
+ * would replace the scheduler Spring Boot configures for @Scheduled jobs.
+ */
+@Component
+public class RetryExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(RetryExecutor.class);
+
+    /** An upstream answered with a non-success status; lets the classifier tell 503 from 400. */
+    public static class HttpStatusException extends IOException {
+        private final int status;
+
+        public HttpStatusException(int status, String message) {
+            super(message + " (status=" + status + ")");
+            this.status = status;
+        }
+
+        public int status() {
+            return status;
+        }
+    }
+
+    private final ScheduledThreadPoolExecutor scheduler;
+    private final ExecutorService workers;
+    private final int maxRetries;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final long syncMaxWaitMs;
+    private final int budgetPerSecond;
+
+    // Retry budget: retries started in the current one-second window
+    private final AtomicLong budgetWindow = new AtomicLong();
+    private final AtomicInteger budgetUsed = new AtomicInteger();
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong recovered = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong nonRetryable = new AtomicLong();
+    private final AtomicLong budgetDenied = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public RetryExecutor(
+        @Qualifier("retryWorkerExecutor") ExecutorService workers,
+        @Value("${supabase.max.retries:3}") int maxRetries,
+        @Value("${supabase.retry.backoff.ms:250}") long baseBackoffMs,
+        @Value("${app.retry.max-backoff-ms:4000}") long maxBackoffMs,
+        @Value("${app.retry.sync-max-wait-ms:3000}") long syncMaxWaitMs,
+        @Value("${app.retry.budget-per-second:20}") int budgetPerSecond
+    ) {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread t = new Thread(r, "retry-timer");
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.workers = workers;
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseBackoffMs = Math.max(1, baseBackoffMs);
+        this.maxBackoffMs = Math.max(this.baseBackoffMs, maxBackoffMs);
+        this.syncMaxWaitMs = syncMaxWaitMs;
+        this.budgetPerSecond = budgetPerSecond;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /** One retried call. A new attempt is only started before the deadline (0 = none). */
+    private static final class Run<T> {
+        final String name;
+        final Callable<T> operation;
+        final Executor executor;
+        final long deadlineNanos;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        volatile boolean stopped;
+
+        Run(String name, Callable<T> operation, Executor executor, long deadlineNanos) {
+            this.name = name;
+            this.operation = operation;
+            this.executor = executor;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        boolean pastDeadline(long afterNanos) {
+            return stopped || (deadlineNanos != 0 && System.nanoTime() + afterNanos - deadlineNanos > 0);
+        }
+    }
+
+    /**
+     * Run {@code operation} on {@code executor}, retrying transient failures. The future fails
+     * with the last attempt's exception; cancelling it stops further attempts (one already
+     * running is not interrupted).
+     */
+    public <T> CompletableFuture<T> executeAsync(String name, Callable<T> operation, Executor executor) {
+        calls.incrementAndGet();
+        Run<T> run = new Run<>(name, operation, executor, 0);
+        try {
+            executor.execute(() -> attempt(run, 0));
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: run the first attempt on the calling thread, as submitOrRun does
+            attempt(run, 0);
+        }
+        return run.result;
+    }
+
+    /**
+     * Blocking variant for request-path callers. The first attempt runs on the calling thread;
+     * retries run on the retry workers without a thread sleeping through the backoff.
+     *
+     * No retry is started later than {@code app.retry.sync-max-wait-ms} after the call began,
+     * but an attempt that is running is always waited for (it is bounded by the HTTP client's
+     * timeouts): the caller never returns while an attempt could still succeed behind its back,
+     * e.g. a PUT streaming a multipart temp file that Tomcat deletes once the request ends.
+     */
+    public <T> T execute(String name, Callable<T> operation) throws IOException {
+        calls.incrementAndGet();
+        long deadline = syncMaxWaitMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(syncMaxWaitMs) : 0;
+        Run<T> run = new Run<>(name, operation, workers, deadline);
+        try {
+            return operation.call();
+        } catch (Exception e) {
+            long delayMs = retryDelay(run, e, 0);
+            if (delayMs < 0) {
+                throw failure(name, e, 1);
+            }
+            scheduleRetry(run, 1, delayMs);
+            return await(run);
+        }
+    }
+
+    private <T> void attempt(Run<T> run, int attempt) {
+        // Cancelled, or the sync caller stopped waiting for new attempts
+        if (run.result.isDone()) return;
+        if (attempt > 0 && run.pastDeadline(0)) {
+            timedOut.incrementAndGet();
+            run.result.completeExceptionally(new IOException("Retries for " + run.name + " stopped: deadline passed"));
+            return;
+        }
+        try {
+            T value = run.operation.call();
+            if (attempt > 0) recovered.incrementAndGet();
+            run.result.complete(value);
+        } catch (Exception e) {
+            long delayMs = retryDelay(run, e, attempt);
+            if (delayMs >= 0) {
+                scheduleRetry(run, attempt + 1, delayMs);
+            } else {
+                run.result.completeExceptionally(failure(run.name, e, attempt + 1));
+            }
+        }
+    }
+
+    private <T> void scheduleRetry(Run<T> run, int attempt, long delayMs) {
+        retries.incrementAndGet();
+        log.debug("RETRY: attempt {} for {} in {}ms", attempt, run.name, delayMs);
+        scheduler.schedule(() -> {
+            try {
+                run.executor.execute(() -> attempt(run, attempt));
+            } catch (RejectedExecutionException e) {
+                run.result.completeExceptionally(new IOException("Retry rejected for " + run.name + ": pool saturated", e));
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Backoff before retrying a failed attempt (0-based), or -1 when it must not be retried:
+     * not transient, no attempts left, the next attempt would start past the deadline, or the
+     * retry budget is spent.
+     */
+    private long retryDelay(Run<?> run, Exception e, int attempt) {
+        log.debug("RETRY ERROR: Failed attempt {} for {}: {}", attempt, run.name, e.getMessage());
+        if (!isRetryable(e)) {
+            nonRetryable.incrementAndGet();
+            return -1;
+        }
+        if (attempt >= maxRetries) {
+            exhausted.incrementAndGet();
+            return -1;
+        }
+        long delayMs = backoffMs(attempt + 1);
+        if (run.pastDeadline(TimeUnit.MILLISECONDS.toNanos(delayMs))) {
+            timedOut.incrementAndGet();
+            return -1;
+        }
+        if (!tryAcquireBudget()) {
+            budgetDenied.incrementAndGet();
+            log.debug("RETRY: budget of {}/s spent, not retrying {}", budgetPerSecond, run.name);
+            return -1;
+        }
+        return delayMs;
+    }
+
+    static boolean isRetryable(Throwable e) {
+        if (e instanceof HttpStatusException s) {
+            int status = s.status();
+            return status == 408 || status == 425 || status == 429 || status >= 500;
+        }
+        // Rejected images fail the same way every time
+        if (e instanceof ImageRejectedException) return false;
+        // Connect/read timeouts, resets, unexpected end of stream
+        return e instanceof IOException;
+    }
+
+    private long backoffMs(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, baseBackoffMs << Math.min(attempt - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private boolean tryAcquireBudget() {
+        if (budgetPerSecond <= 0) return true;
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long window = budgetWindow.get();
+        if (window != second && budgetWindow.compareAndSet(window, second)) {
+            budgetUsed.set(0);
+        }
+        return budgetUsed.incrementAndGet() <= budgetPerSecond;
+    }
+
+    /** Wait for the run to settle. An interrupt stops new attempts but still waits out the running one. */
+    private <T> T await(Run<T> run) throws IOException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return run.result.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    run.stopped = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException io) throw io;
+                    throw new IOException(cause != null ? cause.getMessage() : e.getMessage(), cause);
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    private static IOException failure(String name, Exception e, int attempts) {
+        // Non-transient I/O errors (a 400, a rejected image) keep their type for the caller
+        if (attempts == 1 && e instanceof IOException io && !isRetryable(io)) return io;
+        return new IOException("All " + attempts + " attempt(s) failed for " + name + ": " + e.getMessage(), e);
+    }
+
+    /** Point-in-time counters (all callers). */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("calls", calls.get());
+        out.put("retries", retries.get());
+        out.put("recovered", recovered.get());
+        out.put("exhausted", exhausted.get());
+        out.put("nonRetryable", nonRetryable.get());
+        out.put("budgetDenied", budgetDenied.get());
+        out.put("timedOut", timedOut.get());
+        out.put("budgetPerSecond", budgetPerSecond);
+        out.put("maxRetries", maxRetries);
+        return out;
+    }
+}
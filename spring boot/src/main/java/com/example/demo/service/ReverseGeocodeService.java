@@ -4,19 +4,22 @@ import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import com.example.demo.service.NominatimRateGovernor.Priority;
+
 @Service
 public class ReverseGeocodeService {
 
@@ -24,31 +27,49 @@ public class ReverseGeocodeService {
 
     private static final Logger log = LoggerFactory.getLogger(ReverseGeocodeService.class);
     private final RestTemplate restTemplate;
+    private final NominatimRateGovernor rateGovernor;
+    private final GeoCacheStore geoCacheStore;
 
     private static class CacheEntry { ReverseInfo info; long expiry; CacheEntry(ReverseInfo i, long e){info=i;expiry=e;} }
     private final ConcurrentHashMap<String, CacheEntry> cache = new ConcurrentHashMap<>();
     private static final long TTL = 12L * 60L * 60L * 1000L; // 12h
 
-    public ReverseGeocodeService() {
-        SimpleClientHttpRequestFactory f = new SimpleClientHttpRequestFactory();
-        f.setConnectTimeout(2000);
-        f.setReadTimeout(3000);
-        this.restTemplate = new RestTemplate(f);
+    public ReverseGeocodeService(@Qualifier("nominatimRestTemplate") RestTemplate restTemplate, NominatimRateGovernor rateGovernor, GeoCacheStore geoCacheStore) {
+        this.restTemplate = restTemplate;
+        this.rateGovernor = rateGovernor;
+        this.geoCacheStore = geoCacheStore;
     }
 
     public ReverseInfo reverse(double lat, double lon) {
-        String key = String.format("%.3f,%.3f", lat, lon);
+        return reverse(lat, lon, Priority.INTERACTIVE);
+    }
+
+    public ReverseInfo reverse(double lat, double lon, Priority priority) {
+        // ~110 m grid; Locale.ROOT keeps the key stable for the shared cache table
+        String key = String.format(Locale.ROOT, "%.3f,%.3f", lat, lon);
         long now = Instant.now().toEpochMilli();
         CacheEntry ce = cache.get(key);
         if (ce != null && ce.expiry > now) return ce.info;
 
+        ReverseInfo stored = geoCacheStore.get(GeoCacheStore.KIND_REVERSE, key, ReverseInfo.class);
+        if (stored != null) {
+            cache.put(key, new CacheEntry(stored, now + TTL));
+            return stored;
+        }
+
+        // Respect Nominatim's 1 req/s policy; skip the lookup rather than get throttled
+        if (!rateGovernor.acquire(priority)) {
+            log.info("ReverseGeocode: rate limited, skipping lat={},lon={}", lat, lon);
+            return null;
+        }
+
         try {
             String url = "https://nominatim.openstreetmap.org/reverse?format=json&addressdetails=1&lat="
                     + URLEncoder.encode(String.valueOf(lat), StandardCharsets.UTF_8)
                     + "&lon="
                     + URLEncoder.encode(String.valueOf(lon), StandardCharsets.UTF_8);
             HttpHeaders headers = new HttpHeaders();
-            headers.add("User-Agent", "HerapheriGoods/1.0 (contact: support@herapherigoods.in)");
+            headers.add("User-Agent", NominatimRateGovernor.USER_AGENT);
             @SuppressWarnings("unchecked")
             ResponseEntity<Map<String,Object>> resp = (ResponseEntity<Map<String,Object>>) (ResponseEntity<?>) restTemplate.exchange(URI.create(url), HttpMethod.GET, new HttpEntity<>(headers), Map.class);
             Map<String,Object> body = resp.getBody();
@@ -72,6 +93,7 @@ public class ReverseGeocodeService {
             String state = str(addr.get("state"));
             ReverseInfo info = new ReverseInfo(postal, clean(city), clean(district), clean(state));
             cache.put(key, new CacheEntry(info, now + TTL));
+            geoCacheStore.putAsync(GeoCacheStore.KIND_REVERSE, key, info);
             log.info("ReverseGeocode: lat={},lon={} -> postal={}, city={}, district={}, state={}", lat, lon, postal, city, district, state);
             return info;
         } catch (Exception e) {
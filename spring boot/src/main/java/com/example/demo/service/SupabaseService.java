@@ -1,33 +1,32 @@
 package com.example.demo.service;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
-import java.util.Iterator;
 import java.util.HashSet;
 import java.util.Set;
-
-import java.awt.image.BufferedImage;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.AlphaComposite;
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.geom.AffineTransform;
-
-import javax.imageio.ImageIO;
-import javax.imageio.IIOImage;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.IntConsumer;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
@@ -40,10 +39,16 @@ import com.example.demo.model.User;
 import com.example.demo.repository.RegistrationImageFolderRepository;
 import com.example.demo.repository.RegistrationRepository;
 import com.example.demo.repository.UserRepository;
+import com.example.demo.service.ImageObjectStore.Acquired;
+import com.example.demo.service.ImageProcessingService.ImageRejectedException;
+import com.example.demo.service.ImageProcessingService.ProcessedImage;
+import com.example.demo.util.ResponsiveImages.Variant;
+import com.example.demo.util.StreamingRequestBody;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.annotation.PostConstruct;
+import okhttp3.Call;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -69,6 +74,9 @@ public class SupabaseService {
     @Value("${supabase.profile.bucket.name:profile-photos}")
     private String profileBucketName;
 
+    @Value("${app.uploads.direct.bucket:upload-staging}")
+    private String uploadStagingBucketName;
+
     @Value("${supabase.deleted.images.bucket.name:deleted-images}")
     private String deletedImagesBucketName;
     
@@ -90,11 +98,9 @@ public class SupabaseService {
     @Value("${supabase.posts.bucket.name:post-images}")
     private String postsBucketName;
 
-    @Value("${supabase.max.retries:3}")
-    private int maxRetries;
-    
-    @Value("${supabase.retry.backoff.ms:1000}")
-    private long retryBackoffMs;
+    // Retries with jittered backoff and a shared budget (supabase.max.retries / supabase.retry.backoff.ms)
+    @Autowired
+    private RetryExecutor retryExecutor;
 
     @Autowired
     private RegistrationImageFolderRepository registrationImageFolderRepository;
@@ -108,7 +114,57 @@ public class SupabaseService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
-    private final OkHttpClient client = new OkHttpClient();
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
+    @Autowired
+    private ImageObjectStore imageObjectStore;
+
+    // Proxy-mode disk copies; dropped alongside the listings whenever objects are deleted
+    @Autowired
+    private ImageDiskCache imageDiskCache;
+
+    @Autowired
+    @Qualifier("imageUploadExecutor")
+    private ExecutorService imageUploadExecutor;
+
+    // Concurrent storage listings and multi-object delete chunks
+    @Autowired
+    @Qualifier("storageBatchExecutor")
+    private ExecutorService storageBatchExecutor;
+
+    // Keys per multi-object delete call
+    @Value("${app.storage.delete.batch-size:500}")
+    private int deleteBatchSize;
+
+    // Per-image PUT deadline and overall deadline for one uploadImagesToFolder call
+    @Value("${app.images.upload.timeout-ms:20000}")
+    private long imageUploadTimeoutMs;
+
+    @Value("${app.images.upload.batch-timeout-ms:60000}")
+    private long imageBatchTimeoutMs;
+
+    // Responsive widths generated for every vehicle photo (in addition to the primary size)
+    @Value("${app.images.variant-widths:160,360,720,1200}")
+    private List<Integer> imageVariantWidths;
+
+    // Profile photos render as avatars, post images as feed thumbnails
+    @Value("${app.images.profile.width:256}")
+    private int profilePhotoWidth;
+
+    // registration folder listings (getRegistrationImages); see invalidateListings
+    private record CachedListing(List<String> keys, long expiresAtNanos) {}
+    private static final int MAX_CACHED_LISTINGS = 10_000;
+    private final ConcurrentHashMap<String, CachedListing> listingCache = new ConcurrentHashMap<>();
+
+    @Value("${app.images.listing-cache-ttl-seconds:60}")
+    private long listingCacheTtlSeconds;
+
+    @Value("${app.images.post.width:720}")
+    private int postImageWidth;
+
+    @Autowired
+    private OkHttpClient client;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     @PostConstruct
@@ -125,6 +181,9 @@ public class SupabaseService {
         try { ensureBucketPrivate(deletedEvidenceBucketName); } catch (Exception ignore) {}
         ensureBucketExistsSafe(rcBucketName, true);
         ensureBucketExistsSafe(dlBucketName, true);
+        // Raw direct uploads are staged privately and only read back by the server
+        ensureBucketExistsSafe(uploadStagingBucketName, false);
+        try { ensureBucketPrivate(uploadStagingBucketName); } catch (Exception ignore) {}
 
         // Ensure posts bucket
         if (postsBucketName == null || postsBucketName.isBlank()) {
@@ -213,9 +272,9 @@ public class SupabaseService {
             throw new IOException("Empty image file");
         }
         String targetBucket = (postsBucketName == null || postsBucketName.isBlank()) ? bucketName : postsBucketName;
-        String original = image.getOriginalFilename() != null ? image.getOriginalFilename() : "image.jpg";
-        String filename = "post_" + UUID.randomUUID() + "_" + original.replaceAll("[^A-Za-z0-9._-]", "_");
-        RequestBody fileBody = RequestBody.create(MediaType.parse(image.getContentType()), image.getBytes());
+        ProcessedImage processed = resizeForUpload(image, postImageWidth);
+        String filename = "post_" + UUID.randomUUID() + "." + processed.extension();
+        RequestBody fileBody = RequestBody.create(MediaType.parse(processed.contentType()), processed.bytes());
         Request request = new Request.Builder()
                 .url(supabaseUrl + "/storage/v1/object/" + targetBucket + "/" + filename)
                 .addHeader("apikey", supabaseKey)
@@ -230,6 +289,32 @@ public class SupabaseService {
         }
     }
 
+    /**
+     * Resize a profile/post image on the image pool, under the same decode budget as vehicle
+     * photos. Input that cannot be decoded is refused rather than stored as uploaded.
+     */
+    private ProcessedImage resizeForUpload(MultipartFile image, int width) throws IOException {
+        Future<ProcessedImage> future = submitImageTask(() -> imageProcessingService.resize(image, width));
+        ProcessedImage processed;
+        try {
+            processed = future.get(imageBatchTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing image", e);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new IOException("Image processing timed out", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw cause instanceof IOException io ? io : new IOException("Image processing failed: " + cause.getMessage(), cause);
+        }
+        if (processed == null) {
+            throw new ImageRejectedException("Unsupported image format");
+        }
+        return processed;
+    }
+
     /** Delete a single post image by its public URL */
     public void deletePostImageByUrl(String imageUrl) throws IOException {
         if (imageUrl == null || imageUrl.isBlank()) return;
@@ -251,6 +336,9 @@ public class SupabaseService {
     /**
      * Retry an operation with exponential backoff
      * 
+     * Transient failures only (I/O errors, 408/429/5xx); no retry starts later than
+     * app.retry.sync-max-wait-ms, and a running attempt is always waited for. See {@link RetryExecutor}.
+     * 
      * @param <T> The return type of the operation
      * @param operation The operation to retry
      * @param operationName Name of the operation for logging
@@ -258,40 +346,12 @@ public class SupabaseService {
      * @throws IOException If all retries fail
      */
     private <T> T retryWithBackoff(SupabaseOperation<T> operation, String operationName) throws IOException {
-        int retries = 0;
-        Exception lastException = null;
-        
-        while (retries <= maxRetries) {
-            try {
-                if (retries > 0) {
-                    log.debug("RETRY: Attempt {} for operation: {}", retries, operationName);
-                }
-                return operation.execute();
-            } catch (Exception e) {
-                lastException = e;
-                log.debug("RETRY ERROR: Failed attempt {} for {}: {}", retries, operationName, e.getMessage());
-                
-                if (retries >= maxRetries) {
-                    break;
-                }
-                
-                // Exponential backoff
-                long backoffTime = retryBackoffMs * (long)Math.pow(2, retries);
-                log.debug("RETRY: Waiting {}ms before retry...", backoffTime);
-                
-                try {
-                    Thread.sleep(backoffTime);
-                } catch (InterruptedException ie) {
-                    Thread.currentThread().interrupt();
-                    throw new IOException("Retry interrupted: " + ie.getMessage(), ie);
-                }
-                
-                retries++;
-            }
-        }
-        
-        throw new IOException("All " + maxRetries + " retry attempts failed for " + operationName + ": " + 
-                             (lastException != null ? lastException.getMessage() : "Unknown error"), lastException);
+        return retryExecutor.execute(operationName, operation::execute);
+    }
+
+    /** Asynchronous retryWithBackoff: attempts run on the storage batch pool, backoffs hold no thread. */
+    private <T> CompletableFuture<T> retryAsync(SupabaseOperation<T> operation, String operationName) {
+        return retryExecutor.executeAsync(operationName, operation::execute, storageBatchExecutor);
     }
     
     /**
@@ -347,43 +407,6 @@ public class SupabaseService {
         }, "ensureBucketExists:" + bucket);
     }
 
-    /**
-     * Upload images with retry mechanism
-     */
-    public List<String> uploadImages(List<MultipartFile> images) throws IOException {
-        return retryWithBackoff(() -> {
-            List<String> imageUrls = new ArrayList<>();
-
-            for (MultipartFile image : images) {
-                if (image.isEmpty()) {
-                    continue;
-                }
-                
-                String filename = UUID.randomUUID() + "_" + image.getOriginalFilename();
-
-                RequestBody fileBody = RequestBody.create(MediaType.parse(image.getContentType()), image.getBytes());
-
-                Request request = new Request.Builder()
-                        .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + filename)
-                        .addHeader("apikey", supabaseKey)
-                        .addHeader("Authorization", "Bearer " + supabaseKey)
-                        .put(fileBody)
-                        .build();
-
-                try (Response response = client.newCall(request).execute()) {
-                    if (!response.isSuccessful()) {
-                        throw new IOException("Image upload failed: " + response.message());
-                    }
-
-                    String publicUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + filename;
-                    imageUrls.add(publicUrl);
-                }
-            }
-
-            return imageUrls;
-        }, "uploadImages");
-    }
-    
     /**
      * Upload profile photo without contact number parameter
      */
@@ -392,10 +415,12 @@ public class SupabaseService {
             throw new IOException("Empty image file");
         }
         
+        ProcessedImage processed = resizeForUpload(photo, profilePhotoWidth);
+
         // Create a unique filename for the profile photo
-        String filename = "profile_" + UUID.randomUUID() + "_" + photo.getOriginalFilename();
+        String filename = "profile_" + UUID.randomUUID() + "." + processed.extension();
         
-        RequestBody fileBody = RequestBody.create(MediaType.parse(photo.getContentType()), photo.getBytes());
+        RequestBody fileBody = RequestBody.create(MediaType.parse(processed.contentType()), processed.bytes());
 
         log.debug("Attempting to upload profile photo to Supabase");
         
@@ -522,6 +547,7 @@ public class SupabaseService {
                     throw new IOException("Failed to delete profile photo");
                 }
                 
+                invalidateListings(profileBucketName, filename);
                 log.debug("Deleted profile photo from Supabase (or already missing)");
             } catch (IOException e) {
                 log.warn("Network error during profile photo deletion: {}", e.toString());
@@ -895,6 +921,14 @@ public class SupabaseService {
             log.warn("Could not extract filename from image URL");
             throw new IOException("Could not extract filename from URL");
         }
+
+        // Content-addressed objects may be shared with other registrations; they are removed
+        // by releasing references (deleteAllVehicleImages), never by URL.
+        if (ImageObjectStore.isCasKey(filename)) {
+            log.debug("Skipping direct delete of shared content-addressed image");
+            return;
+        }
+        invalidateListings(bucketName, filename);
         
         // Try direct deletion with full URL path first
         try {
@@ -1000,6 +1034,14 @@ public class SupabaseService {
      * @throws IOException If upload fails
      */
     public Map<String, Object> uploadImagesToFolder(List<MultipartFile> images, Long registrationId) throws IOException {
+        return uploadImagesToFolder(images, registrationId, null);
+    }
+
+    /**
+     * As {@link #uploadImagesToFolder(List, Long)}, reporting the number of images finished so far
+     * (in slot order) to {@code progress}, e.g. for asynchronous upload jobs.
+     */
+    public Map<String, Object> uploadImagesToFolder(List<MultipartFile> images, Long registrationId, IntConsumer progress) throws IOException {
         if (images == null || images.isEmpty()) {
             throw new IOException("No images provided to upload");
         }
@@ -1014,10 +1056,10 @@ public class SupabaseService {
         // Ensure the folder exists
         ensureFolderExists(folderPath);
         
-        // Keep track of uploaded image URLs
-        List<String> uploadedImageUrls = new ArrayList<>();
-        
-        // Upload each image to the specified folder WITH resize + watermark + WebP conversion
+        // Process + upload all images concurrently; results are collected in slot order
+        // (front/side/back/loading) so the URL list matches the input, minus empty slots.
+        UploadBatch batch = new UploadBatch();
+        List<Future<UploadedImage>> pending = new ArrayList<>();
         int index = 0;
         for (MultipartFile image : images) {
             if (image.isEmpty()) {
@@ -1027,38 +1069,37 @@ public class SupabaseService {
 
             boolean isFront = (index == 0); // treat first image as front (thumbnail size)
             index++;
+            pending.add(submitImageTask(() -> processAndUploadImage(image, isFront, registrationId, batch)));
+        }
 
-            // Process image (resize + watermark + convert to WebP/JPEG fallback)
-            byte[] processedBytes = processAndConvertImage(image, isFront);
-            String extension = processedBytes == null ? "jpg" : "webp"; // assume webp if successful
-            if (processedBytes == null) {
-                // Fallback to original bytes if processing failed
-                processedBytes = image.getBytes();
-            }
-
-            String originalName = image.getOriginalFilename() != null ? image.getOriginalFilename() : "image";
-            String baseName = originalName.replaceAll("[^A-Za-z0-9_-]", "_");
-            String filename = UUID.randomUUID() + (isFront ? "_front" : "") + "_" + baseName + "." + extension;
-            String fullPath = folderPath + "/" + filename;
-
-            MediaType mediaType = extension.equals("webp") ? MediaType.parse("image/webp") : MediaType.parse(image.getContentType());
-            RequestBody fileBody = RequestBody.create(mediaType, processedBytes);
-
-            Request request = new Request.Builder()
-                    .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + fullPath)
-                    .addHeader("apikey", supabaseKey)
-                    .addHeader("Authorization", "Bearer " + supabaseKey)
-                    .put(fileBody)
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    throw new IOException("Image upload failed: " + response.message());
+        List<String> uploadedImageUrls = new ArrayList<>();
+        Map<String, List<Variant>> imageVariants = new LinkedHashMap<>();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(imageBatchTimeoutMs);
+        try {
+            for (Future<UploadedImage> f : pending) {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                UploadedImage uploaded = f.get(remaining, TimeUnit.NANOSECONDS);
+                uploadedImageUrls.add(uploaded.url());
+                if (!uploaded.variants().isEmpty()) {
+                    imageVariants.put(uploaded.url(), uploaded.variants());
+                }
+                if (progress != null) {
+                    progress.accept(uploadedImageUrls.size());
                 }
-                String imageUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + fullPath;
-                log.debug("Uploaded processed image for registration (registrationId={})", registrationId);
-                uploadedImageUrls.add(imageUrl);
             }
+        } catch (Exception e) {
+            for (Future<UploadedImage> f : pending) {
+                f.cancel(true);
+            }
+            rollbackUploads(batch, registrationId);
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = e instanceof ExecutionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof TimeoutException) {
+                throw new IOException("Image upload timed out", cause);
+            }
+            throw cause instanceof IOException io ? io : new IOException("Image upload failed: " + cause.getMessage(), cause);
         }
         
         // Create or update the registration image folder record
@@ -1068,97 +1109,222 @@ public class SupabaseService {
         
         // Save the folder information to the database
         registrationImageFolderRepository.save(imageFolder);
+        invalidateRegistrationListing(registrationId);
         
         log.debug("Uploaded {} images for registration (registrationId={})", uploadedImageUrls.size(), registrationId);
         
-        // Create result map with both folder path and image URLs
+        // Create result map with folder path, image URLs and their responsive variants
         Map<String, Object> result = new HashMap<>();
         result.put("folderPath", folderPath);
         result.put("imageUrls", uploadedImageUrls);
+        result.put("imageVariants", imageVariants);
         
         return result;
     }
 
     /**
-     * Resize + watermark + convert image to WebP (front image: 360px width, others: 1200px max width).
-     * Falls back to original bytes if any step fails.
+     * Process and upload a single vehicle photo for {@code slot} (0 = front, thumbnail width),
+     * e.g. a direct upload being finalized. Attaching the URL to the registration is up to the caller.
+     *
+     * @return map with {@code imageUrl} and its {@code variants}
      */
-    private byte[] processAndConvertImage(MultipartFile image, boolean isFront) {
-        try (InputStream in = image.getInputStream(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
-            BufferedImage src = ImageIO.read(in);
-            if (src == null) return null;
-            int targetWidth = isFront ? 360 : 1200;
-            int w = src.getWidth();
-            int h = src.getHeight();
-            int newW = w;
-            int newH = h;
-            if (w > targetWidth) {
-                newW = targetWidth;
-                newH = (int) Math.round((targetWidth / (double) w) * h);
-            }
-            BufferedImage canvas = new BufferedImage(newW, newH, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = canvas.createGraphics();
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g.drawImage(src, 0, 0, newW, newH, null);
-            // Watermark (diagonal tiled HPG)
-            String mark = "HPG";
-            float alpha = 0.12f;
-            g.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
-            g.setColor(Color.WHITE);
-            int fontSize = Math.max(24, (int) (newW * 0.12));
-            g.setFont(new Font("Arial", Font.BOLD, fontSize));
-            AffineTransform orig = g.getTransform();
-            g.rotate(Math.toRadians(-30), newW / 2.0, newH / 2.0);
-            int step = (int) (fontSize * 3.0);
-            for (int y = -newH; y < newH * 2; y += step) {
-                for (int x = -newW; x < newW * 2; x += step) {
-                    g.drawString(mark, x, y);
-                }
-            }
-            g.setTransform(orig);
-            g.dispose();
-            // Try WebP writer
-            Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("webp");
-            if (writers.hasNext()) {
-                ImageWriter writer = writers.next();
-                try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
-                    writer.setOutput(ios);
-                    ImageWriteParam param = writer.getDefaultWriteParam();
-                    if (param.canWriteCompressed()) {
-                        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                        param.setCompressionType(param.getCompressionType());
-                        param.setCompressionQuality(0.82f);
-                    }
-                    writer.write(null, new IIOImage(canvas, null, null), param);
-                } finally {
-                    writer.dispose();
-                }
-                return out.toByteArray();
-            }
-            // Fallback to JPEG if WebP not available
-            Iterator<ImageWriter> jpgWriters = ImageIO.getImageWritersByFormatName("jpg");
-            if (jpgWriters.hasNext()) {
-                ImageWriter writer = jpgWriters.next();
-                try (MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
-                    writer.setOutput(ios);
-                    ImageWriteParam param = writer.getDefaultWriteParam();
-                    if (param.canWriteCompressed()) {
-                        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                        param.setCompressionQuality(0.82f);
+    public Map<String, Object> uploadImageToSlot(MultipartFile image, Long registrationId, int slot) throws IOException {
+        if (image == null || image.isEmpty()) {
+            throw new IOException("No image provided to upload");
+        }
+        if (registrationId == null) {
+            throw new IOException("Registration ID cannot be null");
+        }
+
+        UploadBatch batch = new UploadBatch();
+        UploadedImage uploaded;
+        try {
+            uploaded = processAndUploadImage(image, slot == 0, registrationId, batch);
+        } catch (IOException | RuntimeException e) {
+            rollbackUploads(batch, registrationId);
+            throw e;
+        }
+
+        String folderPath = registrationId.toString();
+        RegistrationImageFolder imageFolder = registrationImageFolderRepository
+                .findFirstByRegistrationId(registrationId)
+                .orElse(new RegistrationImageFolder(registrationId, folderPath));
+        registrationImageFolderRepository.save(imageFolder);
+        invalidateRegistrationListing(registrationId);
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("imageUrl", uploaded.url());
+        result.put("variants", uploaded.variants());
+        return result;
+    }
+
+    private <T> Future<T> submitImageTask(Callable<T> task) {
+        return submitOrRun(imageUploadExecutor, task);
+    }
+
+    private <T> Future<T> submitStorageTask(Callable<T> task) {
+        return submitOrRun(storageBatchExecutor, task);
+    }
+
+    private static <T> Future<T> submitOrRun(ExecutorService pool, Callable<T> task) {
+        try {
+            return pool.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Pool saturated: do the work on the calling thread rather than fail the request
+            FutureTask<T> inline = new FutureTask<>(task);
+            inline.run();
+            return inline;
+        }
+    }
+
+    /** Primary URL (stored in vehicleImageUrls) plus every width uploaded for the photo. */
+    private record UploadedImage(String url, List<Variant> variants) {}
+
+    /**
+     * Process one vehicle image and upload its renditions. Runs on the image pool.
+     *
+     * Every rendition is stored under its content hash ({@code cas/ab/<sha256>.<ext>}), so a
+     * photo that is uploaded again (edited listing, second vehicle) only adds a reference.
+     * The primary rendition keeps the existing size (front image: 360px width, others: 1200px
+     * max width).
+     */
+    private UploadedImage processAndUploadImage(MultipartFile image, boolean isFront, Long registrationId, UploadBatch batch) throws IOException {
+        int primaryWidth = isFront ? 360 : 1200;
+        List<Integer> widths = new ArrayList<>(imageVariantWidths);
+        widths.add(primaryWidth);
+
+        // Process image (resize + watermark + convert to WebP/JPEG fallback), decoding once for all widths
+        List<ProcessedImage> renditions = imageProcessingService.resizeAndWatermark(image, widths);
+
+        if (renditions == null || renditions.isEmpty()) {
+            // Originals are never stored: they carry EXIF/GPS and are not watermarked
+            throw new ImageRejectedException("Unsupported image format");
+        }
+
+        ProcessedImage primary = renditions.get(0);
+        for (ProcessedImage r : renditions) {
+            if (r.width() <= primaryWidth) primary = r;
+        }
+
+        String primaryUrl = null;
+        List<Variant> variants = new ArrayList<>();
+        for (ProcessedImage r : renditions) {
+            String key = putImageObject(r.bytes(), r.extension(), r.contentType(), registrationId, batch);
+            String url = publicObjectUrl(key);
+            if (r == primary) primaryUrl = url;
+            variants.add(new Variant(r.width(), r.height(), url));
+        }
+        return new UploadedImage(primaryUrl, variants);
+    }
+
+    private String publicObjectUrl(String fullPath) {
+        return supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + fullPath;
+    }
+
+    /**
+     * Store bytes under their content-addressed key and reference them from the registration.
+     * The PUT is skipped when the object is already in the bucket.
+     *
+     * @return the object key
+     */
+    private String putImageObject(byte[] bytes, String extension, String contentType, Long registrationId, UploadBatch batch) throws IOException {
+        if (batch.isAborted()) {
+            throw new IOException("Image upload cancelled");
+        }
+        String sha256 = ImageObjectStore.sha256Hex(bytes);
+        String key = ImageObjectStore.casKey(sha256, extension);
+        Acquired ref = imageObjectStore.acquire(bucketName, key, sha256, contentType, bytes.length, registrationId);
+
+        if (!ref.uploaded()) {
+            try {
+                RequestBody fileBody = RequestBody.create(MediaType.parse(contentType), bytes);
+                // x-upsert: a concurrent upload of the same content may have created the object first
+                Request request = new Request.Builder()
+                        .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + key)
+                        .addHeader("apikey", supabaseKey)
+                        .addHeader("Authorization", "Bearer " + supabaseKey)
+                        .addHeader("x-upsert", "true")
+                        .put(fileBody)
+                        .build();
+
+                imageObjectStore.upload(key, () -> {
+                    Call call = client.newCall(request);
+                    call.timeout().timeout(imageUploadTimeoutMs, TimeUnit.MILLISECONDS);
+                    try (Response response = call.execute()) {
+                        if (!response.isSuccessful()) {
+                            throw new IOException("Image upload failed: " + response.message());
+                        }
                     }
-                    writer.write(null, new IIOImage(canvas, null, null), param);
-                } finally {
-                    writer.dispose();
-                }
-                return out.toByteArray();
+                });
+            } catch (IOException | RuntimeException e) {
+                if (ref.newReference()) releaseQuietly(registrationId, List.of(key));
+                throw e;
             }
-            // Last resort: PNG
-            ImageIO.write(canvas, "png", out);
-            return out.toByteArray();
+        }
+
+        if (ref.newReference() && !batch.recordReference(key)) {
+            // The batch failed while this upload was in flight; nobody else will release this one
+            releaseQuietly(registrationId, List.of(key));
+            throw new IOException("Image upload cancelled");
+        }
+        return key;
+    }
+
+    private void rollbackUploads(UploadBatch batch, Long registrationId) {
+        List<String> keys = batch.abort();
+        if (keys.isEmpty()) return;
+        log.info("Rolling back {} image reference(s) after a failed upload (registrationId={})", keys.size(), registrationId);
+        releaseQuietly(registrationId, keys);
+    }
+
+    /**
+     * Drop the registration's references to the content-addressed objects behind {@code urls},
+     * e.g. a photo replaced in its slot. URLs outside the {@code cas/} layout are ignored.
+     */
+    public void releaseVehicleImages(Long registrationId, Collection<String> urls) {
+        String root = publicObjectUrl("");
+        List<String> keys = new ArrayList<>();
+        for (String url : urls) {
+            if (url == null || !url.startsWith(root)) continue;
+            String key = url.substring(root.length());
+            if (ImageObjectStore.isCasKey(key)) keys.add(key);
+        }
+        if (keys.isEmpty()) return;
+        releaseQuietly(registrationId, keys);
+        invalidateRegistrationListing(registrationId);
+    }
+
+    /** Drop references; objects no longer referenced by any registration are deleted from the bucket. */
+    private void releaseQuietly(Long registrationId, List<String> keys) {
+        try {
+            imageObjectStore.release(registrationId, keys, this::deleteObjectsConfirmed);
         } catch (Exception e) {
-            log.debug("Image processing failed; using original bytes: {}", e.toString());
-            return null;
+            log.warn("Could not release {} image reference(s) (registrationId={}): {}", keys.size(), registrationId, e.toString());
+        }
+    }
+
+    /**
+     * Tracks the references added by one uploadImagesToFolder call so a failure can undo them.
+     * References the registration already held before the call are not tracked.
+     */
+    private static final class UploadBatch {
+        private final List<String> addedKeys = new ArrayList<>();
+        private boolean aborted;
+
+        synchronized boolean isAborted() {
+            return aborted;
+        }
+
+        /** @return false if the batch was already aborted (caller must release its own reference) */
+        synchronized boolean recordReference(String key) {
+            if (aborted) return false;
+            addedKeys.add(key);
+            return true;
+        }
+
+        synchronized List<String> abort() {
+            aborted = true;
+            return new ArrayList<>(addedKeys);
         }
     }
 
@@ -1174,110 +1340,77 @@ public class SupabaseService {
     }
     
     /**
-     * Get all image URLs for a specific registration
-     * 
+     * Get all image URLs for a specific registration (objects directly under its folder).
+     *
+     * One list call at most: URLs are built from the listed keys without probing, and the
+     * listing is cached for {@code app.images.listing-cache-ttl-seconds} (dropped on upload
+     * or delete under the folder).
+     *
      * @param registrationId The registration ID
      * @return List of image URLs
-     * @throws IOException If retrieval fails
+     * @throws IOException If the listing fails
      */
     public List<String> getRegistrationImages(Long registrationId) throws IOException {
-        // Create folder path using registration ID
         String folderPath = registrationId.toString();
+        List<String> keys = listFolderKeys(bucketName, folderPath + "/");
 
-        log.debug("Fetching images for registration (registrationId={})", registrationId);
-        
-        // Build request to list objects in the folder
-        Request request = new Request.Builder()
-                .url(supabaseUrl + "/storage/v1/object/list/" + bucketName + "?prefix=" + folderPath + "/")
-                .addHeader("apikey", supabaseKey)
-                .addHeader("Authorization", "Bearer " + supabaseKey)
-                .get()
-                .build();
-    
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                log.warn("Failed to list images for registration (registrationId={}, status={}): {}", registrationId, response.code(), response.message());
-                throw new IOException("Failed to list images: " + response.message());
-            }
-            
-            // Parse the response to get filenames
-            List<String> imageUrls = new ArrayList<>();
-            String responseBody = response.body().string();
+        List<String> imageUrls = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            imageUrls.add(publicObjectUrl(key));
+        }
+        log.debug("Returning {} image URLs for registration (registrationId={})", imageUrls.size(), registrationId);
+        return imageUrls;
+    }
 
-            log.debug("Storage list returned payload length={} (registrationId={})", responseBody != null ? responseBody.length() : 0, registrationId);
-            
-            // Using jackson to parse the JSON response
-            List<Map<String, Object>> files = objectMapper.readValue(responseBody, 
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, Map.class));
-            
-            log.debug("Found {} storage objects (registrationId={})", files.size(), registrationId);
-            
-            for (Map<String, Object> file : files) {
-                String name = (String) file.get("name");
-                
+    /** Cached full object keys of the files directly under {@code prefix} (ends with '/'). */
+    private List<String> listFolderKeys(String bucket, String prefix) throws IOException {
+        String cacheKey = bucket + "/" + prefix;
+        CachedListing cached = listingCache.get(cacheKey);
+        if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+            return cached.keys();
+        }
+
+        List<String> keys = new ArrayList<>();
+        JsonNode files = listObjectsWithPrefix(bucket, prefix);
+        if (files.isArray()) {
+            for (JsonNode file : files) {
+                String name = file.path("name").asText(null);
+                // Skip sub-folders (e.g. variants/); the list API returns them without an id
+                if (name == null || file.path("id").isNull() || file.path("id").isMissingNode()) continue;
                 // Skip hidden folder marker files
-                if (name.endsWith("/.hidden_folder") || name.endsWith("/.folder")) {
-                    log.debug("Skipping hidden folder marker object (registrationId={})", registrationId);
-                    continue;
-                }
-                
-                // IMPORTANT: Generate direct public URL for the image using a consistent format
-                // Format: {supabaseUrl}/storage/v1/object/public/{bucketName}/{name}
-                String publicUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + name;
-                
-                imageUrls.add(publicUrl);
-            }
-            
-            // Test if URLs are accessible
-            if (!imageUrls.isEmpty()) {
-                try {
-                    Request testRequest = new Request.Builder()
-                            .url(imageUrls.get(0))
-                            .head() // Only request headers, not the full image
-                            .build();
-                    
-                    try (Response testResponse = client.newCall(testRequest).execute()) {
-                        log.debug("Image URL accessibility test (registrationId={}, status={})", registrationId, testResponse.code());
-                        if (!testResponse.isSuccessful()) {
-                            log.debug("Primary image URL format not accessible; trying alternative (registrationId={})", registrationId);
-                            
-                            // Try an alternative URL format if the first one fails
-                            String altUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + 
-                                folderPath + "/" + imageUrls.get(0).substring(imageUrls.get(0).lastIndexOf('/') + 1);
-                            
-                            Request altTestRequest = new Request.Builder()
-                                .url(altUrl)
-                                .head()
-                                .build();
-                                
-                            try (Response altTestResponse = client.newCall(altTestRequest).execute()) {
-                                log.debug("Alternative URL test result (registrationId={}, status={})", registrationId, altTestResponse.code());
-                                    
-                                if (altTestResponse.isSuccessful()) {
-                                    log.debug("Alternative URL format works; updating all URLs (registrationId={})", registrationId);
-                                    // Update all URLs to use this format
-                                    List<String> updatedUrls = new ArrayList<>();
-                                    for (String url : imageUrls) {
-                                        String updatedUrl = supabaseUrl + "/storage/v1/object/public/" + bucketName + "/" + 
-                                            folderPath + "/" + url.substring(url.lastIndexOf('/') + 1);
-                                        updatedUrls.add(updatedUrl);
-                                    }
-                                    imageUrls = updatedUrls;
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    log.debug("Error testing image URL for registration (registrationId={}): {}", registrationId, e.toString());
-                }
+                if (name.endsWith(".hidden_folder") || name.endsWith(".folder")) continue;
+                // The list API names children relative to the prefix
+                keys.add(name.startsWith(prefix) ? name : prefix + name);
             }
+        }
 
-            log.debug("Returning {} image URLs for registration (registrationId={})", imageUrls.size(), registrationId);
-            
-            return imageUrls;
+        if (listingCache.size() >= MAX_CACHED_LISTINGS) {
+            listingCache.clear();
         }
+        listingCache.put(cacheKey, new CachedListing(List.copyOf(keys), System.nanoTime() + TimeUnit.SECONDS.toNanos(listingCacheTtlSeconds)));
+        return keys;
     }
-    
+
+    /**
+     * Drop cached listings that could contain {@code path} (an object key or a folder prefix),
+     * and this node's disk copies of it.
+     */
+    private void invalidateListings(String bucket, String path) {
+        if (path == null) return;
+        imageDiskCache.invalidate(bucket, path);
+        if (listingCache.isEmpty()) return;
+        String normalized = path.startsWith("/") ? path.substring(1) : path;
+        listingCache.keySet().removeIf(k -> {
+            if (!k.startsWith(bucket + "/")) return false;
+            String prefix = k.substring(bucket.length() + 1);
+            return normalized.startsWith(prefix) || prefix.startsWith(normalized);
+        });
+    }
+
+    private void invalidateRegistrationListing(Long registrationId) {
+        if (registrationId != null) invalidateListings(bucketName, registrationId + "/");
+    }
+
     /**
      * Direct method to delete all images for a vehicle
      * This method uses multiple approaches to ensure all images are deleted
@@ -1286,159 +1419,177 @@ public class SupabaseService {
      * @throws IOException If deletion fails
      */
     public void deleteAllVehicleImages(Long registrationId) throws IOException {
-        log.debug("Starting comprehensive vehicle image deletion (registrationId={})", registrationId);
-        
-        // Track if we found any folders to delete
-        boolean foundFolders = false;
-        
-        // APPROACH 1: Try to get folder paths from database
-        try {
-            List<RegistrationImageFolder> folders = registrationImageFolderRepository.findByRegistrationId(registrationId);
-
-            if (!folders.isEmpty()) {
-                foundFolders = true;
-                log.debug("Found {} folder records in DB (registrationId={})", folders.size(), registrationId);
-
-                for (RegistrationImageFolder folder : folders) {
-                    String folderPath = folder.getFolderPath(); // e.g. "123" (we actually stored images as 123/filename)
-                    log.debug("Deleting folder contents from storage using DB-recorded folderPath (registrationId={})", registrationId);
+        deleteAllVehicleImages(List.of(registrationId));
+    }
 
-                    // Delete using both prefix variants to cover Supabase list API expectations
-                    boolean deletedBase = deleteFilesWithPrefix(folderPath);       // may miss files if API expects trailing slash
-                    boolean deletedSlash = deleteFilesWithPrefix(folderPath + "/"); // explicit folder prefix form used during upload
-                    if (deletedBase || deletedSlash) {
-                        log.debug("Folder contents removed (registrationId={})", registrationId);
-                    } else {
-                        log.debug("No files matched for folder path variants (registrationId={})", registrationId);
-                    }
-                }
-            } else {
-                log.debug("No folders found in DB; trying direct ID-based prefixes (registrationId={})", registrationId);
-                // Attempt direct deletion using registrationId base folder assumptions
-                String idPath = registrationId.toString();
-                boolean idDeletedBase = deleteFilesWithPrefix(idPath);
-                boolean idDeletedSlash = deleteFilesWithPrefix(idPath + "/");
-                if (idDeletedBase || idDeletedSlash) {
-                    foundFolders = true;
-                    log.debug("Removed files using direct registration ID prefixes (registrationId={})", registrationId);
-                }
+    /**
+     * Delete all images of several vehicles at once (account deletion).
+     *
+     * Keys are collected per registration concurrently, then removed with multi-object
+     * deletes, so an account with a handful of vehicles costs one or two delete calls
+     * instead of one per file. Listing the legacy folder layouts still takes a call per prefix.
+     *
+     * @param registrationIds The registration IDs
+     * @throws IOException If interrupted while collecting keys
+     */
+    public void deleteAllVehicleImages(Collection<Long> registrationIds) throws IOException {
+        List<Long> ids = registrationIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return;
+        log.debug("Starting comprehensive vehicle image deletion (registrations={})", ids.size());
+        ids.forEach(this::invalidateRegistrationListing);
+
+        // APPROACH 1 + 2: DB-recorded folders, the bare id and the legacy vehicles/vehicle/registration prefixes
+        Set<String> keys = new LinkedHashSet<>();
+        List<Future<Set<String>>> listings = new ArrayList<>();
+        for (Long id : ids) {
+            listings.add(submitStorageTask(() -> collectVehicleImageKeys(id)));
+        }
+        for (Future<Set<String>> listing : listings) {
+            try {
+                keys.addAll(listing.get());
+            } catch (ExecutionException e) {
+                log.debug("Error collecting vehicle image keys: {}", e.getCause() != null ? e.getCause().toString() : e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while collecting vehicle images", e);
             }
-        } catch (Exception e) {
-            log.debug("Error finding folders in database (registrationId={}): {}", registrationId, e.toString());
         }
-        
-        // APPROACH 2: Try common folder patterns
-        try {
-            // Common patterns for vehicle image folders
-            String[] folderPatterns = {
-                "vehicles/" + registrationId,
-                "vehicles/" + registrationId + "/",
-                "vehicle/" + registrationId,
-                "vehicle/" + registrationId + "/",
-                "registration/" + registrationId,
-                "registration/" + registrationId + "/"
-            };
-            
-            for (String pattern : folderPatterns) {
-                boolean deleted = deleteFilesWithPrefix(pattern);
-                if (deleted) {
-                    foundFolders = true;
-                }
+
+        // APPROACH 3: files at the bucket root whose name contains a registration ID
+        keys.addAll(findRootFilesByRegistrationIds(ids));
+
+        // Content-addressed images may be shared; they are deleted only once unreferenced (below)
+        keys.removeIf(ImageObjectStore::isCasKey);
+        if (!keys.isEmpty()) {
+            try {
+                Set<String> removed = deleteObjects(bucketName, keys);
+                log.debug("Deleted {} of {} vehicle image file(s) (registrations={})", removed.size(), keys.size(), ids.size());
+            } catch (IOException e) {
+                log.warn("Failed to delete some vehicle image files (registrations={}): {}", ids.size(), e.toString());
             }
-        } catch (Exception e) {
-            log.debug("Error deleting with common patterns (registrationId={}): {}", registrationId, e.toString());
+        } else {
+            log.debug("No folders were found for deletion; images may still exist in storage (registrations={})", ids.size());
         }
-        
-        // APPROACH 3: Search for files containing the registration ID
+
+        // APPROACH 4: Release content-addressed images; shared ones stay until their last reference goes
         try {
-            searchAndDeleteFilesByRegistrationId(registrationId);
+            List<String> removed = imageObjectStore.releaseAll(ids, this::deleteObjectsConfirmed);
+            log.debug("Released content-addressed images, {} object(s) deleted (registrations={})", removed.size(), ids.size());
         } catch (Exception e) {
-            log.debug("Error in search and delete (registrationId={}): {}", registrationId, e.toString());
+            log.warn("Failed to release content-addressed images (registrations={}): {}", ids.size(), e.toString());
         }
-        
+
         // Clean up database records regardless of success
-        try {
-            int deleted = jdbcTemplate.update("DELETE FROM registration_image_folders WHERE registration_id = ?", registrationId);
-            log.debug("Removed {} folder records from database (registrationId={})", deleted, registrationId);
-        } catch (Exception e) {
-            log.warn("Failed to remove folder records from database (registrationId={}): {}", registrationId, e.toString());
-        }
-        
-        if (!foundFolders) {
-            log.debug("No folders were found for deletion; images may still exist in storage (registrationId={})", registrationId);
+        for (Long id : ids) {
+            try {
+                int deleted = jdbcTemplate.update("DELETE FROM registration_image_folders WHERE registration_id = ?", id);
+                log.debug("Removed {} folder records from database (registrationId={})", deleted, id);
+            } catch (Exception e) {
+                log.warn("Failed to remove folder records from database (registrationId={}): {}", id, e.toString());
+            }
         }
     }
-    
+
     /**
-     * Delete all files with a specific prefix from the storage bucket
-     * 
-     * @param prefix The prefix to match files against
-     * @return true if any files were deleted, false otherwise
-     * @throws IOException If deletion fails
+     * Delete objects of one bucket with the multi-object delete API ({@code DELETE /object/{bucket}}
+     * with a {@code prefixes} array), {@code app.storage.delete.batch-size} keys per call and the
+     * calls running concurrently. Keys that do not exist are not an error.
+     *
+     * @return the keys storage reported as removed
+     * @throws IOException if any batch still failed after retries (other batches are not undone)
      */
-    private boolean deleteFilesWithPrefix(String prefix) throws IOException {
-        log.debug("Deleting files with prefix (normalized) in Supabase storage");
-        // Normalise prefix: ensure trailing slash so Supabase list treats it as folder
-        String normalizedPrefix = prefix.endsWith("/") ? prefix : prefix + "/";
+    public Set<String> deleteObjects(String bucket, Collection<String> keys) throws IOException {
         try {
-            int deleted = deleteFilesWithPrefixRecursive(normalizedPrefix, 0, new java.util.HashSet<>());
-            if (deleted > 0) {
-                log.debug("Deleted {} files for prefix", deleted);
-            }
-            return deleted > 0;
-        } catch (Exception e) {
-            log.debug("Exception during deletion for prefix: {}", e.toString());
-            return false;
+            return deleteObjectsAsync(bucket, keys).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new IOException("Batch delete failed in " + bucket + ": " + cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during batch delete", e);
         }
     }
 
-    private int deleteFilesWithPrefixRecursive(String normalizedPrefix, int depth, java.util.Set<String> visited) throws IOException {
-        // Prevent runaway recursion and loops
-        if (depth > 12) return 0;
-        if (normalizedPrefix == null || normalizedPrefix.isBlank()) return 0;
-        if (!normalizedPrefix.endsWith("/")) normalizedPrefix = normalizedPrefix + "/";
-        if (!visited.add(normalizedPrefix)) return 0;
+    /**
+     * Non-blocking {@link #deleteObjects}: batches and their retries run on the storage batch
+     * pool. Completes exceptionally if any batch still failed after retries.
+     */
+    public CompletableFuture<Set<String>> deleteObjectsAsync(String bucket, Collection<String> keys) {
+        List<DeleteBatch> batches = submitDeleteBatches(bucket, keys);
+        return CompletableFuture.allOf(batches.stream().map(DeleteBatch::removed).toArray(CompletableFuture<?>[]::new)).thenApply(v -> {
+            Set<String> removed = new HashSet<>();
+            for (DeleteBatch batch : batches) {
+                removed.addAll(batch.removed().join());
+            }
+            return removed;
+        });
+    }
 
-        JsonNode entries = listObjectsWithPrefix(normalizedPrefix);
-        if (entries == null || !entries.isArray() || entries.size() == 0) return 0;
+    /**
+     * {@link #deleteObjects} reporting per batch instead of failing as a whole: returns the keys
+     * known to be gone from storage, i.e. every key of a batch that succeeded (removed now or
+     * already missing). Keys of failed batches are left out; their state is unknown.
+     */
+    public Set<String> deleteObjectsConfirmed(String bucket, Collection<String> keys) {
+        Set<String> gone = new HashSet<>();
+        for (DeleteBatch batch : submitDeleteBatches(bucket, keys)) {
+            try {
+                batch.removed().get();
+                gone.addAll(batch.keys());
+            } catch (ExecutionException e) {
+                log.warn("Batch delete failed in {} ({} key(s)): {}", bucket, batch.keys().size(),
+                        e.getCause() != null ? e.getCause().toString() : e.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return gone;
+    }
 
-        int deletedCount = 0;
+    /** One multi-object delete call: its keys and the keys storage reported as removed. */
+    private record DeleteBatch(List<String> keys, CompletableFuture<List<String>> removed) {}
 
-        for (JsonNode entry : entries) {
-            if (entry == null || entry.get("name") == null) continue;
-            String name = entry.get("name").asText();
-            if (name == null || name.isBlank()) continue;
+    private List<DeleteBatch> submitDeleteBatches(String bucket, Collection<String> keys) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(keys));
+        for (String key : unique) {
+            invalidateListings(bucket, key);
+        }
 
-            boolean isFolder = entry.has("id") && entry.get("id").isNull();
-            String fullPath;
-            if (name.startsWith(normalizedPrefix)) {
-                fullPath = name;
-            } else {
-                fullPath = normalizedPrefix + name;
-            }
+        int size = Math.max(1, deleteBatchSize);
+        List<DeleteBatch> batches = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i += size) {
+            List<String> chunk = unique.subList(i, Math.min(unique.size(), i + size));
+            CompletableFuture<List<String>> removed = retryAsync(() -> deleteObjectBatch(bucket, chunk), "delete-batch:" + bucket + ":" + chunk.size());
+            // A request between the invalidation above and the delete may have re-cached the object
+            removed.whenComplete((r, e) -> chunk.forEach(key -> imageDiskCache.invalidate(bucket, key)));
+            batches.add(new DeleteBatch(chunk, removed));
+        }
+        return batches;
+    }
 
-            if (isFolder || name.endsWith("/")) {
-                String childPrefix = fullPath.endsWith("/") ? fullPath : fullPath + "/";
-                deletedCount += deleteFilesWithPrefixRecursive(childPrefix, depth + 1, visited);
-                continue;
+    private List<String> deleteObjectBatch(String bucket, List<String> keys) throws IOException {
+        String json = objectMapper.writeValueAsString(Map.of("prefixes", keys));
+        Request request = new Request.Builder()
+            .url(supabaseUrl + "/storage/v1/object/" + bucket)
+            .addHeader("apikey", supabaseKey)
+            .addHeader("Authorization", "Bearer " + supabaseKey)
+            .delete(RequestBody.create(MediaType.parse("application/json"), json))
+            .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) {
+                throw new RetryExecutor.HttpStatusException(response.code(), "Batch delete failed");
             }
-
-            Request deleteRequest = new Request.Builder()
-                .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + fullPath)
-                .addHeader("apikey", supabaseKey)
-                .addHeader("Authorization", "Bearer " + supabaseKey)
-                .delete()
-                .build();
-            try (Response deleteResponse = client.newCall(deleteRequest).execute()) {
-                if (!deleteResponse.isSuccessful() && deleteResponse.code() != 404) {
-                    log.debug("Failed delete (status={}) for a file under prefix", deleteResponse.code());
-                } else {
-                    deletedCount++;
+            // Storage returns the removed objects; missing keys are simply absent
+            List<String> removed = new ArrayList<>();
+            JsonNode objects = objectMapper.readTree(response.body() != null ? response.body().string() : "[]");
+            if (objects != null && objects.isArray()) {
+                for (JsonNode o : objects) {
+                    if (o.hasNonNull("name")) removed.add(o.get("name").asText());
                 }
             }
+            return removed;
         }
-
-        return deletedCount;
     }
 
     private JsonNode listObjectsWithPrefix(String normalizedPrefix) throws IOException {
@@ -1483,14 +1634,13 @@ public class SupabaseService {
     }
     
     /**
-     * Search for and delete any files that contain the registration ID in their path
-     * 
-     * @param registrationId The registration ID to search for
-     * @throws IOException If deletion fails
+     * Files at the bucket root whose name contains one of the registration IDs (oldest upload layout)
+     *
+     * @param registrationIds The registration IDs to search for
+     * @return Matching object keys; empty if the listing fails
      */
-    private void searchAndDeleteFilesByRegistrationId(Long registrationId) throws IOException {
-        log.debug("Searching for files containing registration ID (registrationId={})", registrationId);
-        
+    private List<String> findRootFilesByRegistrationIds(List<Long> registrationIds) {
+        List<String> matches = new ArrayList<>();
         try {
             // List all files in the bucket
             Request listRequest = new Request.Builder()
@@ -1499,53 +1649,34 @@ public class SupabaseService {
                     .addHeader("Authorization", "Bearer " + supabaseKey)
                     .get()
                     .build();
-            
-            int filesDeleted = 0;
-            
+
             try (Response response = client.newCall(listRequest).execute()) {
                 if (!response.isSuccessful()) {
                     log.debug("Search delete: failed to list files (status={}): {}", response.code(), response.message());
-                    return;
+                    return matches;
                 }
-                
-                // Parse the response to get file paths
-                String responseBody = response.body().string();
-                JsonNode fileList = objectMapper.readTree(responseBody);
-                
-                log.debug("Search delete: checking {} files (registrationId={})", fileList.size(), registrationId);
-                
-                // Find and delete files containing the registration ID
-                String registrationIdStr = registrationId.toString();
+
+                JsonNode fileList = objectMapper.readTree(response.body().string());
+                log.debug("Search delete: checking {} files (registrations={})", fileList.size(), registrationIds.size());
+
                 for (JsonNode file : fileList) {
+                    if (file == null || file.get("name") == null) continue;
                     String filePath = file.get("name").asText();
-                    
-                    // Check if the file path contains the registration ID
-                    if (filePath.contains(registrationIdStr)) {
-                        log.debug("Search delete: found matching file under registrationId (registrationId={})", registrationId);
-                        
-                        Request deleteRequest = new Request.Builder()
-                                .url(supabaseUrl + "/storage/v1/object/" + bucketName + "/" + filePath)
-                                .addHeader("apikey", supabaseKey)
-                                .addHeader("Authorization", "Bearer " + supabaseKey)
-                                .delete()
-                                .build();
-                        
-                        try (Response deleteResponse = client.newCall(deleteRequest).execute()) {
-                            if (!deleteResponse.isSuccessful()) {
-                                log.debug("Search delete: failed to delete a file (status={}): {}", deleteResponse.code(), deleteResponse.message());
-                            } else {
-                                filesDeleted++;
-                            }
+                    boolean isFolder = file.has("id") && file.get("id").isNull();
+                    // Folders are covered by the prefix listings; shared content-addressed images are ref-counted
+                    if (isFolder || ImageObjectStore.isCasKey(filePath + "/")) continue;
+                    for (Long id : registrationIds) {
+                        if (filePath.contains(id.toString())) {
+                            matches.add(filePath);
+                            break;
                         }
                     }
                 }
             }
-
-            log.debug("Search delete: deleted {} files containing registrationId (registrationId={})", filesDeleted, registrationId);
-            
         } catch (Exception e) {
-            log.debug("Search delete: error searching and deleting files (registrationId={}): {}", registrationId, e.toString());
+            log.debug("Search delete: error searching files (registrations={}): {}", registrationIds.size(), e.toString());
         }
+        return matches;
     }
     
     /**
@@ -1700,49 +1831,95 @@ public class SupabaseService {
         }
     }
 
-    private byte[] downloadObjectBytes(String bucket, String path) throws IOException {
+    /**
+     * Server-side copy ({@code POST /object/copy}); no bytes pass through this service.
+     * The destination is overwritten if it exists, so a retried copy is harmless.
+     *
+     * @return false if the source does not exist
+     */
+    private boolean copyObject(String bucket, String path, String destBucket, String destPath) throws IOException {
+        return transferObject("copy", bucket, path, destBucket, destPath);
+    }
+
+    /** Server-side move ({@code POST /object/move}) of one object, possibly across buckets. */
+    private boolean moveObject(String bucket, String path, String destBucket, String destPath) throws IOException {
+        invalidateListings(bucket, path);
+        return transferObject("move", bucket, path, destBucket, destPath);
+    }
+
+    private boolean transferObject(String operation, String bucket, String path, String destBucket, String destPath) throws IOException {
+        Map<String, String> payload = new LinkedHashMap<>();
+        payload.put("bucketId", bucket);
+        payload.put("sourceKey", path);
+        payload.put("destinationBucket", destBucket);
+        payload.put("destinationKey", destPath);
         Request request = new Request.Builder()
-            .url(supabaseUrl + "/storage/v1/object/" + bucket + "/" + path)
+            .url(supabaseUrl + "/storage/v1/object/" + operation)
             .addHeader("apikey", supabaseKey)
             .addHeader("Authorization", "Bearer " + supabaseKey)
-            .get()
+            .addHeader("x-upsert", "true")
+            .post(RequestBody.create(MediaType.parse("application/json"), objectMapper.writeValueAsString(payload)))
             .build();
-
         try (Response response = client.newCall(request).execute()) {
-            if (response.code() == 404) return null;
-            if (!response.isSuccessful()) {
-                throw new IOException("Download failed (status=" + response.code() + ")");
+            if (response.isSuccessful()) return true;
+            // Storage reports a missing source as 404, or as 400 with a not_found error body
+            String body = response.body() != null ? response.body().string() : "";
+            if (response.code() == 404 || (response.code() == 400 && body.toLowerCase().contains("not_found"))) {
+                return false;
             }
-            return response.body() != null ? response.body().bytes() : null;
+            throw new RetryExecutor.HttpStatusException(response.code(), "Storage " + operation + " failed");
         }
     }
 
-    private void uploadObjectBytes(String bucket, String path, byte[] bytes, String contentType) throws IOException {
-        MediaType mt = MediaType.parse((contentType == null || contentType.isBlank()) ? "application/octet-stream" : contentType);
-        RequestBody body = RequestBody.create(mt, bytes != null ? bytes : new byte[0]);
-        Request request = new Request.Builder()
-            .url(supabaseUrl + "/storage/v1/object/" + bucket + "/" + path)
-            .addHeader("apikey", supabaseKey)
-            .addHeader("Authorization", "Bearer " + supabaseKey)
-            .put(body)
-            .build();
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                throw new IOException("Upload failed (status=" + response.code() + ")");
+    /** One object to archive into the deleted-evidence bucket, with its report row. */
+    private record EvidenceCopy(Map<String, Object> row, String bucket, String path, String destKey,
+                                String errorPrefix, boolean deleteSource) {}
+
+    /**
+     * Copy evidence into the deleted-evidence bucket, concurrently on the storage batch pool.
+     * Rows are reported in order; sources of copied objects with deleteSource set are queued
+     * in pendingDeletes (deleted only once everything is archived).
+     */
+    private void copyEvidence(List<EvidenceCopy> copies, List<Map<String, Object>> archived,
+                              List<String> errors, List<Map<String, String>> pendingDeletes) {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        for (EvidenceCopy c : copies) {
+            results.add(retryAsync(
+                () -> copyObject(c.bucket(), c.path(), deletedEvidenceBucketName, c.destKey()),
+                "copy:" + c.bucket() + ":" + c.path()));
+        }
+        for (int i = 0; i < copies.size(); i++) {
+            EvidenceCopy c = copies.get(i);
+            Map<String, Object> row = c.row();
+            try {
+                if (results.get(i).get()) {
+                    row.put("status", "copied");
+                    if (c.deleteSource()) pendingDeletes.add(Map.of("bucket", c.bucket(), "path", c.path()));
+                } else {
+                    row.put("status", "missing");
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                String message = e instanceof ExecutionException && e.getCause() != null ? e.getCause().getMessage() : e.toString();
+                row.put("status", "error");
+                row.put("error", message);
+                errors.add(c.errorPrefix() + message);
             }
+            archived.add(row);
         }
     }
 
-    private void deleteObject(String bucket, String path) throws IOException {
-        Request request = new Request.Builder()
-            .url(supabaseUrl + "/storage/v1/object/" + bucket + "/" + path)
-            .addHeader("apikey", supabaseKey)
-            .addHeader("Authorization", "Bearer " + supabaseKey)
-            .delete()
-            .build();
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful() && response.code() != 404) {
-                throw new IOException("Delete failed (status=" + response.code() + ")");
+    /** Delete archived sources, one batched call per bucket. */
+    private void deletePending(List<Map<String, String>> pendingDeletes, List<String> errors) {
+        Map<String, List<String>> byBucket = new LinkedHashMap<>();
+        for (Map<String, String> del : pendingDeletes) {
+            byBucket.computeIfAbsent(del.get("bucket"), b -> new ArrayList<>()).add(del.get("path"));
+        }
+        for (Map.Entry<String, List<String>> e : byBucket.entrySet()) {
+            try {
+                deleteObjects(e.getKey(), e.getValue());
+            } catch (Exception ex) {
+                errors.add("delete-source: " + ex.getMessage());
             }
         }
     }
@@ -1858,8 +2035,17 @@ public class SupabaseService {
 
         // 1) Vehicle images (from main vehicle-images bucket)
         Set<String> keys = collectVehicleImageKeys(registrationId);
+        List<String> casKeys = new ArrayList<>();
+        try {
+            casKeys.addAll(imageObjectStore.keysFor(registrationId));
+        } catch (Exception e) {
+            errors.add("vehicle-image: could not list content-addressed images -> " + e.getMessage());
+        }
+        keys.addAll(casKeys);
+        List<EvidenceCopy> copies = new ArrayList<>();
         for (String srcKey : keys) {
-            String rel = safeRelPathForRegistration(registrationId, srcKey);
+            boolean shared = ImageObjectStore.isCasKey(srcKey);
+            String rel = shared ? srcKey : safeRelPathForRegistration(registrationId, srcKey);
             String destKey = userFolder + "/vehicles/" + registrationId + "/" + rel;
             Map<String, Object> row = new HashMap<>();
             row.put("type", "vehicle-image");
@@ -1867,22 +2053,8 @@ public class SupabaseService {
             row.put("sourcePath", srcKey);
             row.put("archiveBucket", deletedEvidenceBucketName);
             row.put("archivePath", destKey);
-
-            try {
-                byte[] bytes = retryWithBackoff(() -> downloadObjectBytes(bucketName, srcKey), "download:" + srcKey);
-                if (bytes == null) {
-                    row.put("status", "missing");
-                } else {
-                    retryWithBackoff(() -> { uploadObjectBytes(deletedEvidenceBucketName, destKey, bytes, "application/octet-stream"); return null; }, "upload:" + destKey);
-                    row.put("status", "copied");
-                    pendingDeletes.add(Map.of("bucket", bucketName, "path", srcKey));
-                }
-            } catch (Exception e) {
-                row.put("status", "error");
-                row.put("error", e.getMessage());
-                errors.add("vehicle-image: " + srcKey + " -> " + e.getMessage());
-            }
-            archived.add(row);
+            // Content-addressed objects are released below instead of deleted outright
+            copies.add(new EvidenceCopy(row, bucketName, srcKey, destKey, "vehicle-image: " + srcKey + " -> ", !shared));
         }
 
         // 2) RC and DL documents (based on URLs stored on registration)
@@ -1898,21 +2070,7 @@ public class SupabaseService {
                 row.put("sourcePath", rcObj.path);
                 row.put("archiveBucket", deletedEvidenceBucketName);
                 row.put("archivePath", destKey);
-                try {
-                    byte[] bytes = retryWithBackoff(() -> downloadObjectBytes(rcObj.bucket, rcObj.path), "download:rc:" + registrationId);
-                    if (bytes != null) {
-                        retryWithBackoff(() -> { uploadObjectBytes(deletedEvidenceBucketName, destKey, bytes, "application/octet-stream"); return null; }, "upload:rc:" + registrationId);
-                        row.put("status", "copied");
-                        pendingDeletes.add(Map.of("bucket", rcObj.bucket, "path", rcObj.path));
-                    } else {
-                        row.put("status", "missing");
-                    }
-                } catch (Exception e) {
-                    row.put("status", "error");
-                    row.put("error", e.getMessage());
-                    errors.add("rc: " + e.getMessage());
-                }
-                archived.add(row);
+                copies.add(new EvidenceCopy(row, rcObj.bucket, rcObj.path, destKey, "rc: ", true));
             }
         } catch (Exception _e) {
             // best-effort
@@ -1930,36 +2088,24 @@ public class SupabaseService {
                 row.put("sourcePath", dlObj.path);
                 row.put("archiveBucket", deletedEvidenceBucketName);
                 row.put("archivePath", destKey);
-                try {
-                    byte[] bytes = retryWithBackoff(() -> downloadObjectBytes(dlObj.bucket, dlObj.path), "download:dl:" + registrationId);
-                    if (bytes != null) {
-                        retryWithBackoff(() -> { uploadObjectBytes(deletedEvidenceBucketName, destKey, bytes, "application/octet-stream"); return null; }, "upload:dl:" + registrationId);
-                        row.put("status", "copied");
-                        pendingDeletes.add(Map.of("bucket", dlObj.bucket, "path", dlObj.path));
-                    } else {
-                        row.put("status", "missing");
-                    }
-                } catch (Exception e) {
-                    row.put("status", "error");
-                    row.put("error", e.getMessage());
-                    errors.add("dl: " + e.getMessage());
-                }
-                archived.add(row);
+                copies.add(new EvidenceCopy(row, dlObj.bucket, dlObj.path, destKey, "dl: ", true));
             }
         } catch (Exception _e) {
             // best-effort
         }
 
+        // Sources are deleted only once every object is archived, so copy rather than move
+        copyEvidence(copies, archived, errors, pendingDeletes);
+
         boolean allCopied = errors.isEmpty();
         if (allCopied) {
-            for (Map<String, String> del : pendingDeletes) {
+            // If deletion fails at this stage, report but keep copies.
+            deletePending(pendingDeletes, errors);
+            if (!casKeys.isEmpty()) {
                 try {
-                    String b = del.get("bucket");
-                    String p = del.get("path");
-                    retryWithBackoff(() -> { deleteObject(b, p); return null; }, "delete:" + b + ":" + p);
+                    imageObjectStore.release(registrationId, casKeys, this::deleteObjectsConfirmed);
                 } catch (Exception e) {
-                    // If deletion fails at this stage, report but keep copies.
-                    errors.add("delete-source: " + e.getMessage());
+                    errors.add("release-shared: " + e.getMessage());
                 }
             }
         }
@@ -1976,7 +2122,6 @@ public class SupabaseService {
         Map<String, Object> result = new HashMap<>();
         List<Map<String, Object>> archived = new ArrayList<>();
         List<String> errors = new ArrayList<>();
-        List<Map<String, String>> pendingDeletes = new ArrayList<>();
 
         if (userId == null || profilePhotoUrl == null || profilePhotoUrl.isBlank()) {
             result.put("success", true);
@@ -2003,15 +2148,10 @@ public class SupabaseService {
         row.put("archiveBucket", deletedEvidenceBucketName);
         row.put("archivePath", destKey);
 
+        // A single object: the server-side move archives and removes the source in one call
         try {
-            byte[] bytes = retryWithBackoff(() -> downloadObjectBytes(obj.bucket, obj.path), "download:profile:" + userId);
-            if (bytes != null) {
-                retryWithBackoff(() -> { uploadObjectBytes(deletedEvidenceBucketName, destKey, bytes, "application/octet-stream"); return null; }, "upload:profile:" + userId);
-                row.put("status", "copied");
-                pendingDeletes.add(Map.of("bucket", obj.bucket, "path", obj.path));
-            } else {
-                row.put("status", "missing");
-            }
+            boolean moved = retryWithBackoff(() -> moveObject(obj.bucket, obj.path, deletedEvidenceBucketName, destKey), "move:profile:" + userId);
+            row.put("status", moved ? "copied" : "missing");
         } catch (Exception e) {
             row.put("status", "error");
             row.put("error", e.getMessage());
@@ -2020,18 +2160,6 @@ public class SupabaseService {
 
         archived.add(row);
 
-        if (errors.isEmpty()) {
-            for (Map<String, String> del : pendingDeletes) {
-                try {
-                    String b = del.get("bucket");
-                    String p = del.get("path");
-                    retryWithBackoff(() -> { deleteObject(b, p); return null; }, "delete:" + b + ":" + p);
-                } catch (Exception e) {
-                    errors.add("delete-source: " + e.getMessage());
-                }
-            }
-        }
-
         result.put("success", errors.isEmpty());
         result.put("archivedObjects", archived);
         result.put("errors", errors);
@@ -2076,8 +2204,8 @@ public class SupabaseService {
             
             log.debug("Uploading {} document (registrationId={})", documentType, registrationId);
             
-            // Create request body from file
-            RequestBody fileBody = RequestBody.create(MediaType.parse(document.getContentType()), document.getBytes());
+            // Streamed from the multipart temp file; reopened on each retry
+            RequestBody fileBody = StreamingRequestBody.of(document, document.getContentType());
             
             // Build request to upload file
             Request request = new Request.Builder()
@@ -2090,7 +2218,7 @@ public class SupabaseService {
             // Execute request
             try (Response response = client.newCall(request).execute()) {
                 if (!response.isSuccessful()) {
-                    throw new IOException(documentType + " document upload failed: " + response.message());
+                    throw new RetryExecutor.HttpStatusException(response.code(), documentType + " document upload failed: " + response.message());
                 }
                 
                 // Return public URL of uploaded document
@@ -2137,6 +2265,7 @@ public class SupabaseService {
      * @throws IOException If the deletion fails
      */
     private void deleteFile(String bucketName, String filePath) throws IOException {
+        invalidateListings(bucketName, filePath);
         retryWithBackoff(() -> {
             log.debug("Deleting file from bucket {}", bucketName);
             
@@ -2149,7 +2278,7 @@ public class SupabaseService {
             
             try (Response response = client.newCall(request).execute()) {
                 if (!response.isSuccessful() && response.code() != 404) {
-                    throw new IOException("File deletion failed: " + response.message());
+                    throw new RetryExecutor.HttpStatusException(response.code(), "File deletion failed: " + response.message());
                 }
 
                 log.debug("File deleted successfully (or already missing)");
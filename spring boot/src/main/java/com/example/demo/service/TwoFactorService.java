@@ -3,6 +3,7 @@ package com.example.demo.service;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.env.Environment;
 import org.springframework.http.ResponseEntity;
@@ -39,8 +40,11 @@ public class TwoFactorService {
 
     private final Environment environment;
 
-    public TwoFactorService(Environment environment) {
+    private final RestTemplate restTemplate;
+
+    public TwoFactorService(Environment environment, @Qualifier("smsRestTemplate") RestTemplate restTemplate) {
         this.environment = environment;
+        this.restTemplate = restTemplate;
     }
 
     @PostConstruct
@@ -91,8 +95,6 @@ public class TwoFactorService {
             return;
         }
         try {
-            RestTemplate restTemplate = new RestTemplate();
-
             String normalized = normalizeIndianNumber(phoneNumber);
             String encodedMsg = java.net.URLEncoder.encode(message, java.nio.charset.StandardCharsets.UTF_8);
             String url = String.format(TWOFACTOR_SMS_URL_TEMPLATE, twoFactorApiKey, normalized, encodedMsg);
@@ -112,7 +114,6 @@ public class TwoFactorService {
                 log.debug("[SMS disabled] Suppressed OTP send");
                 return;
             }
-            RestTemplate restTemplate = new RestTemplate();
             String normalized = normalizeIndianNumber(phoneNumber);
             String message = "Your OTP is: " + otp + " (Herapherigoods)";
             String encodedMsg = java.net.URLEncoder.encode(message, java.nio.charset.StandardCharsets.UTF_8);
@@ -133,7 +134,6 @@ public class TwoFactorService {
                 log.debug("[SMS disabled] Suppressed TSMS OTP send");
                 return;
             }
-            RestTemplate restTemplate = new RestTemplate();
             String normalized = normalizeIndianNumber(phoneNumber);
 
             java.util.Map<String, Object> payload = new java.util.HashMap<>();
@@ -171,7 +171,6 @@ public class TwoFactorService {
                 log.debug("[SMS disabled] Suppressed AUTOGEN send");
                 return null;
             }
-            RestTemplate restTemplate = new RestTemplate();
             String normalized = normalizeIndianNumber(phoneNumber);
             String mode = fourDigit ? "AUTOGEN3" : "AUTOGEN";
             String url = String.format(TWOFACTOR_AUTOGEN_URL, twoFactorApiKey, normalized, mode, templateName);
@@ -208,7 +207,6 @@ public class TwoFactorService {
 
     public boolean verifyAutogenOtp(String sessionId, String otp) {
         try {
-            RestTemplate restTemplate = new RestTemplate();
             String url = String.format(TWOFACTOR_VERIFY_URL, twoFactorApiKey, sessionId, otp);
             ResponseEntity<String> response = restTemplate.getForEntity(url, String.class);
             log.info("2Factor VERIFY request completed with status {}", response.getStatusCode());
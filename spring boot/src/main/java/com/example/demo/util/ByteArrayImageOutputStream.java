@@ -0,0 +1,85 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import javax.imageio.stream.ImageOutputStreamImpl;
+
+/**
+ * Seekable in-memory ImageOutputStream over a caller-supplied (reusable) array.
+ *
+ * {@code MemoryCacheImageOutputStream} over a {@code ByteArrayOutputStream} keeps the encoded
+ * image in its own block cache, copies it into the BAOS on flush and once more in
+ * {@code toByteArray()}. Here the writer fills one growable array and the result is copied out
+ * once, at its exact size.
+ */
+public final class ByteArrayImageOutputStream extends ImageOutputStreamImpl {
+
+    private byte[] buf;
+    private int length;
+
+    public ByteArrayImageOutputStream(byte[] initial) {
+        this.buf = initial != null && initial.length > 0 ? initial : new byte[8192];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + 1);
+        buf[(int) streamPos++] = (byte) b;
+        if (streamPos > length) length = (int) streamPos;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        flushBits();
+        ensureCapacity(streamPos + len);
+        System.arraycopy(b, off, buf, (int) streamPos, len);
+        streamPos += len;
+        if (streamPos > length) length = (int) streamPos;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) return -1;
+        return buf[(int) streamPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= length) return -1;
+        int n = (int) Math.min(len, length - streamPos);
+        System.arraycopy(buf, (int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    /** Exact-size copy of everything written. */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buf, length);
+    }
+
+    /** The backing array (possibly grown), for returning to a pool once the bytes are copied out. */
+    public byte[] buffer() {
+        return buf;
+    }
+
+    private void ensureCapacity(long needed) throws IOException {
+        checkClosed();
+        if (needed > Integer.MAX_VALUE - 8) {
+            throw new IOException("Encoded image too large");
+        }
+        if (needed > buf.length) {
+            buf = Arrays.copyOf(buf, (int) Math.max(needed, Math.min(Integer.MAX_VALUE - 8L, buf.length * 2L)));
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.util;
+
+import java.awt.geom.AffineTransform;
+import java.io.IOException;
+import java.nio.ByteOrder;
+
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * EXIF orientation (tag 0x0112) of JPEG uploads.
+ *
+ * Phones store the sensor image as shot and record the rotation in EXIF; since the pipeline
+ * re-encodes from pixels (dropping EXIF), the rotation has to be applied to the pixels. Only
+ * the APP1 segment is parsed, straight from the stream the decoder will use.
+ */
+public final class ExifOrientation {
+
+    public static final int NORMAL = 1;
+
+    private static final int TAG_ORIENTATION = 0x0112;
+    // Markers are scanned only up to the first scan/frame; EXIF APP1 must come before them
+    private static final int MAX_SEGMENTS = 32;
+
+    private ExifOrientation() {}
+
+    /**
+     * Orientation 1..8, or {@link #NORMAL} when the input is not a JPEG or has no (valid) tag.
+     * The stream is left at position 0, big-endian.
+     */
+    public static int read(ImageInputStream in) throws IOException {
+        try {
+            in.seek(0);
+            in.setByteOrder(ByteOrder.BIG_ENDIAN);
+            if (in.readUnsignedShort() != 0xFFD8) return NORMAL;
+            for (int i = 0; i < MAX_SEGMENTS; i++) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || (marker >= 0xFFC0 && marker <= 0xFFCF && marker != 0xFFC4 && marker != 0xFFCC)) {
+                    return NORMAL;
+                }
+                int length = in.readUnsignedShort();
+                if (length < 2) return NORMAL;
+                long next = in.getStreamPosition() + length - 2;
+                if (marker == 0xFFE1 && length >= 16 && in.readInt() == 0x45786966 && in.readUnsignedShort() == 0) { // "Exif\0\0"
+                    return orientationFromTiff(in, next);
+                }
+                in.seek(next);
+            }
+            return NORMAL;
+        } catch (IOException | RuntimeException e) {
+            // Truncated or malformed metadata: decode as stored
+            return NORMAL;
+        } finally {
+            in.setByteOrder(ByteOrder.BIG_ENDIAN);
+            in.seek(0);
+        }
+    }
+
+    private static int orientationFromTiff(ImageInputStream in, long segmentEnd) throws IOException {
+        long tiff = in.getStreamPosition();
+        int byteOrder = in.readUnsignedShort();
+        if (byteOrder == 0x4949) {
+            in.setByteOrder(ByteOrder.LITTLE_ENDIAN);
+        } else if (byteOrder != 0x4D4D) {
+            return NORMAL;
+        }
+        if (in.readUnsignedShort() != 42) return NORMAL;
+        long ifd0 = tiff + (in.readInt() & 0xFFFFFFFFL);
+        if (ifd0 + 2 > segmentEnd) return NORMAL;
+        in.seek(ifd0);
+        int entries = in.readUnsignedShort();
+        for (int i = 0; i < entries && in.getStreamPosition() + 12 <= segmentEnd; i++) {
+            int tag = in.readUnsignedShort();
+            int type = in.readUnsignedShort();
+            in.readInt(); // count
+            if (tag == TAG_ORIENTATION && type == 3) { // SHORT, stored inline
+                int value = in.readUnsignedShort();
+                return value >= 1 && value <= 8 ? value : NORMAL;
+            }
+            in.readInt();
+        }
+        return NORMAL;
+    }
+
+    /** Orientations 5-8 turn the image by 90 degrees, so the displayed width is the stored height. */
+    public static boolean swapsDimensions(int orientation) {
+        return orientation >= 5 && orientation <= 8;
+    }
+
+    /**
+     * Maps stored pixel coordinates of a {@code w} x {@code h} image to displayed coordinates.
+     */
+    public static AffineTransform transform(int orientation, int w, int h) {
+        switch (orientation) {
+            case 2: return new AffineTransform(-1, 0, 0, 1, w, 0);  // mirror horizontal
+            case 3: return new AffineTransform(-1, 0, 0, -1, w, h); // rotate 180
+            case 4: return new AffineTransform(1, 0, 0, -1, 0, h);  // mirror vertical
+            case 5: return new AffineTransform(0, 1, 1, 0, 0, 0);   // transpose
+            case 6: return new AffineTransform(0, 1, -1, 0, h, 0);  // rotate 90 CW
+            case 7: return new AffineTransform(0, -1, -1, 0, h, w); // transverse
+            case 8: return new AffineTransform(0, -1, 1, 0, 0, w);  // rotate 90 CCW
+            default: return new AffineTransform();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.demo.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Responsive variants of vehicle photos.
+ *
+ * Stored on the registration as JSON keyed by the primary image URL, so a stale entry
+ * (image replaced or removed) is simply never matched.
+ */
+public final class ResponsiveImages {
+
+    public record Variant(int width, int height, String url) {}
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, List<Variant>>> VARIANT_MAP = new TypeReference<>() {};
+
+    private ResponsiveImages() {}
+
+    public static Map<String, List<Variant>> parse(String json) {
+        if (json == null || json.isBlank()) return Map.of();
+        try {
+            Map<String, List<Variant>> map = OBJECT_MAPPER.readValue(json, VARIANT_MAP);
+            return map != null ? map : Map.of();
+        } catch (Exception e) {
+            return Map.of();
+        }
+    }
+
+    public static String toJson(Map<String, List<Variant>> variants) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(variants != null ? variants : Map.of());
+        } catch (Exception e) {
+            return "{}";
+        }
+    }
+
+    /** Merge new entries into an existing JSON blob, dropping keys that are no longer in use. */
+    public static String merge(String existingJson, Map<String, List<Variant>> added, List<String> currentUrls) {
+        Map<String, List<Variant>> merged = new LinkedHashMap<>(parse(existingJson));
+        if (added != null) merged.putAll(added);
+        if (currentUrls != null) merged.keySet().retainAll(currentUrls);
+        return toJson(merged);
+    }
+
+    /** Every URL a registration references: the images plus their recorded variants. */
+    public static Set<String> urlsInUse(List<String> imageUrls, String variantsJson) {
+        Set<String> inUse = imageUrls != null ? new HashSet<>(imageUrls) : new HashSet<>();
+        for (List<Variant> vs : parse(variantsJson).values()) {
+            vs.forEach(v -> inUse.add(v.url()));
+        }
+        return inUse;
+    }
+
+    /**
+     * srcset-ready metadata aligned with {@code imageUrls}:
+     * {@code [{"src": url, "srcset": "u1 160w, u2 360w", "variants": [...]}, ...]}.
+     * Images without recorded variants get {@code srcset = null}.
+     */
+    public static List<Map<String, Object>> describe(List<String> imageUrls, String variantsJson) {
+        List<Map<String, Object>> out = new ArrayList<>();
+        if (imageUrls == null || imageUrls.isEmpty()) return out;
+        Map<String, List<Variant>> variants = parse(variantsJson);
+        for (String url : imageUrls) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("src", url);
+            List<Variant> vs = variants.get(url);
+            if (vs == null || vs.isEmpty()) {
+                item.put("srcset", null);
+                item.put("variants", List.of());
+            } else {
+                List<Variant> sorted = new ArrayList<>(vs);
+                sorted.sort(Comparator.comparingInt(Variant::width));
+                StringBuilder srcset = new StringBuilder();
+                for (Variant v : sorted) {
+                    if (srcset.length() > 0) srcset.append(", ");
+                    srcset.append(v.url()).append(' ').append(v.width()).append('w');
+                }
+                item.put("srcset", srcset.toString());
+                item.put("variants", sorted);
+            }
+            out.add(item);
+        }
+        return out;
+    }
+}
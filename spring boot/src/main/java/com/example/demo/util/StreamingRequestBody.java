@@ -0,0 +1,51 @@
+package com.example.demo.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.web.multipart.MultipartFile;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+/**
+ * Request body that streams a multipart upload from the container's temp file (or our own
+ * spool file) instead of {@code getBytes()}, so heap per upload stays at OkHttp's segment
+ * buffers whatever the file size. The file can be reopened, so retries work.
+ */
+public final class StreamingRequestBody extends RequestBody {
+
+    private final MultipartFile file;
+    private final MediaType contentType;
+
+    private StreamingRequestBody(MultipartFile file, MediaType contentType) {
+        this.file = file;
+        this.contentType = contentType;
+    }
+
+    /** @param contentType falls back to application/octet-stream when blank or unparseable */
+    public static StreamingRequestBody of(MultipartFile file, String contentType) {
+        MediaType type = contentType != null && !contentType.isBlank() ? MediaType.parse(contentType) : null;
+        return new StreamingRequestBody(file, type != null ? type : MediaType.parse("application/octet-stream"));
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return file.getSize();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        try (InputStream in = file.getInputStream(); Source source = Okio.source(in)) {
+            sink.writeAll(source);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+-- Content-addressed vehicle image objects (key: cas/<first 2 hex>/<sha256>.<ext>).
+-- ref_count = number of registrations referencing the object; the storage object is
+-- deleted when the last reference is released.
+
+CREATE TABLE IF NOT EXISTS image_objects (
+    object_key TEXT PRIMARY KEY,
+    bucket TEXT NOT NULL,
+    sha256 CHAR(64) NOT NULL,
+    content_type TEXT,
+    size_bytes BIGINT,
+    ref_count INTEGER NOT NULL DEFAULT 0,
+    uploaded BOOLEAN NOT NULL DEFAULT FALSE,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    last_referenced_at TIMESTAMPTZ
+);
+
+CREATE TABLE IF NOT EXISTS image_object_refs (
+    object_key TEXT NOT NULL REFERENCES image_objects (object_key) ON DELETE CASCADE,
+    registration_id BIGINT NOT NULL,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    PRIMARY KEY (object_key, registration_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_image_object_refs_registration_id ON image_object_refs (registration_id);
+CREATE INDEX IF NOT EXISTS idx_image_objects_unreferenced ON image_objects (ref_count) WHERE ref_count = 0;
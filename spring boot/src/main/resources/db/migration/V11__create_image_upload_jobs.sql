@@ -0,0 +1,18 @@
+-- Asynchronous vehicle image uploads (POST /api/registration-images/{id}?async=true).
+-- Raw files are spooled to local disk; this table carries status for polling.
+
+CREATE TABLE IF NOT EXISTS image_upload_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    registration_id BIGINT NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    total_images INTEGER NOT NULL DEFAULT 0,
+    processed_images INTEGER NOT NULL DEFAULT 0,
+    result_json TEXT,
+    error TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    finished_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_image_upload_jobs_status_updated ON image_upload_jobs (status, updated_at);
+CREATE INDEX IF NOT EXISTS idx_image_upload_jobs_registration_id ON image_upload_jobs (registration_id);
@@ -0,0 +1,18 @@
+-- Checkpoint for the background flat -> folder image migration (POST /api/migration/images).
+-- One row per job; last_registration_id is the keyset cursor, advanced only after a whole page
+-- has been processed, so a crash resumes at the first unfinished page.
+
+CREATE TABLE IF NOT EXISTS image_migration_checkpoint (
+    job_name TEXT PRIMARY KEY,
+    status TEXT NOT NULL,              -- 'running' | 'stopped' | 'completed' | 'failed'
+    last_registration_id BIGINT NOT NULL DEFAULT 0,
+    registrations_processed BIGINT NOT NULL DEFAULT 0,
+    images_migrated BIGINT NOT NULL DEFAULT 0,
+    images_skipped BIGINT NOT NULL DEFAULT 0,
+    images_failed BIGINT NOT NULL DEFAULT 0,
+    bytes_copied BIGINT NOT NULL DEFAULT 0,
+    last_error TEXT,
+    started_at TIMESTAMPTZ,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    finished_at TIMESTAMPTZ
+);
@@ -0,0 +1,21 @@
+-- Direct-to-storage uploads (POST /api/uploads/sign -> client PUT -> POST /api/uploads/{id}/finalize).
+-- The raw object sits in the private staging bucket until a worker processes and attaches it.
+
+CREATE TABLE IF NOT EXISTS direct_uploads (
+    id VARCHAR(36) PRIMARY KEY,
+    kind VARCHAR(16) NOT NULL,
+    contact_number VARCHAR(32) NOT NULL,
+    registration_id BIGINT,
+    slot INTEGER,
+    object_key VARCHAR(255) NOT NULL,
+    content_type VARCHAR(100),
+    status VARCHAR(16) NOT NULL,
+    result_url TEXT,
+    error TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    expires_at TIMESTAMPTZ NOT NULL,
+    updated_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    finished_at TIMESTAMPTZ
+);
+
+CREATE INDEX IF NOT EXISTS idx_direct_uploads_status_updated ON direct_uploads (status, updated_at);
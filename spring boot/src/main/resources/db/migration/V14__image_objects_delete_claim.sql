@@ -0,0 +1,5 @@
+-- Storage deletes of unreferenced image objects run outside the ref-count transaction.
+-- deleting_since marks a row claimed by a deleter; a claim older than the lease is taken over
+-- by the sweeper. Rows whose delete failed go back to unclaimed with uploaded = FALSE.
+
+ALTER TABLE image_objects ADD COLUMN IF NOT EXISTS deleting_since TIMESTAMPTZ;
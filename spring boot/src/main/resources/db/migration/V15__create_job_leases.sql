@@ -0,0 +1,8 @@
+-- Cluster-wide leases for scheduled jobs that should run on one instance only
+-- (e.g. the nightly geo cache refresh). A row is taken over once lease_until has passed.
+
+CREATE TABLE IF NOT EXISTS job_leases (
+    job_name TEXT PRIMARY KEY,
+    owner TEXT NOT NULL,
+    lease_until TIMESTAMPTZ NOT NULL
+);
@@ -0,0 +1,4 @@
+-- Record who queued an async image upload so GET /api/registration-images/jobs/{id} can be
+-- scoped to the uploader. Jobs from before this column (NULL) are no longer readable.
+
+ALTER TABLE image_upload_jobs ADD COLUMN IF NOT EXISTS contact_number VARCHAR(32);
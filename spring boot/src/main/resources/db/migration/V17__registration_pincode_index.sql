@@ -0,0 +1,10 @@
+-- pincode_location rows are recomputed from the latest remaining registration when one is
+-- deleted or changes pincode; index that lookup. Skipped on a fresh database, where Hibernate
+-- creates registration after Flyway has run.
+
+DO $$
+BEGIN
+    IF to_regclass('public.registration') IS NOT NULL THEN
+        CREATE INDEX IF NOT EXISTS idx_registration_pincode_trim ON registration ((TRIM(pincode)), id DESC);
+    END IF;
+END $$;
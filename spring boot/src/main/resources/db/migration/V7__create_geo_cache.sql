@@ -0,0 +1,14 @@
+-- Persistent geo lookup cache shared across instances and restarts.
+-- Holds India Post / Nominatim resolutions so a deploy does not send every
+-- pincode and coordinate upstream again. Also handy for offline analytics.
+
+CREATE TABLE IF NOT EXISTS geo_cache (
+    cache_key TEXT PRIMARY KEY,        -- e.g. 'postal:560001', 'nominatim:560001', 'reverse:12.972,77.595'
+    kind TEXT NOT NULL,                -- 'postal' | 'nominatim' | 'reverse'
+    payload JSONB NOT NULL,
+    resolved_at TIMESTAMPTZ NOT NULL DEFAULT NOW(),
+    expires_at TIMESTAMPTZ NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_geo_cache_kind ON geo_cache (kind);
+CREATE INDEX IF NOT EXISTS idx_geo_cache_expires_at ON geo_cache (expires_at);
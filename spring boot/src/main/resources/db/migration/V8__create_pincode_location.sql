@@ -0,0 +1,31 @@
+-- One row per pincode with the district/state our own listings use for it.
+-- Replaces per-request scans of registration in the geo DB fallbacks (resolve + district pincode list).
+-- *_key columns hold LOWER(TRIM(...)) so lookups are plain index matches.
+
+CREATE TABLE IF NOT EXISTS pincode_location (
+    pincode VARCHAR(6) PRIMARY KEY,
+    district TEXT NOT NULL,
+    district_key TEXT NOT NULL,
+    state TEXT NOT NULL,
+    state_key TEXT NOT NULL,
+    last_seen TIMESTAMPTZ NOT NULL DEFAULT NOW()
+);
+
+CREATE INDEX IF NOT EXISTS idx_pincode_location_district ON pincode_location (district_key, state_key, pincode);
+
+-- Backfill from existing listings (latest registration wins). On a fresh database the
+-- registration table is created later by Hibernate and the app fills this table on writes.
+DO $$
+BEGIN
+    IF to_regclass('public.registration') IS NOT NULL THEN
+        INSERT INTO pincode_location (pincode, district, district_key, state, state_key, last_seen)
+        SELECT DISTINCT ON (TRIM(pincode))
+            TRIM(pincode), TRIM(city), LOWER(TRIM(city)), TRIM(state), LOWER(TRIM(state)), NOW()
+        FROM registration
+        WHERE TRIM(pincode) ~ '^[0-9]{6}$'
+          AND city IS NOT NULL AND TRIM(city) <> ''
+          AND state IS NOT NULL AND TRIM(state) <> ''
+        ORDER BY TRIM(pincode), id DESC
+        ON CONFLICT (pincode) DO NOTHING;
+    END IF;
+END $$;
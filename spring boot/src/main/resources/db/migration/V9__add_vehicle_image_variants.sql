@@ -0,0 +1,5 @@
+-- Responsive image variants per vehicle photo, keyed by the primary image URL:
+-- {"<primary url>": [{"width":160,"height":120,"url":"..."}, ...]}
+
+ALTER TABLE IF EXISTS registration
+    ADD COLUMN IF NOT EXISTS vehicle_image_variants_json TEXT;
@@ -0,0 +1,112 @@
+package com.example.demo.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ImageObjectStoreTest {
+
+    private static final String KEY = "cas/ab/abcdef.webp";
+
+    private JdbcTemplate jdbcTemplate;
+    private ImageObjectStore store;
+
+    // Objects in the bucket, and whether a delete claim is held on KEY
+    private final Set<String> storage = new HashSet<>();
+    private final AtomicBoolean claimed = new AtomicBoolean();
+    private final AtomicInteger puts = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        store = new ImageObjectStore(jdbcTemplate, mock(TransactionTemplate.class), 300, 1_000);
+        when(jdbcTemplate.queryForList(startsWith("SELECT deleting_since IS NULL"), eq(Boolean.class), eq(KEY)))
+            .thenAnswer(inv -> List.of(!claimed.get()));
+    }
+
+    private void put() {
+        puts.incrementAndGet();
+        storage.add(KEY);
+    }
+
+    @Test
+    void uploadMarksTheObjectAfterOnePut() throws IOException {
+        when(jdbcTemplate.update(startsWith("UPDATE image_objects SET uploaded = TRUE"), eq(KEY))).thenReturn(1);
+
+        store.upload(KEY, this::put);
+
+        assertEquals(1, puts.get());
+        assertTrue(storage.contains(KEY));
+    }
+
+    @Test
+    void uploadPutsAgainWhenARacingDeleteRemovedTheObject() throws IOException {
+        // release claimed the row, acquire re-referenced it, our PUT lands, then the storage
+        // DELETE removes it and deleteClaimed clears the claim because ref_count > 0
+        claimed.set(true);
+        when(jdbcTemplate.update(startsWith("UPDATE image_objects SET uploaded = TRUE"), eq(KEY)))
+            .thenAnswer(inv -> {
+                if (!claimed.get()) return 1;
+                storage.remove(KEY);
+                claimed.set(false);
+                return 0;
+            });
+
+        store.upload(KEY, this::put);
+
+        assertEquals(2, puts.get());
+        assertTrue(storage.contains(KEY));
+    }
+
+    @Test
+    void uploadWaitsForTheClaimToEndBeforePuttingAgain() throws IOException {
+        claimed.set(true);
+        AtomicInteger polls = new AtomicInteger();
+        when(jdbcTemplate.queryForList(startsWith("SELECT deleting_since IS NULL"), eq(Boolean.class), eq(KEY)))
+            .thenAnswer(inv -> {
+                if (polls.incrementAndGet() == 2) {
+                    // The storage DELETE lands only now, after our first PUT
+                    storage.remove(KEY);
+                    claimed.set(false);
+                }
+                return List.of(!claimed.get());
+            });
+        when(jdbcTemplate.update(startsWith("UPDATE image_objects SET uploaded = TRUE"), eq(KEY)))
+            .thenAnswer(inv -> claimed.get() ? 0 : 1);
+
+        store.upload(KEY, () -> {
+            // The second PUT must not start while the delete is still in flight
+            assertTrue(puts.get() == 0 || !claimed.get());
+            put();
+        });
+
+        assertEquals(2, puts.get());
+        assertTrue(storage.contains(KEY));
+    }
+
+    @Test
+    void uploadGivesUpWhenTheClaimDoesNotEnd() {
+        claimed.set(true);
+        store = new ImageObjectStore(jdbcTemplate, mock(TransactionTemplate.class), 300, 50);
+        when(jdbcTemplate.update(startsWith("UPDATE image_objects SET uploaded = TRUE"), eq(KEY))).thenReturn(0);
+
+        assertThrows(IOException.class, () -> store.upload(KEY, this::put));
+        assertEquals(1, puts.get());
+    }
+}